@@ -0,0 +1,109 @@
+package data;
+
+import model.BedType;
+import model.Guest;
+import model.Reservation;
+import model.Room;
+import model.RoomType;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * In-memory Derby database seeded with a fixed number of rooms and a parameterised number of
+ * reservations, shared by the DAO benchmarks. The data is loaded through the DAOs' batched
+ * {@code createAll}.
+ */
+final class BenchmarkDatabase {
+
+    static final int ROOMS = 200;
+    static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+    static final int DAYS = 3 * 365;
+
+    private static final int CHUNK = 10_000;
+
+    private final String name;
+    private final ConnectionPool dataSource;
+    private final RoomDao roomDao;
+    private final ReservationDao reservationDao;
+
+    private BenchmarkDatabase(String name) {
+        this.name = name;
+        var derby = new EmbeddedDataSource();
+        derby.setDatabaseName(name);
+        derby.setCreateDatabase("create");
+        this.dataSource = new ConnectionPool(derby);
+        this.roomDao = new RoomDao(dataSource);
+        this.reservationDao = new ReservationDao(dataSource, roomDao, null);
+    }
+
+    static BenchmarkDatabase create(int reservations) {
+        var database = new BenchmarkDatabase("memory:hotel-benchmark-" + reservations);
+        database.roomDao.initTable();
+        database.reservationDao.initTable();
+        database.seed(reservations);
+        return database;
+    }
+
+    DataSource getDataSource() {
+        return dataSource;
+    }
+
+    RoomDao getRoomDao() {
+        return roomDao;
+    }
+
+    ReservationDao getReservationDao() {
+        return reservationDao;
+    }
+
+    void drop() {
+        dataSource.close();
+        var derby = new EmbeddedDataSource();
+        derby.setDatabaseName(name);
+        derby.setConnectionAttributes("drop=true");
+        try {
+            derby.getConnection().close();
+        } catch (SQLException ex) {
+            // Derby reports a successfully dropped database with SQL state 08006
+            if (!"08006".equals(ex.getSQLState())) {
+                throw new DataException("Failed to drop benchmark database " + name, ex);
+            }
+        }
+    }
+
+    private void seed(int reservations) {
+        var random = new SplittableRandom(42);
+        var bedTypes = BedType.values();
+        List<Room> rooms = new ArrayList<>(ROOMS);
+        for (int i = 1; i <= ROOMS; i++) {
+            rooms.add(new Room(i, new RoomType(bedTypes[random.nextInt(bedTypes.length)], 10 + random.nextInt(40), 1 + random.nextInt(3))));
+        }
+        roomDao.createAll(rooms);
+
+        List<Reservation> chunk = new ArrayList<>(CHUNK);
+        for (int i = 0; i < reservations; i++) {
+            var in = FIRST_DAY.plusDays(random.nextInt(DAYS));
+            var out = in.plusDays(1 + random.nextInt(14));
+            var guest = new Guest("Guest " + i, "guest" + i + "@example.com", "Street " + random.nextInt(1000), "",
+                    "+420" + (100_000_000 + random.nextInt(900_000_000)));
+            var reservation = new Reservation(in, out, 1 + random.nextInt(4), guest);
+            if (random.nextInt(5) != 0) {
+                reservation.setCheckInDate(in);
+                reservation.setCheckOutDate(out);
+            }
+            reservation.setRoom(rooms.get(random.nextInt(ROOMS)));
+            chunk.add(reservation);
+            if (chunk.size() == CHUNK) {
+                reservationDao.createAll(chunk, CHUNK);
+                chunk.clear();
+            }
+        }
+        reservationDao.createAll(chunk, CHUNK);
+    }
+}
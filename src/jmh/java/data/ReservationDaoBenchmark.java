@@ -0,0 +1,139 @@
+package data;
+
+import model.Guest;
+import model.Reservation;
+import model.Room;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ReservationDaoBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int reservations;
+
+    private BenchmarkDatabase database;
+    private ReservationDao reservationDao;
+    private ReservationDao joiningReservationDao;
+    private Room room;
+    private Room otherRoom;
+    private int updates;
+    /**
+     * Reservations loaded from the database, which the update benchmarks modify.
+     */
+    private List<Reservation> stored;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = BenchmarkDatabase.create(reservations);
+        reservationDao = database.getReservationDao();
+        joiningReservationDao = new ReservationDao(database.getDataSource());
+        room = database.getRoomDao().findByNumber(1);
+        otherRoom = database.getRoomDao().findByNumber(2);
+        stored = reservationDao.findPage(0, 1000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.drop();
+    }
+
+    @Benchmark
+    public List<Reservation> findAll() {
+        return reservationDao.findAll();
+    }
+
+    /**
+     * Reads the rooms through the join instead of the room cache.
+     */
+    @Benchmark
+    public List<Reservation> findAllJoined() {
+        return joiningReservationDao.findAll();
+    }
+
+    @Benchmark
+    public List<Reservation> filterReservationsByName() {
+        return reservationDao.filterReservations("guest " + ThreadLocalRandom.current().nextInt(reservations), "");
+    }
+
+    @Benchmark
+    public List<Reservation> filterReservationsByRoom() {
+        return reservationDao.filterReservations("", String.valueOf(1 + ThreadLocalRandom.current().nextInt(BenchmarkDatabase.ROOMS)));
+    }
+
+    @Benchmark
+    public Reservation create() {
+        var reservation = newReservation();
+        reservationDao.create(reservation);
+        return reservation;
+    }
+
+    /**
+     * Changes every field of a stored reservation, so that the whole row is written as before
+     * only modified fields were.
+     */
+    @Benchmark
+    public Reservation update() {
+        var reservation = storedReservation();
+        int round = ++updates;
+        var in = reservation.getExpectedCheckInDate().plusDays(1);
+        reservation.setGuest(new Guest("Guest " + round, "guest" + round + "@example.com", "Brno " + round,
+                "update " + round, "+420" + round));
+        reservation.setExpectedCheckInDate(in);
+        reservation.setExpectedCheckOutDate(in.plusDays(4));
+        reservation.setCheckInDate(toggle(reservation.getCheckInDate(), in));
+        reservation.setCheckOutDate(toggle(reservation.getCheckOutDate(), in.plusDays(4)));
+        reservation.setNumGuests(reservation.getNumGuests() % 4 + 1);
+        reservation.setRoom(reservation.getRoom().equals(room) ? otherRoom : room);
+        reservationDao.update(reservation);
+        return reservation;
+    }
+
+    /**
+     * Changes the one field a check-in or its undo changes.
+     */
+    @Benchmark
+    public Reservation checkIn() {
+        var reservation = storedReservation();
+        reservation.setCheckInDate(toggle(reservation.getCheckInDate(), reservation.getExpectedCheckInDate()));
+        reservationDao.update(reservation);
+        return reservation;
+    }
+
+    private static LocalDate toggle(LocalDate date, LocalDate value) {
+        return date == null ? value : null;
+    }
+
+    private Reservation storedReservation() {
+        return stored.get(ThreadLocalRandom.current().nextInt(stored.size()));
+    }
+
+    private Reservation newReservation() {
+        var in = BenchmarkDatabase.FIRST_DAY.plusDays(ThreadLocalRandom.current().nextInt(BenchmarkDatabase.DAYS));
+        var reservation = new Reservation(in, in.plusDays(3), 2,
+                new Guest("Benchmark Guest", "bench@example.com", "Brno", "", "+420123456789"));
+        reservation.setRoom(room);
+        return reservation;
+    }
+}
@@ -0,0 +1,67 @@
+package data;
+
+import model.Room;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class RoomDaoBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int reservations;
+
+    private BenchmarkDatabase database;
+    private RoomDao roomDao;
+    private RoomDao indexedRoomDao;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = BenchmarkDatabase.create(reservations);
+        roomDao = database.getRoomDao();
+        indexedRoomDao = new RoomDao(database.getDataSource(),
+                new AvailabilityIndex(BenchmarkDatabase.FIRST_DAY, BenchmarkDatabase.DAYS + 30));
+        indexedRoomDao.loadAvailabilityIndex();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.drop();
+    }
+
+    @Benchmark
+    public List<Room> findAvailableRooms() {
+        var in = BenchmarkDatabase.FIRST_DAY.plusDays(ThreadLocalRandom.current().nextInt(BenchmarkDatabase.DAYS));
+        return roomDao.findAvailableRooms(in, in.plusDays(4));
+    }
+
+    @Benchmark
+    public List<Room> findAvailableRoomsIndexed() {
+        var in = BenchmarkDatabase.FIRST_DAY.plusDays(ThreadLocalRandom.current().nextInt(BenchmarkDatabase.DAYS));
+        return indexedRoomDao.findAvailableRooms(in, in.plusDays(4));
+    }
+
+    @Benchmark
+    public Room findByNumber() {
+        return roomDao.findByNumber(1 + ThreadLocalRandom.current().nextInt(BenchmarkDatabase.ROOMS));
+    }
+}
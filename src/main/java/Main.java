@@ -1,35 +1,204 @@
+import data.AvailabilityIndex;
+import data.ConnectionPool;
+import data.DaoMetrics;
 import data.ReservationDao;
+import data.ReservationWriteQueue;
 import data.RoomDao;
+import data.SchemaMigrations;
+import data.SlowQueryLog;
 import data.TestDataGenerator;
 import org.apache.derby.jdbc.EmbeddedDataSource;
+import ui.EdtWatchdog;
 import ui.MainWindow;
+import ui.TaskExecutors;
 
-import javax.sql.DataSource;
+import javax.management.JMException;
+import javax.management.ObjectName;
 import javax.swing.*;
 import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Main {
 
+    /**
+     * Shows the window as soon as it is built. The database is booted, the schema migrated and the
+     * indexes loaded in the background meanwhile; the queries of the window wait for that.
+     */
     public static void main(String[] args) {
-        var dataSource = createDataSource();
-        var roomDao = new RoomDao(dataSource);
-        roomDao.initTable();
-        var reservationDao = new ReservationDao(dataSource);
-        reservationDao.initTable();
-        initNimbusLookAndFeel();
-        TestDataGenerator generator = new TestDataGenerator(roomDao, reservationDao);
-        generator.createTestData();
-        EventQueue.invokeLater(() -> new MainWindow(roomDao, reservationDao).show());
-    }
-
-    private static DataSource createDataSource() {
+        var stages = new StartupStages();
+        var watchdog = new EdtWatchdog(
+                Duration.ofMillis(Long.getLong("hotel.edt.stallThresholdMillis", 200)),
+                Duration.ofMillis(Long.getLong("hotel.edt.sampleIntervalMillis", 50)));
+        registerMBean(watchdog, "hotel:type=EdtWatchdog");
+        var executors = createTaskExecutors();
+        var pool = createConnectionPool();
+        var dataSource = new SlowQueryLog(pool,
+                Duration.ofMillis(Long.getLong("hotel.slowQuery.thresholdMillis", 200)),
+                Integer.getInteger("hotel.slowQuery.topSize", 20));
+        var availabilityIndex = new AvailabilityIndex();
+        var roomDao = new RoomDao(dataSource, availabilityIndex);
+        var reservationDao = new ReservationDao(dataSource, roomDao, availabilityIndex);
+        registerMetrics(dataSource, pool.getMetrics(), roomDao.getMetrics(), reservationDao.getMetrics());
+        var writeQueue = new ReservationWriteQueue(reservationDao,
+                Duration.ofMillis(Long.getLong("hotel.writes.flushIntervalMillis", 250)),
+                Integer.getInteger("hotel.writes.flushSize", 50),
+                EventQueue::invokeLater);
+        // the window exits the JVM when closed; changes still queued are written on the way out
+        Runtime.getRuntime().addShutdownHook(new Thread(writeQueue::close, "reservation-writer-shutdown"));
+
+        // the first connection boots Derby
+        var schema = new SchemaMigrations(dataSource);
+        var tables = CompletableFuture.runAsync(stages.timed("database", () -> {
+            schema.migrate();
+            new TestDataGenerator(roomDao, reservationDao).createTestData();
+        }));
+        var database = CompletableFuture.allOf(
+                tables.thenRunAsync(stages.timed("availabilityIndex", roomDao::loadAvailabilityIndex)),
+                tables.thenRunAsync(stages.timed("searchIndex", reservationDao::initSearchIndex)));
+        executors.holdUntil(database);
+        database.thenRun(() -> scheduleAvailabilityCheck(roomDao,
+                Duration.ofMinutes(Long.getLong("hotel.availability.checkIntervalMinutes", 10))));
+        // index builds lock their table, so they wait until the data has been loaded
+        var onlineMigrations = database.thenRunAsync(stages.timed("onlineMigrations", schema::migrateOnline));
+        var icons = CompletableFuture.supplyAsync(stages.timedValue("icons", MainWindow::loadIcons));
+        var window = CompletableFuture.supplyAsync(stages.timedValue("window", () -> {
+            initNimbusLookAndFeel();
+            var mainWindow = new MainWindow(roomDao, reservationDao, writeQueue, executors);
+            mainWindow.show();
+            return mainWindow;
+        }), EventQueue::invokeLater);
+        window.thenAcceptBothAsync(icons, MainWindow::setIcons, EventQueue::invokeLater);
+        CompletableFuture.allOf(database, onlineMigrations, window, icons).whenComplete((result, failure) -> {
+            if (failure != null) {
+                Logger.getLogger(Main.class.getName()).log(Level.SEVERE, "Startup failed", failure);
+            }
+            stages.report();
+        });
+    }
+
+    private static ConnectionPool createConnectionPool() {
         String dbPath = System.getProperty("user.home") + "/hotel-reservation";
         EmbeddedDataSource dataSource = new EmbeddedDataSource();
         dataSource.setDatabaseName(dbPath);
         dataSource.setCreateDatabase("create");
-        return dataSource;
+        ConnectionPool pool = new ConnectionPool(dataSource);
+        pool.setMinSize(Integer.getInteger("hotel.pool.minSize", 1));
+        pool.setMaxSize(Integer.getInteger("hotel.pool.maxSize", 10));
+        pool.setAcquireTimeout(Duration.ofSeconds(Long.getLong("hotel.pool.acquireTimeoutSeconds", 30)));
+        pool.setIdleTimeout(Duration.ofSeconds(Long.getLong("hotel.pool.idleTimeoutSeconds", 300)));
+        pool.setStatementCacheSize(Integer.getInteger("hotel.pool.statementCacheSize", 50));
+        return pool;
+    }
+
+    /**
+     * Compares the availability index with the database for the next month now and then, which
+     * reloads the index if the database was changed behind the DAOs.
+     */
+    private static void scheduleAvailabilityCheck(RoomDao roomDao, Duration interval) {
+        var checker = Executors.newSingleThreadScheduledExecutor(task -> {
+            var thread = new Thread(task, "availability-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(() -> {
+            try {
+                var today = LocalDate.now();
+                roomDao.checkAvailabilityIndex(today, today.plusMonths(1));
+            } catch (RuntimeException ex) {
+                Logger.getLogger(Main.class.getName()).log(Level.WARNING, "Availability index check failed", ex);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Exposes the metrics as MBeans of the platform MBean server, e.g. for JConsole or VisualVM.
+     */
+    private static void registerMetrics(SlowQueryLog slowQueryLog, DaoMetrics... metrics) {
+        var server = ManagementFactory.getPlatformMBeanServer();
+        registerMBean(slowQueryLog, "hotel:type=SlowQueryLog");
+        for (var component : metrics) {
+            component.register(server);
+        }
+    }
+
+    private static void registerMBean(Object mbean, String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, new ObjectName(name));
+        } catch (JMException ex) {
+            Logger.getLogger(Main.class.getName()).log(Level.WARNING, "Failed to register MBean " + name, ex);
+        }
+    }
+
+    /**
+     * Virtual threads are used with {@code -Dhotel.executor.mode=virtual} when the runtime has them.
+     */
+    private static TaskExecutors createTaskExecutors() {
+        if ("virtual".equalsIgnoreCase(System.getProperty("hotel.executor.mode"))) {
+            if (TaskExecutors.isVirtualThreadSupported()) {
+                return TaskExecutors.virtual();
+            }
+            Logger.getLogger(Main.class.getName()).warning("Virtual threads need Java 21 or newer, using platform threads");
+        }
+        return TaskExecutors.platform(
+                Integer.getInteger("hotel.executor.readThreads", 4),
+                Integer.getInteger("hotel.executor.writeThreads", 2),
+                Integer.getInteger("hotel.executor.queueCapacity", 1000));
+    }
+
+    /**
+     * Start and duration of the startup stages, logged once the window is shown and the database
+     * is ready.
+     */
+    private static final class StartupStages {
+
+        private final long origin = System.nanoTime();
+        private final Map<String, long[]> stages = new LinkedHashMap<>();
+
+        private Runnable timed(String name, Runnable stage) {
+            return () -> {
+                long start = System.nanoTime();
+                try {
+                    stage.run();
+                } finally {
+                    record(name, start);
+                }
+            };
+        }
+
+        private <T> Supplier<T> timedValue(String name, Supplier<T> stage) {
+            return () -> {
+                long start = System.nanoTime();
+                try {
+                    return stage.get();
+                } finally {
+                    record(name, start);
+                }
+            };
+        }
+
+        private synchronized void record(String name, long start) {
+            stages.put(name, new long[]{start - origin, System.nanoTime() - start});
+        }
+
+        private synchronized void report() {
+            var report = new StringBuilder("Startup took ")
+                    .append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - origin))
+                    .append(" ms, ").append(ManagementFactory.getRuntimeMXBean().getUptime())
+                    .append(" ms since the JVM started");
+            stages.forEach((name, times) -> report.append(String.format("%n  %-18s at %5d ms, took %5d ms", name,
+                    TimeUnit.NANOSECONDS.toMillis(times[0]), TimeUnit.NANOSECONDS.toMillis(times[1]))));
+            Logger.getLogger(Main.class.getName()).info(report.toString());
+        }
     }
 
     private static void initNimbusLookAndFeel() {
@@ -0,0 +1,99 @@
+package data;
+
+import model.Reservation;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * {@link ReservationDao} whose methods run on an executor and return a {@link CompletableFuture}
+ * at once. Reads and writes can be given separate executors. A failed call completes its future
+ * exceptionally with the {@link DataException} of the DAO, and a call the executor rejects with
+ * its {@link RejectedExecutionException}, so that callers always get a future.
+ */
+public class AsyncReservationDao {
+
+    private final ReservationDao reservationDao;
+    private final Executor readExecutor;
+    private final Executor writeExecutor;
+
+    public AsyncReservationDao(ReservationDao reservationDao, Executor executor) {
+        this(reservationDao, executor, executor);
+    }
+
+    public AsyncReservationDao(ReservationDao reservationDao, Executor readExecutor, Executor writeExecutor) {
+        this.reservationDao = reservationDao;
+        this.readExecutor = readExecutor;
+        this.writeExecutor = writeExecutor;
+    }
+
+    public ReservationDao getReservationDao() {
+        return reservationDao;
+    }
+
+    public CompletableFuture<Void> create(Reservation reservation) {
+        return run(() -> reservationDao.create(reservation), writeExecutor);
+    }
+
+    public CompletableFuture<Void> update(Reservation reservation) {
+        return run(() -> reservationDao.update(reservation), writeExecutor);
+    }
+
+    public CompletableFuture<Void> delete(Reservation reservation) {
+        return run(() -> reservationDao.delete(reservation), writeExecutor);
+    }
+
+    public CompletableFuture<List<Reservation>> findAll() {
+        return supply(reservationDao::findAll, readExecutor);
+    }
+
+    public CompletableFuture<List<Reservation>> findPage(long afterId, int limit) {
+        return supply(() -> reservationDao.findPage(afterId, limit), readExecutor);
+    }
+
+    public CompletableFuture<Long> findIdAfter(long afterId, int offset) {
+        return supply(() -> reservationDao.findIdAfter(afterId, offset), readExecutor);
+    }
+
+    public CompletableFuture<Integer> count() {
+        return supply(reservationDao::count, readExecutor);
+    }
+
+    public CompletableFuture<List<Reservation>> searchGuests(String query) {
+        return supply(() -> reservationDao.searchGuests(query), readExecutor);
+    }
+
+    public CompletableFuture<List<Reservation>> filterReservations(String name, String number, CancellationToken token,
+                                                                   Duration timeout) {
+        return supply(() -> reservationDao.filterReservations(name, number, token, timeout), readExecutor);
+    }
+
+    /**
+     * Streaming variant; {@code action} is called on the executor's thread for each reservation.
+     */
+    public CompletableFuture<Void> filterReservations(String name, String number, CancellationToken token,
+                                                      Duration timeout, Consumer<? super Reservation> action) {
+        return run(() -> reservationDao.filterReservations(name, number, token, timeout, action), readExecutor);
+    }
+
+    private static CompletableFuture<Void> run(Runnable call, Executor executor) {
+        try {
+            return CompletableFuture.runAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static <T> CompletableFuture<T> supply(Supplier<T> call, Executor executor) {
+        try {
+            return CompletableFuture.supplyAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package data;
+
+import model.Room;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * {@link RoomDao} whose methods run on an executor and return a {@link CompletableFuture} at once.
+ * Reads and writes can be given separate executors. A failed call completes its future
+ * exceptionally with the {@link DataException} of the DAO, and a call the executor rejects with
+ * its {@link RejectedExecutionException}, so that callers always get a future.
+ */
+public class AsyncRoomDao {
+
+    private final RoomDao roomDao;
+    private final Executor readExecutor;
+    private final Executor writeExecutor;
+
+    public AsyncRoomDao(RoomDao roomDao, Executor executor) {
+        this(roomDao, executor, executor);
+    }
+
+    public AsyncRoomDao(RoomDao roomDao, Executor readExecutor, Executor writeExecutor) {
+        this.roomDao = roomDao;
+        this.readExecutor = readExecutor;
+        this.writeExecutor = writeExecutor;
+    }
+
+    public RoomDao getRoomDao() {
+        return roomDao;
+    }
+
+    public CompletableFuture<Void> create(Room room) {
+        return run(() -> roomDao.create(room), writeExecutor);
+    }
+
+    public CompletableFuture<Void> update(Room room) {
+        return run(() -> roomDao.update(room), writeExecutor);
+    }
+
+    public CompletableFuture<Void> delete(Room room) {
+        return run(() -> roomDao.delete(room), writeExecutor);
+    }
+
+    public CompletableFuture<List<Room>> findAll() {
+        return supply(roomDao::findAll, readExecutor);
+    }
+
+    public CompletableFuture<Room> findById(long id) {
+        return supply(() -> roomDao.findById(id), readExecutor);
+    }
+
+    public CompletableFuture<Room> findByNumber(int number) {
+        return supply(() -> roomDao.findByNumber(number), readExecutor);
+    }
+
+    public CompletableFuture<List<Room>> findAvailableRooms(LocalDate in, LocalDate out) {
+        return supply(() -> roomDao.findAvailableRooms(in, out), readExecutor);
+    }
+
+    public CompletableFuture<List<Room>> findAvailableRooms(LocalDate in, LocalDate out, CancellationToken token,
+                                                            Duration timeout) {
+        return supply(() -> roomDao.findAvailableRooms(in, out, token, timeout), readExecutor);
+    }
+
+    public CompletableFuture<List<Room>> findAvailableRooms(RoomQuery query, CancellationToken token, Duration timeout) {
+        return supply(() -> roomDao.findAvailableRooms(query, token, timeout), readExecutor);
+    }
+
+    public CompletableFuture<List<StayOption>> findStayOptions(StaySearch search) {
+        return supply(() -> roomDao.findStayOptions(search), readExecutor);
+    }
+
+    private static CompletableFuture<Void> run(Runnable call, Executor executor) {
+        try {
+            return CompletableFuture.runAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static <T> CompletableFuture<T> supply(Supplier<T> call, Executor executor) {
+        try {
+            return CompletableFuture.supplyAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
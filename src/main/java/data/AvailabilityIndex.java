@@ -0,0 +1,288 @@
+package data;
+
+import model.Reservation;
+import model.Room;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * In-memory copy of which rooms are occupied when, used to answer
+ * {@link RoomDao#findAvailableRooms(LocalDate, LocalDate)} without querying the database.
+ * <p>
+ * Every room has an {@link IntervalTree} of the expected stays of its reservations that have not
+ * been checked out, which is the same condition the SQL query uses, and an {@link OccupancyCalendar}
+ * of the same stays for the nights of a horizon starting on the first day of the index. Stays within
+ * the horizon are checked with the bitmap, the rest with the tree. The index is filled by
+ * {@link RoomDao#loadAvailabilityIndex()} and then kept current by the DAOs that share it, after
+ * each of their successful writes; the database stays the source of truth.
+ */
+public class AvailabilityIndex {
+
+    public static final int DEFAULT_HORIZON_DAYS = 730;
+
+    /**
+     * Expected stay of an active reservation, in epoch days.
+     */
+    static final class Stay {
+        private final long reservationId;
+        private final long roomId;
+        private final long start;
+        private final long end;
+
+        Stay(long reservationId, long roomId, LocalDate in, LocalDate out) {
+            this.reservationId = reservationId;
+            this.roomId = roomId;
+            this.start = in.toEpochDay();
+            this.end = out.toEpochDay();
+        }
+    }
+
+    private static final class RoomSchedule {
+        private Room room;
+        private final IntervalTree stays = new IntervalTree();
+        private final OccupancyCalendar calendar;
+
+        private RoomSchedule(Room room, OccupancyCalendar calendar) {
+            this.room = room;
+            this.calendar = calendar;
+        }
+
+        private boolean isFree(long start, long end) {
+            return calendar.covers(start, end) ? calendar.isFree(start, end) : !stays.overlaps(start, end);
+        }
+    }
+
+    private final long firstDay;
+    private final int horizonDays;
+    private final Map<Long, RoomSchedule> schedules = new HashMap<>();
+    private final Map<Long, Stay> stays = new HashMap<>();
+    /**
+     * Nights of the horizon on which every room is occupied; {@code null} after any change until
+     * it is needed again.
+     */
+    private long[] fullyBooked;
+    private boolean loaded;
+    /**
+     * Shared by the writes of the DAOs, each storing a change and applying it to the index, and
+     * held exclusively while the index is loaded or checked against the database, so that no
+     * write is missed by the snapshot or lost when it replaces the content.
+     */
+    private final ReadWriteLock writeLock = new ReentrantReadWriteLock();
+
+    /**
+     * Creates an index whose bitmaps cover {@value #DEFAULT_HORIZON_DAYS} days from today.
+     */
+    public AvailabilityIndex() {
+        this(LocalDate.now(), DEFAULT_HORIZON_DAYS);
+    }
+
+    public AvailabilityIndex(LocalDate firstDay, int horizonDays) {
+        if (horizonDays < 1) {
+            throw new IllegalArgumentException("Horizon must be positive: " + horizonDays);
+        }
+        this.firstDay = firstDay.toEpochDay();
+        this.horizonDays = horizonDays;
+    }
+
+    /**
+     * Runs a write to the database followed by its update of the index. Writes run concurrently
+     * with each other, but not while {@link #exclusively(Supplier)} runs.
+     */
+    void write(Runnable write) {
+        writeLock.readLock().lock();
+        try {
+            write.run();
+        } finally {
+            writeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs the action with no write in progress, for reading the database and the index as of
+     * the same moment.
+     */
+    <T> T exclusively(Supplier<T> action) {
+        writeLock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            writeLock.writeLock().unlock();
+        }
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Replaces the content of the index.
+     */
+    synchronized void load(List<Room> rooms, List<Stay> activeStays) {
+        schedules.clear();
+        stays.clear();
+        fullyBooked = null;
+        for (var room : rooms) {
+            putRoom(room);
+        }
+        for (var stay : activeStays) {
+            addStay(stay);
+        }
+        loaded = true;
+    }
+
+    synchronized void putRoom(Room room) {
+        var schedule = schedules.get(room.getId());
+        if (schedule == null) {
+            schedules.put(room.getId(), new RoomSchedule(room, new OccupancyCalendar(firstDay, horizonDays)));
+            fullyBooked = null;
+        } else {
+            // the details of the room changed, its stays did not
+            schedule.room = room;
+        }
+    }
+
+    synchronized void removeRoom(Room room) {
+        schedules.remove(room.getId());
+        fullyBooked = null;
+        stays.values().removeIf(stay -> stay.roomId == room.getId());
+    }
+
+    /**
+     * Records the current state of a stored reservation: its stay blocks its room until it is
+     * checked out.
+     */
+    synchronized void putReservation(Reservation reservation) {
+        removeReservation(reservation);
+        if (reservation.getCheckOutDate() != null || reservation.getRoom() == null) {
+            return;
+        }
+        addStay(new Stay(reservation.getId(), reservation.getRoom().getId(),
+                reservation.getExpectedCheckInDate(), reservation.getExpectedCheckOutDate()));
+    }
+
+    synchronized void removeReservation(Reservation reservation) {
+        var stay = stays.remove(reservation.getId());
+        if (stay != null) {
+            var schedule = schedules.get(stay.roomId);
+            if (schedule != null) {
+                schedule.stays.remove(stay.reservationId, stay.start);
+                schedule.calendar.clear(stay.start, stay.end);
+                // stays of the room may overlap, so nights still covered by another one are restored
+                for (long day = Math.max(stay.start, firstDay); day < Math.min(stay.end, firstDay + horizonDays); day++) {
+                    if (schedule.stays.overlaps(day, day + 1)) {
+                        schedule.calendar.set(day, day + 1);
+                    }
+                }
+                fullyBooked = null;
+            }
+        }
+    }
+
+    private void addStay(Stay stay) {
+        var schedule = schedules.get(stay.roomId);
+        if (schedule != null) {
+            schedule.stays.insert(stay.reservationId, stay.start, stay.end);
+            schedule.calendar.set(stay.start, stay.end);
+            fullyBooked = null;
+            stays.put(stay.reservationId, stay);
+        }
+    }
+
+    /**
+     * Returns the rooms, ordered by ID, that have no active reservation overlapping the stay
+     * from {@code in} to {@code out}.
+     */
+    public synchronized List<Room> findAvailableRooms(LocalDate in, LocalDate out) {
+        long start = in.toEpochDay();
+        long end = out.toEpochDay();
+        List<Room> available = new ArrayList<>();
+        for (var schedule : schedules.values()) {
+            if (schedule.isFree(start, end)) {
+                available.add(schedule.room);
+            }
+        }
+        available.sort(Comparator.comparing(Room::getId));
+        return available;
+    }
+
+    /**
+     * Returns whether the calendars cover all stays of the search.
+     */
+    synchronized boolean covers(StaySearch search) {
+        long start = search.getEarliestCheckIn().toEpochDay();
+        return start >= firstDay && start + search.getDays() <= firstDay + horizonDays;
+    }
+
+    /**
+     * Returns the best stays of the search, in {@link StayOption#ORDER}, from one pass over the
+     * calendars of the matching rooms; the search must be {@linkplain #covers covered}.
+     */
+    synchronized List<StayOption> findStayOptions(StaySearch search) {
+        long start = search.getEarliestCheckIn().toEpochDay();
+        long end = search.getLatestCheckIn().toEpochDay() + 1;
+        // the worst of the best options found so far is at the head
+        var best = new PriorityQueue<>(search.getLimit() + 1, StayOption.ORDER.reversed());
+        for (var schedule : schedules.values()) {
+            if (!search.matches(schedule.room)) {
+                continue;
+            }
+            var starts = schedule.calendar.freeStarts(start, end, search.getNights());
+            days:
+            for (int w = 0; w < starts.length; w++) {
+                for (long bits = starts[w]; bits != 0; bits &= bits - 1) {
+                    var checkIn = LocalDate.ofEpochDay(start + (w << 6) + Long.numberOfTrailingZeros(bits));
+                    if (best.size() == search.getLimit() && best.peek().getCheckIn().isBefore(checkIn)) {
+                        // later check-ins of this room rank lower still
+                        break days;
+                    }
+                    best.add(new StayOption(schedule.room, checkIn, checkIn.plusDays(search.getNights())));
+                    if (best.size() > search.getLimit()) {
+                        best.poll();
+                    }
+                }
+            }
+        }
+        List<StayOption> options = new ArrayList<>(best);
+        options.sort(StayOption.ORDER);
+        return options;
+    }
+
+    /**
+     * Returns whether every room is occupied on the night starting on {@code night}. Nights outside
+     * the horizon and hotels without rooms are never reported as fully booked.
+     */
+    public synchronized boolean isFullyBooked(LocalDate night) {
+        if (schedules.isEmpty()) {
+            return false;
+        }
+        long day = night.toEpochDay();
+        if (day < firstDay || day >= firstDay + horizonDays) {
+            return false;
+        }
+        if (fullyBooked == null) {
+            fullyBooked = computeFullyBooked();
+        }
+        int bit = (int) (day - firstDay);
+        return (fullyBooked[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private long[] computeFullyBooked() {
+        long[] nights = null;
+        for (var schedule : schedules.values()) {
+            if (nights == null) {
+                nights = schedule.calendar.allNights();
+            }
+            schedule.calendar.retainOccupied(nights);
+        }
+        return nights;
+    }
+}
@@ -0,0 +1,114 @@
+package data;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Inserts a collection of entities using JDBC batches inside a single transaction.
+ * <p>
+ * Derby returns only the last generated key after {@code executeBatch()}, so the table is locked
+ * exclusively for the transaction and the keys of each chunk are read back in insertion order.
+ */
+final class BulkInsert<E> {
+
+    static final int DEFAULT_CHUNK_SIZE = 500;
+
+    interface Binder<E> {
+        void bind(PreparedStatement st, E entity) throws SQLException;
+    }
+
+    private final String table;
+    private final String insertSql;
+    private final Binder<E> binder;
+    private final BiConsumer<E, Long> idSetter;
+
+    BulkInsert(String table, String insertSql, Binder<E> binder, BiConsumer<E, Long> idSetter) {
+        this.table = table;
+        this.insertSql = insertSql;
+        this.binder = binder;
+        this.idSetter = idSetter;
+    }
+
+    /**
+     * Inserts all entities or none of them. On failure the IDs assigned so far are reset to
+     * {@code null} and the original {@link SQLException} is rethrown.
+     */
+    void insert(DataSource dataSource, Collection<E> entities, int chunkSize) throws SQLException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        if (entities.isEmpty()) {
+            return;
+        }
+        List<E> assigned = new ArrayList<>(entities.size());
+        try (var connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                lockTable(connection);
+                long lastId = maxId(connection);
+                try (var st = connection.prepareStatement(insertSql)) {
+                    List<E> chunk = new ArrayList<>(Math.min(chunkSize, entities.size()));
+                    for (E entity : entities) {
+                        binder.bind(st, entity);
+                        st.addBatch();
+                        chunk.add(entity);
+                        if (chunk.size() == chunkSize) {
+                            lastId = flush(connection, st, chunk, lastId, assigned);
+                        }
+                    }
+                    if (!chunk.isEmpty()) {
+                        flush(connection, st, chunk, lastId, assigned);
+                    }
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException ex) {
+                connection.rollback();
+                for (E entity : assigned) {
+                    idSetter.accept(entity, null);
+                }
+                throw ex;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private long flush(Connection connection, PreparedStatement st, List<E> chunk, long lastId, List<E> assigned) throws SQLException {
+        st.executeBatch();
+        try (var keys = connection.prepareStatement("SELECT ID FROM " + table + " WHERE ID > ? ORDER BY ID")) {
+            keys.setLong(1, lastId);
+            try (var rs = keys.executeQuery()) {
+                for (E entity : chunk) {
+                    if (!rs.next()) {
+                        throw new SQLException("Missing generated key for " + entity);
+                    }
+                    lastId = rs.getLong(1);
+                    idSetter.accept(entity, lastId);
+                    assigned.add(entity);
+                }
+            }
+        }
+        chunk.clear();
+        return lastId;
+    }
+
+    private void lockTable(Connection connection) throws SQLException {
+        try (var st = connection.createStatement()) {
+            st.executeUpdate("LOCK TABLE " + table + " IN EXCLUSIVE MODE");
+        }
+    }
+
+    private long maxId(Connection connection) throws SQLException {
+        try (var st = connection.prepareStatement("SELECT MAX(ID) FROM " + table);
+             var rs = st.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package data;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Handle through which another thread stops a running DAO query. A cancelled query throws
+ * {@link QueryCancelledException} and returns its connection to the pool.
+ * <p>
+ * The query checks the token before it starts and before each row it reads, and asks the driver to
+ * cancel its statement. Derby does not support {@link Statement#cancel()}, so a query that spends a
+ * long time before returning its first row is bounded only by its timeout.
+ */
+public final class CancellationToken {
+
+    private final Set<Statement> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+        for (var statement : running) {
+            cancel(statement);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void throwIfCancelled() {
+        if (cancelled) {
+            throw new QueryCancelledException("Query cancelled");
+        }
+    }
+
+    /**
+     * Applies the timeout to the statement and registers it for cancelling until {@link #end}.
+     *
+     * @param timeout longest time the statement may run, rounded up to whole seconds, or
+     *                {@code null} for no limit
+     */
+    void begin(Statement statement, Duration timeout) throws SQLException {
+        throwIfCancelled();
+        if (timeout != null) {
+            long millis = timeout.toMillis();
+            statement.setQueryTimeout((int) Math.max(1, Math.min(Integer.MAX_VALUE, (millis + 999) / 1000)));
+        }
+        running.add(statement);
+        if (cancelled) {
+            cancel(statement);
+        }
+    }
+
+    void end(Statement statement) {
+        running.remove(statement);
+    }
+
+    /**
+     * Returns the exception for a failed query: {@link QueryCancelledException} if the statement was
+     * cancelled or timed out, otherwise {@link DataException}.
+     */
+    DataException failure(String message, SQLException e) {
+        if (e instanceof SQLTimeoutException) {
+            return new QueryCancelledException(message + ": query timed out", e);
+        }
+        if (cancelled) {
+            return new QueryCancelledException(message + ": query cancelled", e);
+        }
+        return new DataException(message, e);
+    }
+
+    private static void cancel(Statement statement) {
+        try {
+            statement.cancel();
+        } catch (SQLException ignored) {
+            // not supported by the driver, or the statement has already completed
+        }
+    }
+}
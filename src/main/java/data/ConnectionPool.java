@@ -0,0 +1,560 @@
+package data;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded pool of physical connections obtained from another {@link DataSource}.
+ * <p>
+ * Connections handed out by {@link #getConnection()} return to the pool when closed. Each pooled
+ * connection keeps an LRU cache of its prepared statements, so DAO code that prepares the same SQL
+ * on every call compiles it only once per physical connection.
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    private final DataSource target;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final DaoMetrics metrics = new DaoMetrics("ConnectionPool");
+    private final OperationMetrics acquireMetrics = metrics.operation("getConnection");
+
+    private int minSize = 1;
+    private int maxSize = 10;
+    private Duration acquireTimeout = Duration.ofSeconds(30);
+    private Duration idleTimeout = Duration.ofMinutes(5);
+    private int statementCacheSize = 50;
+
+    private int openCount;
+    private boolean closed;
+    private ScheduledExecutorService evictor;
+
+    public ConnectionPool(DataSource target) {
+        this.target = Objects.requireNonNull(target, "target");
+    }
+
+    public void setMinSize(int minSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("Minimal pool size must not be negative: " + minSize);
+        }
+        this.minSize = minSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximal pool size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    public void setAcquireTimeout(Duration acquireTimeout) {
+        this.acquireTimeout = Objects.requireNonNull(acquireTimeout, "acquireTimeout");
+    }
+
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = Objects.requireNonNull(idleTimeout, "idleTimeout");
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("Statement cache size must not be negative: " + statementCacheSize);
+        }
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getOpenCount() {
+        lock.lock();
+        try {
+            return openCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the time taken to acquire connections, which includes waiting for one to be released
+     * and opening new physical connections, as operation {@code getConnection}.
+     */
+    public DaoMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            var connection = acquire(start);
+            acquireMetrics.record(System.nanoTime() - start);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            acquireMetrics.recordFailure(System.nanoTime() - start, e);
+            throw e;
+        }
+    }
+
+    private Connection acquire(long start) throws SQLException {
+        long deadline = start + acquireTimeout.toNanos();
+        lock.lock();
+        try {
+            startEvictor();
+            while (true) {
+                if (closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+                var pooled = idle.pollFirst();
+                if (pooled != null) {
+                    return pooled.checkOut();
+                }
+                if (openCount < maxSize) {
+                    openCount++;
+                    break;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new SQLTimeoutException("Timed out after " + acquireTimeout.toMillis()
+                            + " ms waiting for one of " + maxSize + " pooled connections");
+                }
+                released.awaitNanos(remaining);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", ex);
+        } finally {
+            lock.unlock();
+        }
+        return openPhysical().checkOut();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections use the credentials of the target data source");
+    }
+
+    /**
+     * Closes all idle connections and stops the eviction thread. Connections that are in use are
+     * closed as soon as they are returned.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            if (evictor != null) {
+                evictor.shutdownNow();
+            }
+            while (!idle.isEmpty()) {
+                discard(idle.pollFirst());
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private PooledConnection openPhysical() throws SQLException {
+        try {
+            return new PooledConnection(target.getConnection());
+        } catch (SQLException | RuntimeException ex) {
+            lock.lock();
+            try {
+                openCount--;
+                released.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw ex;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        boolean healthy = pooled.reset();
+        lock.lock();
+        try {
+            if (healthy && !closed) {
+                pooled.lastUsed = System.nanoTime();
+                idle.addFirst(pooled);
+            } else {
+                discard(pooled);
+            }
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private void discard(PooledConnection pooled) {
+        openCount--;
+        pooled.closePhysical();
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private void startEvictor() {
+        if (evictor != null || idleTimeout.isZero() || idleTimeout.isNegative()) {
+            return;
+        }
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, idleTimeout.toMillis() / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    void evictIdle() {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            // idle is ordered from the most to the least recently used connection
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && openCount > minSize) {
+                var pooled = it.next();
+                if (now - pooled.lastUsed < idleTimeout.toNanos()) {
+                    break;
+                }
+                it.remove();
+                discard(pooled);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return target.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        target.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        target.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return target.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return target.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return target.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || target.isWrapperFor(iface);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private final class PooledConnection {
+
+        private final Connection physical;
+        private final Map<StatementKey, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+        private long lastUsed;
+        /**
+         * Handle of the current checkout, returned by {@code getConnection()} of cached statements.
+         */
+        private Connection handle;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        private Connection checkOut() {
+            handle = (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new ConnectionHandle(this));
+            return handle;
+        }
+
+        private PreparedStatement prepare(StatementKey key) throws SQLException {
+            var cached = statements.get(key);
+            if (cached != null && !cached.inUse) {
+                cached.inUse = true;
+                return cached.proxy;
+            }
+            var statement = key.prepare(physical);
+            if (cached != null || statementCacheSize == 0) {
+                // the cached statement is already in use by the caller, hand out a private one
+                return proxy(new StatementHandle(this, null, statement));
+            }
+            cached = new CachedStatement(statement);
+            cached.proxy = proxy(new StatementHandle(this, cached, statement));
+            cached.inUse = true;
+            statements.put(key, cached);
+            if (statements.size() > statementCacheSize) {
+                evictStatements();
+            }
+            return cached.proxy;
+        }
+
+        private PreparedStatement proxy(StatementHandle statementHandle) {
+            return (PreparedStatement) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, statementHandle);
+        }
+
+        private void evictStatements() {
+            var it = statements.values().iterator();
+            while (statements.size() > statementCacheSize && it.hasNext()) {
+                var eldest = it.next();
+                if (!eldest.inUse) {
+                    it.remove();
+                    eldest.closePhysical();
+                }
+            }
+        }
+
+        /**
+         * Prepares the connection for its next user and reports whether it can be reused.
+         */
+        private boolean reset() {
+            try {
+                if (physical.isClosed()) {
+                    return false;
+                }
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                physical.clearWarnings();
+                for (var cached : statements.values()) {
+                    cached.inUse = false;
+                }
+                return true;
+            } catch (SQLException ex) {
+                LOGGER.log(Level.WARNING, "Discarding pooled connection that could not be reset", ex);
+                return false;
+            }
+        }
+
+        private void closePhysical() {
+            for (var cached : statements.values()) {
+                cached.closePhysical();
+            }
+            statements.clear();
+            try {
+                physical.close();
+            } catch (SQLException ex) {
+                LOGGER.log(Level.FINE, "Failed to close pooled connection", ex);
+            }
+        }
+    }
+
+    private final class ConnectionHandle implements InvocationHandler {
+
+        private PooledConnection pooled;
+
+        private ConnectionHandle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (pooled != null) {
+                        var toRelease = pooled;
+                        pooled = null;
+                        release(toRelease);
+                    }
+                    return null;
+                case "isClosed":
+                    return pooled == null || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + (pooled == null ? "[closed]" : pooled.physical.toString());
+                default:
+                    break;
+            }
+            if (pooled == null) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (method.getName().equals("prepareStatement")) {
+                var key = StatementKey.of(args);
+                if (key != null) {
+                    return pooled.prepare(key);
+                }
+            }
+            return ConnectionPool.invoke(pooled.physical, method, args);
+        }
+    }
+
+    private static final class CachedStatement {
+
+        private final PreparedStatement physical;
+        private PreparedStatement proxy;
+        private boolean inUse;
+
+        private CachedStatement(PreparedStatement physical) {
+            this.physical = physical;
+        }
+
+        private void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException ex) {
+                LOGGER.log(Level.FINE, "Failed to close cached statement", ex);
+            }
+        }
+    }
+
+    /**
+     * Statement handed out by a pooled connection. Closing a cached statement keeps the physical
+     * one open for the next user; a private statement, prepared while the cached one was in use, is
+     * closed for real.
+     */
+    private static final class StatementHandle implements InvocationHandler {
+
+        private final PooledConnection pooled;
+        private final CachedStatement cached;
+        private final PreparedStatement physical;
+        /**
+         * Handle a private statement was prepared on; a cached statement belongs to the current one.
+         */
+        private final Connection connection;
+
+        private StatementHandle(PooledConnection pooled, CachedStatement cached, PreparedStatement physical) {
+            this.pooled = pooled;
+            this.cached = cached;
+            this.physical = physical;
+            this.connection = pooled.handle;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (cached == null) {
+                        physical.close();
+                    } else if (cached.inUse) {
+                        cached.inUse = false;
+                        physical.clearParameters();
+                        physical.clearBatch();
+                        physical.setQueryTimeout(0);
+                    }
+                    return null;
+                case "isClosed":
+                    return cached != null && !cached.inUse || physical.isClosed();
+                case "getConnection":
+                    return cached != null ? pooled.handle : connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return ConnectionPool.invoke(physical, method, args);
+            }
+        }
+    }
+
+    private static final class StatementKey {
+
+        private final String sql;
+        private final int autoGeneratedKeys;
+
+        private StatementKey(String sql, int autoGeneratedKeys) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+        }
+
+        /**
+         * Returns the cache key for {@code prepareStatement(String)} and
+         * {@code prepareStatement(String, int)}, or {@code null} for the overloads that are not cached.
+         */
+        private static StatementKey of(Object[] args) {
+            if (args.length == 1) {
+                return new StatementKey((String) args[0], java.sql.Statement.NO_GENERATED_KEYS);
+            }
+            if (args.length == 2 && args[1] instanceof Integer) {
+                return new StatementKey((String) args[0], (Integer) args[1]);
+            }
+            return null;
+        }
+
+        private PreparedStatement prepare(Connection connection) throws SQLException {
+            return connection.prepareStatement(sql, autoGeneratedKeys);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            StatementKey that = (StatementKey) o;
+            return autoGeneratedKeys == that.autoGeneratedKeys && sql.equals(that.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sql.hashCode() + autoGeneratedKeys;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Correlation ID of the work running on the current thread, which links the Flight Recorder events
+ * of a user action to those of the tasks, DAO calls and statements it causes. Executors that pass
+ * work between threads carry the ID over with {@link #propagate(Runnable)}.
+ */
+public final class Correlation {
+
+    /**
+     * No correlation ID.
+     */
+    public static final long NONE = 0;
+
+    private static final AtomicLong LAST_ID = new AtomicLong();
+    private static final ThreadLocal<long[]> CURRENT = ThreadLocal.withInitial(() -> new long[1]);
+
+    private Correlation() {
+    }
+
+    public static long newId() {
+        return LAST_ID.incrementAndGet();
+    }
+
+    /**
+     * Returns the ID of the current thread, or {@link #NONE}.
+     */
+    public static long current() {
+        return CURRENT.get()[0];
+    }
+
+    /**
+     * Makes {@code id} the ID of the current thread.
+     *
+     * @return the previous ID, to be passed to {@link #restore(long)}
+     */
+    public static long enter(long id) {
+        var current = CURRENT.get();
+        long previous = current[0];
+        current[0] = id;
+        return previous;
+    }
+
+    public static void restore(long previous) {
+        CURRENT.get()[0] = previous;
+    }
+
+    /**
+     * Returns a task that runs {@code task} with the ID of the calling thread.
+     */
+    public static Runnable propagate(Runnable task) {
+        long id = current();
+        if (id == NONE) {
+            return task;
+        }
+        return () -> {
+            long previous = enter(id);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+}
@@ -0,0 +1,30 @@
+package data;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("hotel.DaoCall")
+@Label("DAO Call")
+@Category({"Hotel", "Database"})
+@Description("Call of a RoomDao or ReservationDao method")
+class DaoCallEvent extends Event {
+
+    @Label("DAO")
+    String dao;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Rows")
+    @Description("Number of rows returned, or -1 if the method does not return a list")
+    long rows;
+
+    @Label("Failure")
+    String failure;
+
+    @Label("Correlation ID")
+    long correlationId;
+}
@@ -0,0 +1,117 @@
+package data;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The {@link OperationMetrics} of the operations of one component, e.g. a DAO, by operation name.
+ * Once {@linkplain #register(MBeanServer) registered}, each operation is an MBean named
+ * {@code hotel:type=<component>,operation=<name>}.
+ */
+public final class DaoMetrics {
+
+    private static final Logger LOGGER = Logger.getLogger(DaoMetrics.class.getName());
+
+    private final String component;
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private volatile MBeanServer server;
+
+    public DaoMetrics(String component) {
+        this.component = component;
+    }
+
+    public String getComponent() {
+        return component;
+    }
+
+    public OperationMetrics operation(String name) {
+        var metrics = operations.get(name);
+        if (metrics == null) {
+            metrics = operations.computeIfAbsent(name, n -> new OperationMetrics());
+            var mbeanServer = server;
+            if (mbeanServer != null) {
+                register(mbeanServer, name, metrics);
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics of the operations called so far, by name.
+     */
+    public Map<String, OperationMetrics> getOperations() {
+        return Collections.unmodifiableMap(new TreeMap<>(operations));
+    }
+
+    public void reset() {
+        operations.values().forEach(OperationMetrics::reset);
+    }
+
+    /**
+     * Registers the metrics of the operations called so far, and of the others once they are first
+     * called, with the MBean server.
+     */
+    public void register(MBeanServer server) {
+        this.server = server;
+        operations.forEach((name, metrics) -> register(server, name, metrics));
+    }
+
+    private void register(MBeanServer server, String name, OperationMetrics metrics) {
+        try {
+            server.registerMBean(metrics, new ObjectName("hotel:type=" + component + ",operation=" + name));
+        } catch (InstanceAlreadyExistsException e) {
+            // registered by a concurrent first call
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Failed to register metrics of " + component + "." + name, e);
+        }
+    }
+
+    /**
+     * Runs a call of the operation, recording it also as a Flight Recorder event when that is enabled.
+     */
+    <T> T call(String operation, Supplier<T> body) {
+        var event = new DaoCallEvent();
+        event.begin();
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = body.get();
+        } catch (RuntimeException e) {
+            operation(operation).recordFailure(System.nanoTime() - start, e);
+            commit(event, operation, -1, e);
+            throw e;
+        }
+        operation(operation).record(System.nanoTime() - start);
+        commit(event, operation, result instanceof Collection ? ((Collection<?>) result).size() : -1, null);
+        return result;
+    }
+
+    private void commit(DaoCallEvent event, String operation, long rows, RuntimeException failure) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.dao = component;
+            event.operation = operation;
+            event.rows = rows;
+            event.failure = failure != null ? OperationMetrics.cause(failure) : null;
+            event.correlationId = Correlation.current();
+            event.commit();
+        }
+    }
+
+    void run(String operation, Runnable body) {
+        call(operation, () -> {
+            body.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,201 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory trigram index of the guest name, e-mail and phone of reservations, answering
+ * case-insensitive substring queries without scanning all reservations.
+ * <p>
+ * Every reservation gets a document number; for every trigram of each of its lower-cased fields the
+ * index keeps the ascending list of documents containing it in that field. A query intersects the
+ * lists of its own trigrams, smallest first, and then checks the remaining candidates against the
+ * stored field, so that trigrams found in different places do not produce false matches. Changed and removed
+ * reservations leave their old document behind until the lists are compacted.
+ */
+public class GuestSearchIndex {
+
+    public enum Field {
+        NAME, EMAIL, PHONE
+    }
+
+    /**
+     * Shortest query the trigrams can serve; shorter ones are answered by the database.
+     */
+    public static final int MIN_QUERY_LENGTH = 3;
+
+    private static final class Document {
+        private final long reservationId;
+        private final String[] fields;
+
+        private Document(long reservationId, String[] fields) {
+            this.reservationId = reservationId;
+            this.fields = fields;
+        }
+    }
+
+    private static final class Postings {
+        private int[] documents = new int[4];
+        private int size;
+
+        private void add(int document) {
+            if (size > 0 && documents[size - 1] == document) {
+                return;
+            }
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+            }
+            documents[size++] = document;
+        }
+    }
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final List<Document> documents = new ArrayList<>();
+    private final Map<Long, Integer> documentByReservation = new HashMap<>();
+    private int removed;
+
+    public synchronized int size() {
+        return documentByReservation.size();
+    }
+
+    /**
+     * Adds a reservation or replaces its previously indexed fields.
+     */
+    public synchronized void put(long reservationId, String name, String email, String phone) {
+        remove(reservationId);
+        int document = documents.size();
+        var fields = new String[]{normalize(name), normalize(email), normalize(phone)};
+        documents.add(new Document(reservationId, fields));
+        documentByReservation.put(reservationId, document);
+        for (var field : Field.values()) {
+            var value = fields[field.ordinal()];
+            for (int i = 0; i + MIN_QUERY_LENGTH <= value.length(); i++) {
+                postings.computeIfAbsent(trigram(field, value, i), t -> new Postings()).add(document);
+            }
+        }
+    }
+
+    public synchronized void remove(long reservationId) {
+        var document = documentByReservation.remove(reservationId);
+        if (document != null) {
+            documents.set(document, null);
+            removed++;
+            if (removed > 1024 && removed > documents.size() / 2) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Returns the IDs of reservations where one of the given fields contains {@code query}, ignoring
+     * case. Reservations where a field starts with the query come first; otherwise the IDs are in
+     * ascending order.
+     *
+     * @param limit the greatest number of matching reservations the caller is interested in
+     * @return the matching IDs, or {@code null} if more than {@code limit} reservations match
+     * @throws IllegalArgumentException if the query is shorter than {@link #MIN_QUERY_LENGTH}
+     */
+    public synchronized List<Long> search(String query, int limit, Field... fields) {
+        var normalized = normalize(query);
+        if (normalized.length() < MIN_QUERY_LENGTH) {
+            throw new IllegalArgumentException("Query too short for trigram search: " + query);
+        }
+        // reservation ID -> whether a field starts with the query
+        Map<Long, Boolean> matches = new HashMap<>();
+        for (var field : fields) {
+            for (int document : candidates(field, normalized)) {
+                var doc = documents.get(document);
+                if (doc == null) {
+                    continue;
+                }
+                var value = doc.fields[field.ordinal()];
+                if (value.startsWith(normalized)) {
+                    matches.put(doc.reservationId, true);
+                } else if (value.contains(normalized)) {
+                    matches.putIfAbsent(doc.reservationId, false);
+                }
+                if (matches.size() > limit) {
+                    return null;
+                }
+            }
+        }
+        List<Long> ids = new ArrayList<>(matches.keySet());
+        ids.sort(Comparator.comparing((Long id) -> !matches.get(id)).thenComparing(Comparator.naturalOrder()));
+        return ids;
+    }
+
+    private int[] candidates(Field field, String query) {
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i + MIN_QUERY_LENGTH <= query.length(); i++) {
+            var list = postings.get(trigram(field, query, i));
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        var result = Arrays.copyOf(lists.get(0).documents, lists.get(0).size);
+        int size = result.length;
+        for (int l = 1; l < lists.size() && size > 0; l++) {
+            size = intersect(result, size, lists.get(l));
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Keeps in the first {@code size} elements of {@code result} only the documents that are also
+     * in {@code list}. Each document is looked up by galloping from the previous position, which
+     * costs little both when the lists are of similar length and when {@code list} is much longer.
+     */
+    private static int intersect(int[] result, int size, Postings list) {
+        int kept = 0;
+        int from = 0;
+        for (int i = 0; i < size && from < list.size; i++) {
+            int bound = 1;
+            while (from + bound < list.size && list.documents[from + bound] < result[i]) {
+                bound <<= 1;
+            }
+            int position = Arrays.binarySearch(list.documents, from, Math.min(from + bound + 1, list.size), result[i]);
+            if (position >= 0) {
+                result[kept++] = result[i];
+                from = position + 1;
+            } else {
+                from = -position - 1;
+            }
+        }
+        return kept;
+    }
+
+    private void compact() {
+        var live = new ArrayList<>(documents);
+        postings.clear();
+        documents.clear();
+        documentByReservation.clear();
+        removed = 0;
+        for (var doc : live) {
+            if (doc != null) {
+                put(doc.reservationId, doc.fields[0], doc.fields[1], doc.fields[2]);
+            }
+        }
+    }
+
+    /**
+     * Packs the field and the three characters into a long and scrambles it with an odd multiplier,
+     * which keeps keys unique but spreads them over the hash map; the packed value alone collides
+     * badly in {@link Long#hashCode()}.
+     */
+    private static long trigram(Field field, String value, int start) {
+        long packed = ((long) field.ordinal() << 48) | ((long) value.charAt(start) << 32)
+                | ((long) value.charAt(start + 1) << 16) | value.charAt(start + 2);
+        return packed * 0x9E3779B97F4A7C15L;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+}
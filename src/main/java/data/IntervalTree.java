@@ -0,0 +1,157 @@
+package data;
+
+import java.util.SplittableRandom;
+
+/**
+ * Set of half-open day intervals {@code [start, end)} identified by a key, answering whether any of
+ * them overlaps a given interval in {@code O(log n)}.
+ * <p>
+ * It is a treap ordered by interval start (ties broken by key) where every node also stores the
+ * greatest end in its subtree. Not thread-safe.
+ */
+final class IntervalTree {
+
+    private static final class Node {
+        private final long start;
+        private final long end;
+        private final long key;
+        private final int priority;
+        private long maxEnd;
+        private Node left;
+        private Node right;
+
+        private Node(long start, long end, long key, int priority) {
+            this.start = start;
+            this.end = end;
+            this.key = key;
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+    }
+
+    private final SplittableRandom random = new SplittableRandom();
+    private Node root;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void insert(long key, long start, long end) {
+        root = insert(root, new Node(start, end, key, random.nextInt()));
+        size++;
+    }
+
+    /**
+     * Removes the interval previously inserted with the same key and start.
+     */
+    boolean remove(long key, long start) {
+        int before = size;
+        root = remove(root, key, start);
+        return size < before;
+    }
+
+    boolean overlaps(long start, long end) {
+        var node = root;
+        while (node != null) {
+            if (node.start < end && node.end > start) {
+                return true;
+            }
+            // if the left subtree reaches past start but holds no overlap, its latest-ending interval
+            // starts at or after end, and so does everything in the right subtree
+            if (node.left != null && node.left.maxEnd > start) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return false;
+    }
+
+    private static int compare(long start, long key, Node node) {
+        int byStart = Long.compare(start, node.start);
+        return byStart != 0 ? byStart : Long.compare(key, node.key);
+    }
+
+    private static Node insert(Node node, Node inserted) {
+        if (node == null) {
+            return inserted;
+        }
+        if (compare(inserted.start, inserted.key, node) < 0) {
+            node.left = insert(node.left, inserted);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, inserted);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private Node remove(Node node, long key, long start) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(start, key, node);
+        if (cmp < 0) {
+            node.left = remove(node.left, key, start);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, key, start);
+        } else {
+            size--;
+            return merge(node.left, node.right);
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        var pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        var pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node node) {
+        long maxEnd = node.end;
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+}
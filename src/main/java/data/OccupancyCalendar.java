@@ -0,0 +1,153 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * Bitmap of the occupied nights of one room over a fixed horizon of days, one bit per night.
+ * Ranges of nights are set, cleared and tested a 64-bit word at a time. Days are epoch days and
+ * ranges are half-open, {@code [start, end)}; parts of a range outside the horizon are ignored.
+ * Not thread-safe.
+ */
+final class OccupancyCalendar {
+
+    private final long firstDay;
+    private final int days;
+    private final long[] words;
+
+    OccupancyCalendar(long firstDay, int days) {
+        this.firstDay = firstDay;
+        this.days = days;
+        this.words = new long[(days + 63) >>> 6];
+    }
+
+    /**
+     * Returns whether all nights from {@code start} to {@code end} are inside the horizon.
+     */
+    boolean covers(long start, long end) {
+        return start >= firstDay && end <= firstDay + days;
+    }
+
+    void set(long start, long end) {
+        forEachWord(start, end, true);
+    }
+
+    void clear(long start, long end) {
+        forEachWord(start, end, false);
+    }
+
+    boolean isOccupied(long day) {
+        if (!covers(day, day + 1)) {
+            return false;
+        }
+        int bit = (int) (day - firstDay);
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Returns whether no night from {@code start} to {@code end} is occupied; the range must be
+     * {@linkplain #covers covered} by the horizon.
+     */
+    boolean isFree(long start, long end) {
+        if (start >= end) {
+            return true;
+        }
+        int from = (int) (start - firstDay);
+        int to = (int) (end - firstDay);
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        for (int w = firstWord; w <= lastWord; w++) {
+            if ((words[w] & mask(w, firstWord, lastWord, from, to)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a bitmap of the days from {@code start} to {@code end} on which a stay of
+     * {@code nights} free nights can start: bit {@code i} is set if the nights from
+     * {@code start + i} to {@code start + i + nights} are all free. The nights up to
+     * {@code end - 1 + nights} must be {@linkplain #covers covered} by the horizon.
+     * <p>
+     * The free nights are copied a word at a time and runs are found by and-ing the bitmap with
+     * itself shifted, doubling the length of the runs each step, so that a stay of {@code n}
+     * nights takes about log2(n) passes over the few words of the window.
+     */
+    long[] freeStarts(long start, long end, int nights) {
+        int offset = (int) (start - firstDay);
+        int length = (int) (end - start) + nights - 1;
+        var free = new long[(length + 63) >>> 6];
+        for (int w = 0; w < free.length; w++) {
+            free[w] = ~bits(words, offset + (w << 6));
+        }
+        if ((length & 63) != 0) {
+            free[free.length - 1] &= -1L >>> (64 - (length & 63));
+        }
+        for (int run = 1; run < nights; ) {
+            int shift = Math.min(run, nights - run);
+            for (int w = 0; w < free.length; w++) {
+                free[w] &= bits(free, (w << 6) + shift);
+            }
+            run += shift;
+        }
+        return free;
+    }
+
+    /**
+     * Returns the 64 bits of {@code bitmap} starting at bit {@code from}, 0 past its end.
+     */
+    private static long bits(long[] bitmap, int from) {
+        int word = from >>> 6;
+        int shift = from & 63;
+        long low = word < bitmap.length ? bitmap[word] >>> shift : 0;
+        long high = shift != 0 && word + 1 < bitmap.length ? bitmap[word + 1] << (64 - shift) : 0;
+        return low | high;
+    }
+
+    /**
+     * Keeps in {@code nights} only the nights this room is occupied, used to find the nights on
+     * which every room is occupied.
+     */
+    void retainOccupied(long[] nights) {
+        for (int w = 0; w < words.length; w++) {
+            nights[w] &= words[w];
+        }
+    }
+
+    /**
+     * Returns a bitmap of this calendar's size with every night of the horizon set.
+     */
+    long[] allNights() {
+        var nights = new long[words.length];
+        Arrays.fill(nights, -1L);
+        if ((days & 63) != 0) {
+            nights[nights.length - 1] = -1L >>> (64 - (days & 63));
+        }
+        return nights;
+    }
+
+    private void forEachWord(long start, long end, boolean occupied) {
+        int from = (int) Math.max(0, start - firstDay);
+        int to = (int) Math.min(days, end - firstDay);
+        if (from >= to) {
+            return;
+        }
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        for (int w = firstWord; w <= lastWord; w++) {
+            long mask = mask(w, firstWord, lastWord, from, to);
+            words[w] = occupied ? words[w] | mask : words[w] & ~mask;
+        }
+    }
+
+    private static long mask(int word, int firstWord, int lastWord, int from, int to) {
+        long mask = -1L;
+        if (word == firstWord) {
+            mask &= -1L << (from & 63);
+        }
+        if (word == lastWord) {
+            mask &= -1L >>> (63 - ((to - 1) & 63));
+        }
+        return mask;
+    }
+}
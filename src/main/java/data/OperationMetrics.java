@@ -0,0 +1,179 @@
+package data;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call count, errors and latency histogram of one operation.
+ * <p>
+ * Recording takes no lock: counters are {@link LongAdder}s and the histogram is an array of atomic
+ * counters over buckets of microseconds. Below 16 µs every value has its own bucket; above, each
+ * power of two is split into eight buckets, so a bucket is at most an eighth wider than its lower
+ * bound. A {@link #reset()} running at the same time as a call may keep or drop that call.
+ */
+public final class OperationMetrics implements OperationMetricsMXBean {
+
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Latencies of 2^40 µs (about 12 days) and more share the last bucket.
+     */
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = LINEAR_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+    private final Map<String, LongAdder> errorsByCause = new ConcurrentHashMap<>();
+    private volatile long resetAt = System.nanoTime();
+
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        buckets.incrementAndGet(bucket(micros));
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    /**
+     * Records a failed call, which counts towards the latencies as well.
+     */
+    public void recordFailure(long nanos, Throwable failure) {
+        record(nanos);
+        errorCount.increment();
+        var cause = cause(failure);
+        var counter = errorsByCause.get(cause);
+        if (counter == null) {
+            counter = errorsByCause.computeIfAbsent(cause, c -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    @Override
+    public double getThroughput() {
+        long elapsed = System.nanoTime() - resetAt;
+        return elapsed <= 0 ? 0 : count.sum() * 1e9 / elapsed;
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long calls = count.sum();
+        return calls == 0 ? 0 : totalMicros.sum() / 1000.0 / calls;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return percentileMillis(0.50);
+    }
+
+    @Override
+    public double getP95Millis() {
+        return percentileMillis(0.95);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return percentileMillis(0.99);
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    @Override
+    public Map<String, Long> getErrorsByCause() {
+        Map<String, Long> errors = new TreeMap<>();
+        errorsByCause.forEach((cause, counter) -> errors.put(cause, counter.sum()));
+        return errors;
+    }
+
+    @Override
+    public void reset() {
+        resetAt = System.nanoTime();
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        errorCount.reset();
+        totalMicros.reset();
+        maxMicros.reset();
+        errorsByCause.clear();
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the call at the given fraction of the recorded
+     * calls, but no more than the longest call.
+     */
+    double percentileMillis(double fraction) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        int i = 0;
+        while (i < BUCKETS - 1 && (seen += counts[i]) < rank) {
+            i++;
+        }
+        return Math.min(upperBound(i), maxMicros.get()) / 1000.0;
+    }
+
+    static int bucket(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) Math.max(0, micros);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Names the failure by the exception that caused it: the cause of a {@link DataException}, or
+     * the failure itself.
+     */
+    static String cause(Throwable failure) {
+        var cause = failure instanceof DataException && failure.getCause() != null ? failure.getCause() : failure;
+        var name = cause.getClass().getSimpleName();
+        if (cause instanceof SQLException && ((SQLException) cause).getSQLState() != null) {
+            return name + " " + ((SQLException) cause).getSQLState();
+        }
+        return name;
+    }
+}
@@ -0,0 +1,37 @@
+package data;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link OperationMetrics}, as shown by JConsole or VisualVM. Latencies are
+ * in milliseconds; the percentiles are accurate to about 12 %.
+ */
+public interface OperationMetricsMXBean {
+
+    long getCount();
+
+    long getErrorCount();
+
+    /**
+     * Returns the number of calls per second since the metrics were created or last reset.
+     */
+    double getThroughput();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    /**
+     * Returns the number of failed calls by the class of the failure cause, with the SQL state for
+     * SQL exceptions.
+     */
+    Map<String, Long> getErrorsByCause();
+
+    void reset();
+}
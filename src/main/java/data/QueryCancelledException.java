@@ -0,0 +1,25 @@
+package data;
+
+import java.sql.SQLTimeoutException;
+
+/**
+ * Thrown by a DAO query that was stopped through its {@link CancellationToken} or because it ran
+ * longer than its timeout, so that callers can tell it apart from a failed query.
+ */
+public class QueryCancelledException extends DataException {
+
+    public QueryCancelledException(String msg) {
+        super(msg);
+    }
+
+    public QueryCancelledException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+
+    /**
+     * Returns whether the query was stopped by its timeout rather than cancelled.
+     */
+    public boolean isTimedOut() {
+        return getCause() instanceof SQLTimeoutException;
+    }
+}
@@ -3,21 +3,96 @@ package data;
 import model.*;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
 import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import static java.sql.Statement.RETURN_GENERATED_KEYS;
 
 public class ReservationDao {
 
+    private static final String INSERT_SQL = "INSERT INTO RESERVATION (GUEST_NAME, EMAIL, ADDRESS, PHONE, DETAILS, EXPECTED_CHECK_IN_DATE, EXPECTED_CHECK_OUT_DATE, CHECK_IN_DATE, CHECK_OUT_DATE, GUESTS_NUMBER, ROOM_ID) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String RESERVATION_COLUMNS = "SELECT RESERVATION.ID, GUEST_NAME, EMAIL, ADDRESS, PHONE, DETAILS, EXPECTED_CHECK_IN_DATE, EXPECTED_CHECK_OUT_DATE, CHECK_IN_DATE, CHECK_OUT_DATE, GUESTS_NUMBER, ROOM_ID";
+    private static final String SELECT_COLUMNS = RESERVATION_COLUMNS + ", \"ROOM_NUMBER\", \"PRICE\", \"BEDS_AMOUNT\", \"BED_TYPES\"";
+    private static final String SELECT_SQL = SELECT_COLUMNS + " FROM RESERVATION LEFT OUTER JOIN ROOM ON ROOM.ID = RESERVATION.ROOM_ID";
+    /**
+     * Used when rooms are resolved by the room cache instead of the join.
+     */
+    private static final String SELECT_WITHOUT_ROOM_SQL = RESERVATION_COLUMNS + " FROM RESERVATION";
+    /**
+     * The page is cut out of RESERVATION before the join; with the limit applied after the join
+     * Derby joins and sorts the whole table first.
+     */
+    private static final String PAGE_SQL = SELECT_COLUMNS +
+            " FROM (SELECT * FROM RESERVATION WHERE ID > ? ORDER BY ID FETCH FIRST ? ROWS ONLY) RESERVATION" +
+            " LEFT OUTER JOIN ROOM ON ROOM.ID = RESERVATION.ROOM_ID ORDER BY RESERVATION.ID";
+    private static final String PAGE_WITHOUT_ROOM_SQL = SELECT_WITHOUT_ROOM_SQL + " WHERE ID > ? ORDER BY ID FETCH FIRST ? ROWS ONLY";
+    /**
+     * Searches matching more reservations than this are left to the database, which streams the
+     * rows instead of loading them by ID.
+     */
+    private static final int MAX_INDEXED_RESULTS = 10_000;
+    private static final int IDS_PER_QUERY = 500;
+    /**
+     * Rows fetched from the database at a time by the streaming reads; embedded Derby streams its
+     * result sets anyway, so this matters only for a network driver.
+     */
+    private static final int FETCH_SIZE = 200;
+    /**
+     * Fields that decide whether a reservation occupies its room, and when.
+     */
+    private static final Set<Reservation.Field> STAY_FIELDS = EnumSet.of(Reservation.Field.EXPECTED_CHECK_IN_DATE,
+            Reservation.Field.EXPECTED_CHECK_OUT_DATE, Reservation.Field.CHECK_OUT_DATE, Reservation.Field.ROOM);
+    private static final Set<Reservation.Field> GUEST_FIELDS = EnumSet.of(Reservation.Field.GUEST_NAME,
+            Reservation.Field.EMAIL, Reservation.Field.PHONE);
+    private static final BulkInsert<Reservation> BULK_INSERT =
+            new BulkInsert<>("RESERVATION", INSERT_SQL, ReservationDao::setInsertParameters, Reservation::setId);
+
     private final DataSource dataSource;
+    private final RoomDao roomDao;
+    private final AvailabilityIndex availabilityIndex;
+    private volatile GuestSearchIndex searchIndex;
+    private final Object searchIndexLock = new Object();
+    /**
+     * Changes of guests made while the search index is being built, applied to the new index
+     * before it is published; {@code null} when no build runs.
+     */
+    private List<Consumer<GuestSearchIndex>> pendingGuestChanges;
     private final TableManager tableManager = new TableManager();
+    private final DaoMetrics metrics = new DaoMetrics("ReservationDao");
 
     public ReservationDao(DataSource dataSource) {
+        this(dataSource, null, null);
+    }
+
+    public ReservationDao(DataSource dataSource, AvailabilityIndex availabilityIndex) {
+        this(dataSource, null, availabilityIndex);
+    }
+
+    /**
+     * @param roomDao           DAO whose room cache provides the rooms of loaded reservations, so
+     *                          they are read without joining ROOM; or {@code null} to use the join
+     * @param availabilityIndex index kept up to date with the stored reservations, shared with the
+     *                          {@link RoomDao}, or {@code null}
+     */
+    public ReservationDao(DataSource dataSource, RoomDao roomDao, AvailabilityIndex availabilityIndex) {
         this.dataSource = dataSource;
+        this.roomDao = roomDao;
+        this.availabilityIndex = availabilityIndex;
     }
 
     public void initTable(){
@@ -26,33 +101,21 @@ public class ReservationDao {
 
 
     public void create(Reservation reservation) {
-        if (reservation.getId() != null) {
-            throw new IllegalArgumentException("Reservation already has ID: " + reservation);
-        }
-        try (var connection = dataSource.getConnection();
-             var st = connection.prepareStatement(
-                     "INSERT INTO RESERVATION (GUEST_NAME, EMAIL, ADDRESS, PHONE, DETAILS, EXPECTED_CHECK_IN_DATE, EXPECTED_CHECK_OUT_DATE, CHECK_IN_DATE, CHECK_OUT_DATE, GUESTS_NUMBER, ROOM_ID) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
-                     RETURN_GENERATED_KEYS)) {
-
-            st.setString(1, reservation.getGuest().getName());
-            st.setString(2, reservation.getGuest().getEmail());
-            st.setString(3, reservation.getGuest().getAddress());
-            st.setString(4, reservation.getGuest().getPhone());
-            st.setString(5, reservation.getGuest().getDetails());
-            st.setDate(6, Date.valueOf(reservation.getExpectedCheckInDate()));
-            st.setDate(7, Date.valueOf(reservation.getExpectedCheckOutDate()));
-            if (reservation.getCheckInDate() == null) {
-                st.setNull(8, Types.DATE);
-            } else {
-                st.setDate(8, Date.valueOf(reservation.getCheckInDate()));
-            }
-            if (reservation.getCheckOutDate() == null) {
-                st.setNull(9, Types.DATE);
-            } else {
-                st.setDate(9, Date.valueOf(reservation.getCheckOutDate()));
+        metrics.run("create", () -> writing(() -> {
+            checkNew(reservation);
+            try (var connection = dataSource.getConnection()) {
+                insert(connection, reservation);
+            } catch (SQLException e) {
+                throw new DataException("Failed to store reservation: " + reservation, e);
             }
-            st.setInt(10, reservation.getNumGuests());
-            st.setLong(11, reservation.getRoom().getId());
+            reservation.clearModifiedFields();
+            created(reservation);
+        }));
+    }
+
+    private void insert(Connection connection, Reservation reservation) throws SQLException {
+        try (var st = connection.prepareStatement(INSERT_SQL, RETURN_GENERATED_KEYS)) {
+            setInsertParameters(st, reservation);
             st.executeUpdate();
 
             try (var rs = st.getGeneratedKeys()) {
@@ -62,231 +125,684 @@ public class ReservationDao {
                     throw new DataException("Failed to fetch generated key: no key returned for reservation: " + reservation);
                 }
             }
-        } catch (SQLException e) {
-            throw new DataException("Failed to store reservation: " + reservation, e);
         }
     }
 
-    private void createTable() {
-        try (var connection = dataSource.getConnection();
-             var st = connection.createStatement()) {
-
-            st.executeUpdate("CREATE TABLE APP.RESERVATION (" +
-                    "ID BIGINT PRIMARY KEY GENERATED ALWAYS AS IDENTITY," +
-                    "GUEST_NAME VARCHAR(100) NOT NULL," +
-                    "EMAIL VARCHAR(100) NOT NULL," +
-                    "ADDRESS VARCHAR(100) NOT NULL," +
-                    "PHONE VARCHAR(20) NOT NULL," +
-                    "DETAILS VARCHAR(1000) NOT NULL," +
-                    "EXPECTED_CHECK_IN_DATE DATE NOT NULL," +
-                    "EXPECTED_CHECK_OUT_DATE DATE NOT NULL," +
-                    "CHECK_IN_DATE DATE," +
-                    "CHECK_OUT_DATE DATE," +
-                    "GUESTS_NUMBER INT NOT NULL," +
-                    "ROOM_ID INT NOT NULL" +
-                    ")");
-        } catch (SQLException e) {
-            throw new DataException("Failed to create RESERVATION table", e);
+    /**
+     * Runs a write of this DAO, so that it is not missed by a reload of the availability index.
+     */
+    private void writing(Runnable write) {
+        if (availabilityIndex != null) {
+            availabilityIndex.write(write);
+        } else {
+            write.run();
         }
     }
 
-    public void delete(Reservation reservation) {
-        if (reservation.getId() == null) {
-            throw new IllegalArgumentException("Reservation has null ID: " + reservation);
+    private void created(Reservation reservation) {
+        if (availabilityIndex != null) {
+            availabilityIndex.putReservation(reservation);
+        }
+        indexGuest(reservation);
+    }
+
+    public void createAll(Collection<Reservation> reservations) {
+        createAll(reservations, BulkInsert.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Stores all reservations in a single transaction, sending the inserts to the database in
+     * batches of {@code chunkSize}. Either all reservations are stored and get their generated IDs,
+     * or none of them is stored and their IDs stay {@code null}.
+     */
+    public void createAll(Collection<Reservation> reservations, int chunkSize) {
+        metrics.run("createAll", () -> writing(() -> {
+            for (var reservation : reservations) {
+                checkNew(reservation);
+            }
+            try {
+                BULK_INSERT.insert(dataSource, reservations, chunkSize);
+            } catch (SQLException e) {
+                throw new DataException("Failed to store " + reservations.size() + " reservations", e);
+            }
+            for (var reservation : reservations) {
+                reservation.clearModifiedFields();
+                created(reservation);
+            }
+        }));
+    }
+
+    private static void setInsertParameters(PreparedStatement st, Reservation reservation) throws SQLException {
+        st.setString(1, reservation.getGuest().getName());
+        st.setString(2, reservation.getGuest().getEmail());
+        st.setString(3, reservation.getGuest().getAddress());
+        st.setString(4, reservation.getGuest().getPhone());
+        st.setString(5, reservation.getGuest().getDetails());
+        st.setDate(6, Date.valueOf(reservation.getExpectedCheckInDate()));
+        st.setDate(7, Date.valueOf(reservation.getExpectedCheckOutDate()));
+        if (reservation.getCheckInDate() == null) {
+            st.setNull(8, Types.DATE);
+        } else {
+            st.setDate(8, Date.valueOf(reservation.getCheckInDate()));
+        }
+        if (reservation.getCheckOutDate() == null) {
+            st.setNull(9, Types.DATE);
+        } else {
+            st.setDate(9, Date.valueOf(reservation.getCheckOutDate()));
         }
-        try (var connection = dataSource.getConnection();
-             var st = connection.prepareStatement("DELETE FROM RESERVATION WHERE ID = ?")) {
+        st.setInt(10, reservation.getNumGuests());
+        st.setLong(11, reservation.getRoom().getId());
+    }
+
+    public void delete(Reservation reservation) {
+        metrics.run("delete", () -> writing(() -> {
+            checkStored(reservation);
+            try (var connection = dataSource.getConnection()) {
+                delete(connection, reservation);
+            } catch (SQLException x) {
+                throw new DataException("Failed to delete reservation " + reservation, x);
+            }
+            deleted(reservation);
+        }));
+    }
+
+    private void delete(Connection connection, Reservation reservation) throws SQLException {
+        try (var st = connection.prepareStatement("DELETE FROM RESERVATION WHERE ID = ?")) {
             st.setLong(1, reservation.getId());
             if (st.executeUpdate() == 0) {
                 throw new DataException("Failed to delete non-existing reservation: " + reservation);
             }
-        } catch (SQLException x) {
-            throw new DataException("Failed to delete reservation " + reservation, x);
         }
     }
 
+    private void deleted(Reservation reservation) {
+        if (availabilityIndex != null) {
+            availabilityIndex.removeReservation(reservation);
+        }
+        long id = reservation.getId();
+        changeSearchIndex(index -> index.remove(id));
+    }
+
     public List<Reservation> findAll() {
-        try (var connection = dataSource.getConnection();
-             var st = connection.prepareStatement(
-                     "SELECT RESERVATION.ID, GUEST_NAME, EMAIL, ADDRESS, PHONE, DETAILS, EXPECTED_CHECK_IN_DATE, EXPECTED_CHECK_OUT_DATE, CHECK_IN_DATE, CHECK_OUT_DATE, GUESTS_NUMBER, ROOM_ID" +
-                             ", \"ROOM_NUMBER\", \"PRICE\", \"BEDS_AMOUNT\", \"BED_TYPES\" FROM RESERVATION LEFT OUTER JOIN ROOM ON ROOM.ID = RESERVATION.ROOM_ID")) {
-
-            List<Reservation> reservations = new ArrayList<>();
-            try (var rs = st.executeQuery()) {
-                while (rs.next()) {
-                    Guest guest = new Guest(
-                            rs.getString("GUEST_NAME"),
-                            rs.getString("EMAIL"),
-                            rs.getString("ADDRESS"),
-                            rs.getString("DETAILS"),
-                            rs.getString("PHONE")
-                    );
-                    Reservation reservation = new Reservation(
-                            rs.getDate("EXPECTED_CHECK_IN_DATE").toLocalDate(),
-                            rs.getDate("EXPECTED_CHECK_OUT_DATE").toLocalDate(),
-                            rs.getInt("GUESTS_NUMBER"),
-                            guest
-                    );
-
-                    var roomId = rs.getLong("ROOM_ID");
-                    if (!rs.wasNull()) {
-                        RoomType roomType = new RoomType(
-                                BedType.valueOf(rs.getString("BED_TYPES")),
-                                rs.getInt("PRICE"),
-                                rs.getInt("BEDS_AMOUNT")
-                        );
-                        var room = new Room(rs.getInt("ROOM_NUMBER"),
-                                roomType);
-                        room.setId(roomId);
-                        reservation.setRoom(room);
-                    }
-                    var date = rs.getDate("CHECK_IN_DATE");
-                    if (!rs.wasNull()) {
-                        reservation.setCheckInDate(date.toLocalDate());
-                    } else {
-                        reservation.setCheckInDate(null);
-                    }
-                    date = rs.getDate("CHECK_OUT_DATE");
-                    if (!rs.wasNull()) {
-                        reservation.setCheckOutDate(date.toLocalDate());
-                    } else {
-                        reservation.setCheckOutDate(null);
+        List<Reservation> reservations = new ArrayList<>();
+        findAll(reservations::add);
+        return reservations;
+    }
+
+    /**
+     * Passes all reservations to {@code action} as they are read, without keeping them in memory.
+     */
+    public void findAll(Consumer<? super Reservation> action) {
+        metrics.run("findAll", () -> {
+            var token = new CancellationToken();
+            try (var connection = dataSource.getConnection();
+                 var st = connection.prepareStatement(selectSql())) {
+                readReservations(st, token, null, action);
+            } catch (SQLException e) {
+                throw token.failure("Failed to load all reservations", e);
+            }
+        });
+    }
+
+    /**
+     * Returns at most {@code limit} reservations with ID greater than {@code afterId}, ordered by ID.
+     * Passing the ID of the last reservation of one page as {@code afterId} returns the next page,
+     * so the cost of loading a page does not depend on how far it is from the start.
+     */
+    public List<Reservation> findPage(long afterId, int limit) {
+        return metrics.call("findPage", () -> {
+            try (var connection = dataSource.getConnection();
+                 var st = connection.prepareStatement(roomDao != null ? PAGE_WITHOUT_ROOM_SQL : PAGE_SQL)) {
+                st.setLong(1, afterId);
+                st.setInt(2, limit);
+                List<Reservation> reservations = new ArrayList<>(limit);
+                Map<Long, Room> rooms = new HashMap<>();
+                try (var rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        reservations.add(readReservation(rs, connection, rooms));
                     }
+                }
+                return reservations;
+            } catch (SQLException e) {
+                throw new DataException("Failed to load reservations after ID " + afterId, e);
+            }
+        });
+    }
 
-                    reservation.setId(rs.getLong("ID"));
-                    reservations.add(reservation);
+    /**
+     * Returns the ID of the reservation that is {@code offset} rows (counting from zero) after
+     * {@code afterId} in ID order, or {@code null} if there is no such reservation. It is used to find
+     * the start of a page without loading the pages before it; only the primary key index is read.
+     */
+    public Long findIdAfter(long afterId, int offset) {
+        return metrics.call("findIdAfter", () -> {
+            try (var connection = dataSource.getConnection();
+                 var st = connection.prepareStatement(
+                         "SELECT ID FROM RESERVATION WHERE ID > ? ORDER BY ID OFFSET ? ROWS FETCH NEXT 1 ROW ONLY")) {
+                st.setLong(1, afterId);
+                st.setInt(2, offset);
+                try (var rs = st.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : null;
                 }
+            } catch (SQLException e) {
+                throw new DataException("Failed to find reservation " + offset + " rows after ID " + afterId, e);
+            }
+        });
+    }
+
+    public int count() {
+        return metrics.call("count", () -> {
+            try (var connection = dataSource.getConnection();
+                 var st = connection.prepareStatement("SELECT COUNT(*) FROM RESERVATION");
+                 var rs = st.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            } catch (SQLException e) {
+                throw new DataException("Failed to count reservations", e);
+            }
+        });
+    }
+
+    /**
+     * Builds the in-memory guest search index, which {@link #filterReservations(String, String)} and
+     * {@link #searchGuests(String)} then use for queries of at least
+     * {@value GuestSearchIndex#MIN_QUERY_LENGTH} characters. Afterwards the index is kept current
+     * by the writes of this DAO.
+     */
+    public void initSearchIndex() {
+        metrics.run("initSearchIndex", () -> {
+            synchronized (searchIndexLock) {
+                pendingGuestChanges = new ArrayList<>();
+            }
+            var index = new GuestSearchIndex();
+            try {
+                try (var connection = dataSource.getConnection();
+                     var st = connection.prepareStatement("SELECT ID, GUEST_NAME, EMAIL, PHONE FROM RESERVATION ORDER BY ID");
+                     var rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        index.put(rs.getLong("ID"), rs.getString("GUEST_NAME"), rs.getString("EMAIL"), rs.getString("PHONE"));
+                    }
+                } catch (SQLException e) {
+                    throw new DataException("Failed to build guest search index", e);
+                }
+                // writes made during the scan may be missing from what it read
+                synchronized (searchIndexLock) {
+                    pendingGuestChanges.forEach(change -> change.accept(index));
+                    searchIndex = index;
+                }
+            } finally {
+                synchronized (searchIndexLock) {
+                    pendingGuestChanges = null;
+                }
+            }
+        });
+    }
+
+    private void indexGuest(Reservation reservation) {
+        long id = reservation.getId();
+        var guest = reservation.getGuest();
+        var name = guest.getName();
+        var email = guest.getEmail();
+        var phone = guest.getPhone();
+        changeSearchIndex(index -> index.put(id, name, email, phone));
+    }
+
+    /**
+     * Applies a change of the stored reservations to the search index, and to the one being built.
+     */
+    private void changeSearchIndex(Consumer<GuestSearchIndex> change) {
+        synchronized (searchIndexLock) {
+            if (pendingGuestChanges != null) {
+                pendingGuestChanges.add(change);
+            }
+            if (searchIndex != null) {
+                change.accept(searchIndex);
             }
-            return reservations;
-        } catch (SQLException e) {
-            throw new DataException("Failed to load all reservations", e);
         }
     }
 
-    public List<Reservation> filterReservations(String name, String number) {
-        try (var connection = dataSource.getConnection();
-             var st = connection.prepareStatement((!name.isBlank() && !number.isBlank()) ?
-                     ("SELECT * FROM APP.RESERVATION LEFT OUTER JOIN ROOM ON ROOM.ID = RESERVATION.ROOM_ID WHERE LOWER(GUEST_NAME) LIKE ? " + "AND ROOM_NUMBER = ?") :
-                     ("SELECT * FROM APP.RESERVATION LEFT OUTER JOIN ROOM ON ROOM.ID = RESERVATION.ROOM_ID WHERE LOWER(GUEST_NAME) LIKE ? " + "OR ROOM_NUMBER = ?")
-             )) {
-            if (name.isBlank()) {
-                st.setNull(1, Types.VARCHAR);
-            } else {
-                st.setString(1, "%" + name.toLowerCase() + "%");
+    /**
+     * Returns the reservations whose guest name, e-mail or phone contains {@code query}, ignoring
+     * case. With the search index, reservations where one of these starts with the query come first.
+     */
+    public List<Reservation> searchGuests(String query) {
+        return metrics.call("searchGuests", () -> {
+            var index = searchIndex;
+            if (index != null && query.length() >= GuestSearchIndex.MIN_QUERY_LENGTH) {
+                var ids = index.search(query, MAX_INDEXED_RESULTS,
+                        GuestSearchIndex.Field.NAME, GuestSearchIndex.Field.EMAIL, GuestSearchIndex.Field.PHONE);
+                if (ids != null) {
+                    List<Reservation> reservations = new ArrayList<>(ids.size());
+                    findByIds(ids, new CancellationToken(), null, reservations::add);
+                    return reservations;
+                }
             }
-            if (number.isBlank()) {
-                st.setNull(2, Types.INTEGER);
-            } else {
-                st.setInt(2, Integer.parseInt(number));
+            var token = new CancellationToken();
+            try (var connection = dataSource.getConnection();
+                 var st = connection.prepareStatement(selectSql() +
+                         " WHERE LOWER(GUEST_NAME) LIKE ? OR LOWER(EMAIL) LIKE ? OR LOWER(PHONE) LIKE ?")) {
+                var pattern = "%" + query.toLowerCase() + "%";
+                st.setString(1, pattern);
+                st.setString(2, pattern);
+                st.setString(3, pattern);
+                List<Reservation> reservations = new ArrayList<>();
+                readReservations(st, token, null, reservations::add);
+                return reservations;
+            } catch (SQLException e) {
+                throw token.failure("Failed to search reservations for guest " + query, e);
             }
-            List<Reservation> reservations = new ArrayList<>();
-            try (var rs = st.executeQuery()) {
-                while (rs.next()) {
-                    Guest guest = new Guest(
-                            rs.getString("GUEST_NAME"),
-                            rs.getString("EMAIL"),
-                            rs.getString("ADDRESS"),
-                            rs.getString("DETAILS"),
-                            rs.getString("PHONE")
-                    );
-                    Reservation reservation = new Reservation(
-                            rs.getDate("EXPECTED_CHECK_IN_DATE").toLocalDate(),
-                            rs.getDate("EXPECTED_CHECK_OUT_DATE").toLocalDate(),
-                            rs.getInt("GUESTS_NUMBER"),
-                            guest
-                    );
-
-                    var roomId = rs.getLong("ROOM_ID");
-                    if (!rs.wasNull()) {
-                        RoomType roomType = new RoomType(
-                                BedType.valueOf(rs.getString("BED_TYPES")),
-                                rs.getInt("PRICE"),
-                                rs.getInt("BEDS_AMOUNT")
-                        );
-                        var room = new Room(rs.getInt("ROOM_NUMBER"),
-                                roomType);
-                        room.setId(roomId);
-                        reservation.setRoom(room);
+        });
+    }
+
+    /**
+     * Passes the reservations with the given IDs to {@code action}, in the same order. They are
+     * loaded and passed on in chunks of {@value #IDS_PER_QUERY}.
+     */
+    private void findByIds(List<Long> ids, CancellationToken token, Duration timeout, Consumer<? super Reservation> action) {
+        Map<Long, Room> rooms = new HashMap<>();
+        try (var connection = dataSource.getConnection()) {
+            for (int from = 0; from < ids.size(); from += IDS_PER_QUERY) {
+                var chunk = ids.subList(from, Math.min(from + IDS_PER_QUERY, ids.size()));
+                var sql = selectSql() + " WHERE RESERVATION.ID IN (" + "?, ".repeat(chunk.size() - 1) + "?)";
+                Map<Long, Reservation> found = new HashMap<>();
+                try (var st = connection.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        st.setLong(i + 1, chunk.get(i));
                     }
-                    var date = rs.getDate("CHECK_IN_DATE");
-                    if (!rs.wasNull()) {
-                        reservation.setCheckInDate(date.toLocalDate());
-                    } else {
-                        reservation.setCheckInDate(null);
+                    readReservations(st, token, timeout, rooms, r -> found.put(r.getId(), r));
+                }
+                for (var id : chunk) {
+                    var reservation = found.get(id);
+                    if (reservation != null) {
+                        action.accept(reservation);
                     }
-                    date = rs.getDate("CHECK_OUT_DATE");
-                    if (!rs.wasNull()) {
-                        reservation.setCheckOutDate(date.toLocalDate());
+                }
+            }
+        } catch (SQLException e) {
+            throw token.failure("Failed to load " + ids.size() + " reservations by ID", e);
+        }
+    }
+
+    private void readReservations(PreparedStatement st, CancellationToken token, Duration timeout,
+                                  Consumer<? super Reservation> action) throws SQLException {
+        readReservations(st, token, timeout, new HashMap<>(), action);
+    }
+
+    /**
+     * Runs the query and passes each reservation to {@code action} as soon as it is read, checking
+     * the token before each row.
+     */
+    private void readReservations(PreparedStatement st, CancellationToken token, Duration timeout,
+                                  Map<Long, Room> rooms, Consumer<? super Reservation> action) throws SQLException {
+        st.setFetchSize(FETCH_SIZE);
+        token.begin(st, timeout);
+        try (var rs = st.executeQuery()) {
+            while (rs.next()) {
+                token.throwIfCancelled();
+                action.accept(readReservation(rs, st.getConnection(), rooms));
+            }
+        } finally {
+            token.end(st);
+        }
+    }
+
+    private String selectSql() {
+        return roomDao != null ? SELECT_WITHOUT_ROOM_SQL : SELECT_SQL;
+    }
+
+    /**
+     * Returns the reservations of guests whose name contains {@code name}, or of the room with
+     * {@code number}; if both are given, reservations have to match both. Blank values are ignored.
+     * Names of at least {@value GuestSearchIndex#MIN_QUERY_LENGTH} characters are looked up in the
+     * guest search index once it is built.
+     */
+    public List<Reservation> filterReservations(String name, String number) {
+        return filterReservations(name, number, new CancellationToken(), null);
+    }
+
+    /**
+     * Same as {@link #filterReservations(String, String)}, but stops with
+     * {@link QueryCancelledException} once the token is cancelled or the query runs longer than
+     * {@code timeout}.
+     *
+     * @param timeout longest time a database query may run, or {@code null} for no limit
+     */
+    public List<Reservation> filterReservations(String name, String number, CancellationToken token, Duration timeout) {
+        List<Reservation> reservations = new ArrayList<>();
+        filterReservations(name, number, token, timeout, reservations::add);
+        return reservations;
+    }
+
+    /**
+     * Same as {@link #filterReservations(String, String, CancellationToken, Duration)}, but passes
+     * each matching reservation to {@code action} as soon as it is read instead of collecting them,
+     * so that the caller can show the first ones while the rest are still being read.
+     */
+    public void filterReservations(String name, String number, CancellationToken token, Duration timeout,
+                                   Consumer<? super Reservation> action) {
+        metrics.run("filterReservations", () -> {
+            token.throwIfCancelled();
+            var index = searchIndex;
+            if (index != null && !name.isBlank() && name.length() >= GuestSearchIndex.MIN_QUERY_LENGTH) {
+                var ids = index.search(name, MAX_INDEXED_RESULTS, GuestSearchIndex.Field.NAME);
+                if (ids != null) {
+                    if (number.isBlank()) {
+                        findByIds(ids, token, timeout, action);
                     } else {
-                        reservation.setCheckOutDate(null);
+                        int roomNumber = Integer.parseInt(number);
+                        findByIds(ids, token, timeout, r -> {
+                            if (r.getRoom() != null && r.getRoom().getNumber() == roomNumber) {
+                                action.accept(r);
+                            }
+                        });
                     }
-
-                    reservation.setId(rs.getLong("ID"));
-                    reservations.add(reservation);
+                    return;
                 }
-                return reservations;
-            } catch (SQLException x) {
-                throw new DataException("Can't sort reservations", x);
             }
-        } catch (SQLException e) {
-            throw new DataException("Can't sort reservations", e);
+            try (var connection = dataSource.getConnection();
+                 var st = connection.prepareStatement(filterSql(!name.isBlank() && !number.isBlank() ? "AND" : "OR"))) {
+                if (name.isBlank()) {
+                    st.setNull(1, Types.VARCHAR);
+                } else {
+                    st.setString(1, "%" + name.toLowerCase() + "%");
+                }
+                if (number.isBlank()) {
+                    st.setNull(2, Types.INTEGER);
+                } else if (roomDao != null) {
+                    var room = roomDao.findRoomByNumber(connection, Integer.parseInt(number));
+                    st.setLong(2, room != null ? room.getId() : -1);
+                } else {
+                    st.setInt(2, Integer.parseInt(number));
+                }
+                readReservations(st, token, timeout, action);
+            } catch (SQLException e) {
+                throw token.failure("Can't sort reservations", e);
+            }
+        });
+    }
+
+    private String filterSql(String operator) {
+        return roomDao != null
+                ? SELECT_WITHOUT_ROOM_SQL + " WHERE LOWER(GUEST_NAME) LIKE ? " + operator + " ROOM_ID = ?"
+                : SELECT_SQL + " WHERE LOWER(GUEST_NAME) LIKE ? " + operator + " ROOM_NUMBER = ?";
+    }
+
+    /**
+     * @param connection connection running the query, on which rooms missing from the room cache
+     *                   are read
+     * @param rooms      rooms already read by the current query by ID, so that each room is
+     *                   materialised once per query when they come from the join
+     */
+    private Reservation readReservation(ResultSet rs, Connection connection, Map<Long, Room> rooms) throws SQLException {
+        Guest guest = new Guest(
+                rs.getString("GUEST_NAME"),
+                rs.getString("EMAIL"),
+                rs.getString("ADDRESS"),
+                rs.getString("DETAILS"),
+                rs.getString("PHONE")
+        );
+        Reservation reservation = new Reservation(
+                rs.getDate("EXPECTED_CHECK_IN_DATE").toLocalDate(),
+                rs.getDate("EXPECTED_CHECK_OUT_DATE").toLocalDate(),
+                rs.getInt("GUESTS_NUMBER"),
+                guest
+        );
+
+        var roomId = rs.getLong("ROOM_ID");
+        if (roomDao != null) {
+            reservation.setRoom(roomDao.findRoom(connection, roomId));
+        } else if (!rs.wasNull()) {
+            var room = rooms.get(roomId);
+            if (room == null) {
+                RoomType roomType = RoomTypes.intern(new RoomType(
+                        BedType.valueOf(rs.getString("BED_TYPES")),
+                        rs.getInt("PRICE"),
+                        rs.getInt("BEDS_AMOUNT")
+                ));
+                room = new Room(rs.getInt("ROOM_NUMBER"),
+                        roomType);
+                room.setId(roomId);
+                rooms.put(roomId, room);
+            }
+            reservation.setRoom(room);
+        }
+        var date = rs.getDate("CHECK_IN_DATE");
+        if (!rs.wasNull()) {
+            reservation.setCheckInDate(date.toLocalDate());
+        } else {
+            reservation.setCheckInDate(null);
         }
+        date = rs.getDate("CHECK_OUT_DATE");
+        if (!rs.wasNull()) {
+            reservation.setCheckOutDate(date.toLocalDate());
+        } else {
+            reservation.setCheckOutDate(null);
+        }
+
+        reservation.setId(rs.getLong("ID"));
+        reservation.clearModifiedFields();
+        return reservation;
     }
 
+    /**
+     * Writes the {@linkplain Reservation#getModifiedFields() modified fields} of the reservation, and
+     * only these, in one statement. Does nothing if no field was modified, so the database is not
+     * queried and a reservation that is not stored is not reported.
+     *
+     * @throws DataException if a field was modified and the reservation is not stored
+     */
     public void update(Reservation reservation) {
-        if (reservation.getId() == null) {
-            throw new IllegalArgumentException("Reservation has null ID: " + reservation);
-        }
-        try (var connection = dataSource.getConnection();
-             var st = connection.prepareStatement("UPDATE RESERVATION SET GUEST_NAME = ?, EMAIL = ?," +
-                     " ADDRESS = ?, PHONE = ?, DETAILS = ?, EXPECTED_CHECK_IN_DATE = ?, EXPECTED_CHECK_OUT_DATE = ?, CHECK_IN_DATE = ?, CHECK_OUT_DATE = ?" +
-                     ", GUESTS_NUMBER = ?, ROOM_ID = ? WHERE ID = ?")) {
-
-            st.setString(1, reservation.getGuest().getName());
-            st.setString(2, reservation.getGuest().getEmail());
-            st.setString(3, reservation.getGuest().getAddress());
-            st.setString(4, reservation.getGuest().getPhone());
-            st.setString(5, reservation.getGuest().getDetails());
-            st.setDate(6, Date.valueOf(reservation.getExpectedCheckInDate()));
-            st.setDate(7, Date.valueOf(reservation.getExpectedCheckOutDate()));
-            if (reservation.getCheckInDate() != null) {
-                st.setDate(8, Date.valueOf(reservation.getCheckInDate()));
-            } else {
-                st.setNull(8, Types.DATE);
+        metrics.run("update", () -> writing(() -> {
+            checkStored(reservation);
+            var fields = reservation.getModifiedFields();
+            if (fields.isEmpty()) {
+                return;
             }
-            if (reservation.getCheckOutDate() != null) {
-                st.setDate(9, Date.valueOf(reservation.getCheckOutDate()));
-            } else {
-                st.setNull(9, Types.DATE);
+            try (var connection = dataSource.getConnection()) {
+                update(connection, reservation, fields);
+            } catch (SQLException x) {
+                throw new DataException("Failed to store reservation: " + reservation, x);
             }
-            st.setInt(10, reservation.getNumGuests());
-            st.setLong(11, reservation.getRoom().getId());
-            st.setLong(12, reservation.getId());
-            st.executeUpdate();
+            reservation.clearModifiedFields();
+            updated(reservation, fields);
+        }));
+    }
+
+    private void update(Connection connection, Reservation reservation, Set<Reservation.Field> fields) throws SQLException {
+        var sql = new StringBuilder("UPDATE RESERVATION SET ");
+        for (var field : fields) {
+            sql.append(column(field)).append(" = ?, ");
+        }
+        sql.setLength(sql.length() - 2);
+        sql.append(" WHERE ID = ?");
+        try (var st = connection.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (var field : fields) {
+                setUpdateParameter(st, index++, field, reservation);
+            }
+            st.setLong(index, reservation.getId());
 
             if (st.executeUpdate() == 0) {
                 throw new DataException("Failed to update non-existing reservation: " + reservation);
             }
-        } catch (SQLException x) {
-            throw new DataException("Failed to store reservation: " + reservation, x);
         }
     }
 
-    public class TableManager {
+    private void updated(Reservation reservation, Set<Reservation.Field> fields) {
+        if (availabilityIndex != null && !Collections.disjoint(fields, STAY_FIELDS)) {
+            availabilityIndex.putReservation(reservation);
+        }
+        if (!Collections.disjoint(fields, GUEST_FIELDS)) {
+            indexGuest(reservation);
+        }
+    }
 
-        private void initTable() {
-            if (!tableExits("APP", "RESERVATION")) {
-                createTable();
-            }
+    private static String column(Reservation.Field field) {
+        switch (field) {
+            case GUEST_NAME:
+                return "GUEST_NAME";
+            case EMAIL:
+                return "EMAIL";
+            case ADDRESS:
+                return "ADDRESS";
+            case PHONE:
+                return "PHONE";
+            case DETAILS:
+                return "DETAILS";
+            case EXPECTED_CHECK_IN_DATE:
+                return "EXPECTED_CHECK_IN_DATE";
+            case EXPECTED_CHECK_OUT_DATE:
+                return "EXPECTED_CHECK_OUT_DATE";
+            case CHECK_IN_DATE:
+                return "CHECK_IN_DATE";
+            case CHECK_OUT_DATE:
+                return "CHECK_OUT_DATE";
+            case NUM_GUESTS:
+                return "GUESTS_NUMBER";
+            case ROOM:
+                return "ROOM_ID";
+            default:
+                throw new AssertionError(field);
         }
+    }
 
-        private boolean tableExits(String schema, String table) {
-            try (var connection = dataSource.getConnection();
-                 var rs = connection.getMetaData().getTables(null, schema, table, null)) {
-                return rs.next();
-            } catch (SQLException ex) {
-                throw new DataException("Failed to detect if the table " + schema + "." + table + " exists", ex);
+    private static void setUpdateParameter(PreparedStatement st, int index, Reservation.Field field,
+                                           Reservation reservation) throws SQLException {
+        var guest = reservation.getGuest();
+        switch (field) {
+            case GUEST_NAME:
+                st.setString(index, guest.getName());
+                break;
+            case EMAIL:
+                st.setString(index, guest.getEmail());
+                break;
+            case ADDRESS:
+                st.setString(index, guest.getAddress());
+                break;
+            case PHONE:
+                st.setString(index, guest.getPhone());
+                break;
+            case DETAILS:
+                st.setString(index, guest.getDetails());
+                break;
+            case EXPECTED_CHECK_IN_DATE:
+                st.setDate(index, Date.valueOf(reservation.getExpectedCheckInDate()));
+                break;
+            case EXPECTED_CHECK_OUT_DATE:
+                st.setDate(index, Date.valueOf(reservation.getExpectedCheckOutDate()));
+                break;
+            case CHECK_IN_DATE:
+                setDateOrNull(st, index, reservation.getCheckInDate());
+                break;
+            case CHECK_OUT_DATE:
+                setDateOrNull(st, index, reservation.getCheckOutDate());
+                break;
+            case NUM_GUESTS:
+                st.setInt(index, reservation.getNumGuests());
+                break;
+            case ROOM:
+                st.setLong(index, reservation.getRoom().getId());
+                break;
+            default:
+                throw new AssertionError(field);
+        }
+    }
+
+    private static void setDateOrNull(PreparedStatement st, int index, LocalDate date) throws SQLException {
+        if (date != null) {
+            st.setDate(index, Date.valueOf(date));
+        } else {
+            st.setNull(index, Types.DATE);
+        }
+    }
+
+    /**
+     * Applies the writes in order in a single transaction. Either all of them are stored, or none
+     * is and the IDs of the reservations to create stay {@code null}. Unlike {@link #update}, the
+     * fields to update are given by the write and the reservations' modified fields are left alone.
+     */
+    void writeAll(List<ReservationWrite> writes) {
+        metrics.run("writeAll", () -> writing(() -> {
+            for (var write : writes) {
+                if (write.getKind() == ReservationWrite.Kind.CREATE) {
+                    checkNew(write.getReservation());
+                } else {
+                    checkStored(write.getReservation());
+                }
             }
+            List<Reservation> inserted = new ArrayList<>();
+            try (var connection = dataSource.getConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    for (var write : writes) {
+                        var reservation = write.getReservation();
+                        switch (write.getKind()) {
+                            case CREATE:
+                                insert(connection, reservation);
+                                inserted.add(reservation);
+                                break;
+                            case UPDATE:
+                                if (!write.getFields().isEmpty()) {
+                                    update(connection, reservation, write.getFields());
+                                }
+                                break;
+                            case DELETE:
+                                delete(connection, reservation);
+                                break;
+                            default:
+                                throw new AssertionError(write.getKind());
+                        }
+                    }
+                    connection.commit();
+                } catch (SQLException | RuntimeException ex) {
+                    connection.rollback();
+                    for (var reservation : inserted) {
+                        reservation.setId(null);
+                    }
+                    throw ex;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                throw new DataException("Failed to write " + writes.size() + " reservation changes", e);
+            }
+            for (var write : writes) {
+                switch (write.getKind()) {
+                    case CREATE:
+                        created(write.getReservation());
+                        break;
+                    case UPDATE:
+                        updated(write.getReservation(), write.getFields());
+                        break;
+                    case DELETE:
+                        deleted(write.getReservation());
+                        break;
+                    default:
+                        throw new AssertionError(write.getKind());
+                }
+            }
+        }));
+    }
+
+    private static void checkNew(Reservation reservation) {
+        if (reservation.getId() != null) {
+            throw new IllegalArgumentException("Reservation already has ID: " + reservation);
+        }
+    }
+
+    private static void checkStored(Reservation reservation) {
+        if (reservation.getId() == null) {
+            throw new IllegalArgumentException("Reservation has null ID: " + reservation);
+        }
+    }
+
+    public class TableManager {
+
+        /**
+         * The ROOM table must be initialised first, as reservations reference it.
+         */
+        private void initTable() {
+            new SchemaMigrations(dataSource).migrateTable("RESERVATION");
         }
 
         public void dropTable() {
@@ -297,6 +813,7 @@ public class ReservationDao {
             } catch (SQLException ex) {
                 throw new DataException("Failed to drop RESERVATION table", ex);
             }
+            new SchemaMigrations(dataSource).forget("RESERVATION");
         }
 
     }
@@ -304,4 +821,11 @@ public class ReservationDao {
     public TableManager getTableManager() {
         return tableManager;
     }
+
+    /**
+     * Returns the latencies and failures of the calls of this DAO, by method name.
+     */
+    public DaoMetrics getMetrics() {
+        return metrics;
+    }
 }
\ No newline at end of file
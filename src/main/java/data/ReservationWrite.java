@@ -0,0 +1,40 @@
+package data;
+
+import model.Reservation;
+
+import java.util.Set;
+
+/**
+ * One pending change of a reservation, written by {@link ReservationDao#writeAll}.
+ */
+final class ReservationWrite {
+
+    enum Kind {
+        CREATE, UPDATE, DELETE
+    }
+
+    private final Kind kind;
+    private final Reservation reservation;
+    private final Set<Reservation.Field> fields;
+
+    /**
+     * @param fields the fields to write for an {@link Kind#UPDATE}; ignored otherwise
+     */
+    ReservationWrite(Kind kind, Reservation reservation, Set<Reservation.Field> fields) {
+        this.kind = kind;
+        this.reservation = reservation;
+        this.fields = fields;
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    Reservation getReservation() {
+        return reservation;
+    }
+
+    Set<Reservation.Field> getFields() {
+        return fields;
+    }
+}
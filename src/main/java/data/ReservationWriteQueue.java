@@ -0,0 +1,234 @@
+package data;
+
+import model.Reservation;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores reservation changes in the background. Changes are queued and returned from at once; a
+ * single writer thread stores the queued changes in one transaction when the flush interval has
+ * passed or the flush size is reached.
+ * <p>
+ * Changes of the same reservation are merged while they wait: repeated updates become one update
+ * of all the fields they modified, an update of a reservation waiting to be created is included in
+ * the insert, and deleting it cancels both. If a transaction fails, its changes are retried one by
+ * one, so that a single bad change does not take the others with it, and the failure callback of
+ * each change that still fails is run by the callback executor.
+ * <p>
+ * Each change keeps the {@linkplain Correlation correlation ID} of the action that queued it, the
+ * latest one if merged. A transaction runs with that ID when all its changes have the same one,
+ * which is the usual case of a single click, and a change retried alone always does.
+ */
+public final class ReservationWriteQueue implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ReservationWriteQueue.class.getName());
+
+    private static final class Pending {
+        private ReservationWrite.Kind kind;
+        private Reservation reservation;
+        private final Set<Reservation.Field> fields = EnumSet.noneOf(Reservation.Field.class);
+        private final List<Consumer<? super DataException>> failureCallbacks = new ArrayList<>();
+        private long correlationId;
+
+        private Pending(ReservationWrite.Kind kind, Reservation reservation) {
+            this.kind = kind;
+            this.reservation = reservation;
+        }
+    }
+
+    private final ReservationDao reservationDao;
+    private final int flushSize;
+    private final Executor callbackExecutor;
+    private final ScheduledExecutorService writer;
+    /**
+     * Changes waiting to be written by reservation ID, or by the reservation itself until it has one.
+     */
+    private final Map<Object, Pending> pending = new LinkedHashMap<>();
+    private boolean closed;
+
+    /**
+     * @param flushSize        number of changed reservations that triggers a write before the
+     *                         interval has passed
+     * @param callbackExecutor runs the failure callbacks, e.g. on the event dispatch thread
+     */
+    public ReservationWriteQueue(ReservationDao reservationDao, Duration flushInterval, int flushSize,
+                                 Executor callbackExecutor) {
+        if (flushSize < 1) {
+            throw new IllegalArgumentException("Flush size must be positive: " + flushSize);
+        }
+        this.reservationDao = reservationDao;
+        this.flushSize = flushSize;
+        this.callbackExecutor = callbackExecutor;
+        this.writer = Executors.newSingleThreadScheduledExecutor(task -> {
+            var thread = new Thread(task, "reservation-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, flushInterval.toMillis());
+        writer.scheduleWithFixedDelay(this::writePending, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void create(Reservation reservation, Consumer<? super DataException> onFailure) {
+        submit(ReservationWrite.Kind.CREATE, reservation, onFailure);
+    }
+
+    /**
+     * Queues a write of the fields modified since the reservation was last stored or queued, and
+     * clears them on the reservation.
+     */
+    public void update(Reservation reservation, Consumer<? super DataException> onFailure) {
+        submit(ReservationWrite.Kind.UPDATE, reservation, onFailure);
+    }
+
+    public void delete(Reservation reservation, Consumer<? super DataException> onFailure) {
+        submit(ReservationWrite.Kind.DELETE, reservation, onFailure);
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private synchronized void submit(ReservationWrite.Kind kind, Reservation reservation,
+                                     Consumer<? super DataException> onFailure) {
+        if (closed) {
+            throw new IllegalStateException("Reservation write queue is closed");
+        }
+        Object key = reservation.getId() != null ? reservation.getId() : reservation;
+        var modified = reservation.getModifiedFields();
+        reservation.clearModifiedFields();
+        var entry = pending.get(key);
+        if (entry == null) {
+            if (kind == ReservationWrite.Kind.UPDATE && modified.isEmpty()) {
+                return;
+            }
+            entry = new Pending(kind, reservation);
+            pending.put(key, entry);
+        } else if (kind == ReservationWrite.Kind.DELETE) {
+            if (entry.kind == ReservationWrite.Kind.CREATE) {
+                pending.remove(key);
+                return;
+            }
+            entry.kind = kind;
+        } else if (kind == ReservationWrite.Kind.CREATE) {
+            throw new IllegalArgumentException("Reservation already queued: " + reservation);
+        }
+        entry.reservation = reservation;
+        entry.correlationId = Correlation.current();
+        entry.fields.addAll(modified);
+        entry.failureCallbacks.add(onFailure);
+        if (pending.size() >= flushSize) {
+            writer.execute(this::writePending);
+        }
+    }
+
+    /**
+     * Writes all changes queued so far and waits until they are written. Must not be called on the
+     * event dispatch thread if the callbacks run there.
+     */
+    public void flush() {
+        try {
+            writer.submit(this::writePending).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Reservation writer failed", e.getCause());
+        }
+    }
+
+    /**
+     * Stops accepting changes, writes those already queued and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flush();
+        writer.shutdown();
+    }
+
+    private void writePending() {
+        List<Pending> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        List<ReservationWrite> writes = new ArrayList<>(batch.size());
+        for (var entry : batch) {
+            writes.add(toWrite(entry));
+        }
+        try {
+            writeAll(writes, correlationId(batch));
+            return;
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                fail(batch.get(0), e);
+                return;
+            }
+            LOGGER.log(Level.WARNING, "Failed to write " + batch.size() + " reservation changes, retrying one by one", e);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                writeAll(List.of(writes.get(i)), batch.get(i).correlationId);
+            } catch (RuntimeException e) {
+                fail(batch.get(i), e);
+            }
+        }
+    }
+
+    private void writeAll(List<ReservationWrite> writes, long correlationId) {
+        long previous = Correlation.enter(correlationId);
+        try {
+            reservationDao.writeAll(writes);
+        } finally {
+            Correlation.restore(previous);
+        }
+    }
+
+    /**
+     * Returns the correlation ID shared by all changes of the batch, or {@link Correlation#NONE}.
+     */
+    private static long correlationId(List<Pending> batch) {
+        long id = batch.get(0).correlationId;
+        for (var entry : batch) {
+            if (entry.correlationId != id) {
+                return Correlation.NONE;
+            }
+        }
+        return id;
+    }
+
+    private static ReservationWrite toWrite(Pending entry) {
+        return new ReservationWrite(entry.kind, entry.reservation, EnumSet.copyOf(entry.fields));
+    }
+
+    private void fail(Pending entry, RuntimeException e) {
+        LOGGER.log(Level.WARNING, "Failed to write reservation change " + entry.kind + " " + entry.reservation, e);
+        var exception = e instanceof DataException
+                ? (DataException) e
+                : new DataException("Failed to write reservation " + entry.reservation, e);
+        for (var callback : entry.failureCallbacks) {
+            callbackExecutor.execute(() -> callback.accept(exception));
+        }
+    }
+}
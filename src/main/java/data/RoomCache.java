@@ -0,0 +1,92 @@
+package data;
+
+import model.Room;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rooms of a {@link RoomDao} by ID and by number. The DAO loads all rooms into it on first use and
+ * updates it after each of its writes; lookups of rooms that are not cached are counted as misses
+ * and answered by the database.
+ */
+public final class RoomCache {
+
+    private final Map<Long, Room> byId = new HashMap<>();
+    private final Map<Integer, Room> byNumber = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private boolean loaded;
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Drops all cached rooms; they are loaded again on the next lookup. Needed only when the ROOM
+     * table is changed bypassing the DAO.
+     */
+    public synchronized void invalidate() {
+        byId.clear();
+        byNumber.clear();
+        loaded = false;
+    }
+
+    synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    synchronized void load(List<Room> rooms) {
+        byId.clear();
+        byNumber.clear();
+        for (var room : rooms) {
+            put(room);
+        }
+        loaded = true;
+    }
+
+    synchronized Room getById(long id) {
+        return count(byId.get(id));
+    }
+
+    synchronized Room getByNumber(int number) {
+        return count(byNumber.get(number));
+    }
+
+    /**
+     * Returns the cached rooms ordered by ID.
+     */
+    synchronized List<Room> getAll() {
+        List<Room> rooms = new ArrayList<>(byId.values());
+        rooms.sort(Comparator.comparing(Room::getId));
+        return rooms;
+    }
+
+    synchronized void put(Room room) {
+        var previous = byId.put(room.getId(), room);
+        if (previous != null) {
+            byNumber.remove(previous.getNumber(), previous);
+        }
+        byNumber.put(room.getNumber(), room);
+    }
+
+    synchronized void remove(Room room) {
+        var removed = byId.remove(room.getId());
+        if (removed != null) {
+            byNumber.remove(removed.getNumber(), removed);
+        }
+    }
+
+    private Room count(Room room) {
+        (room == null ? misses : hits).incrementAndGet();
+        return room;
+    }
+}
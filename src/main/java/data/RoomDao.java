@@ -5,21 +5,46 @@ import model.Room;
 import model.RoomType;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
 import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.logging.Logger;
 
 import static java.sql.Statement.RETURN_GENERATED_KEYS;
 
 public class RoomDao {
 
+    private static final Logger LOGGER = Logger.getLogger(RoomDao.class.getName());
+
+    private static final String INSERT_SQL = "INSERT INTO ROOM (ROOM_NUMBER, PRICE, BEDS_AMOUNT, BED_TYPES) VALUES (?, ?, ?, ?)";
+    private static final String SELECT_SQL = "SELECT ID, ROOM_NUMBER, PRICE, BEDS_AMOUNT, BED_TYPES FROM ROOM";
+    private static final BulkInsert<Room> BULK_INSERT =
+            new BulkInsert<>("ROOM", INSERT_SQL, RoomDao::setInsertParameters, Room::setId);
+
     private final DataSource dataSource;
+    private final AvailabilityIndex availabilityIndex;
+    private final RoomCache roomCache = new RoomCache();
     private final TableManager tableManager = new TableManager();
+    private final DaoMetrics metrics = new DaoMetrics("RoomDao");
 
     public RoomDao(DataSource dataSource) {
+        this(dataSource, null);
+    }
+
+    /**
+     * @param availabilityIndex index used by {@link #findAvailableRooms(LocalDate, LocalDate)} once
+     *                          {@link #loadAvailabilityIndex()} filled it, or {@code null}
+     */
+    public RoomDao(DataSource dataSource, AvailabilityIndex availabilityIndex) {
         this.dataSource = dataSource;
+        this.availabilityIndex = availabilityIndex;
     }
 
     public void initTable(){
@@ -27,181 +52,424 @@ public class RoomDao {
     }
 
     public void create(Room room) {
-        if (room.getId() != null) {
-            throw new IllegalArgumentException("Room already has ID: " + room);
-        }
-        try (var connection = dataSource.getConnection();
-             var st = connection.prepareStatement(
-                     "INSERT INTO ROOM (ROOM_NUMBER, PRICE, BEDS_AMOUNT, BED_TYPES) VALUES (?, ?, ?, ?)",
-                     RETURN_GENERATED_KEYS)) {
+        metrics.run("create", () -> writing(() -> {
+            if (room.getId() != null) {
+                throw new IllegalArgumentException("Room already has ID: " + room);
+            }
+            try (var connection = dataSource.getConnection();
+                 var st = connection.prepareStatement(INSERT_SQL, RETURN_GENERATED_KEYS)) {
 
-            st.setLong(1, room.getNumber());
-            st.setDouble(2, room.getType().getPrice());
-            st.setInt(3, room.getType().getNumberOfBeds());
-            st.setString(4, room.getType().getBedType().name());
-            st.executeUpdate();
+                setInsertParameters(st, room);
+                st.executeUpdate();
 
-            try (var rs = st.getGeneratedKeys()) {
-                if (rs.next()) {
-                    room.setId(rs.getLong(1));
-                } else {
-                    throw new DataException("Failed to fetch generated key: no key returned for room: " + room);
+                try (var rs = st.getGeneratedKeys()) {
+                    if (rs.next()) {
+                        room.setId(rs.getLong(1));
+                    } else {
+                        throw new DataException("Failed to fetch generated key: no key returned for room: " + room);
+                    }
+                }
+            } catch (SQLException e) {
+                throw new DataException("Failed to store room " + room, e);
+            }
+            roomCache.put(room);
+            if (availabilityIndex != null) {
+                availabilityIndex.putRoom(room);
+            }
+        }));
+    }
+
+    public void createAll(Collection<Room> rooms) {
+        createAll(rooms, BulkInsert.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Stores all rooms in a single transaction, sending the inserts to the database in batches of
+     * {@code chunkSize}. Either all rooms are stored and get their generated IDs, or none of them
+     * is stored and their IDs stay {@code null}.
+     */
+    public void createAll(Collection<Room> rooms, int chunkSize) {
+        metrics.run("createAll", () -> writing(() -> {
+            for (var room : rooms) {
+                if (room.getId() != null) {
+                    throw new IllegalArgumentException("Room already has ID: " + room);
+                }
+            }
+            try {
+                BULK_INSERT.insert(dataSource, rooms, chunkSize);
+            } catch (SQLException e) {
+                throw new DataException("Failed to store " + rooms.size() + " rooms", e);
+            }
+            for (var room : rooms) {
+                roomCache.put(room);
+                if (availabilityIndex != null) {
+                    availabilityIndex.putRoom(room);
                 }
             }
+        }));
+    }
+
+    private static void setInsertParameters(PreparedStatement st, Room room) throws SQLException {
+        st.setLong(1, room.getNumber());
+        st.setDouble(2, room.getType().getPrice());
+        st.setInt(3, room.getType().getNumberOfBeds());
+        st.setString(4, room.getType().getBedType().name());
+    }
+
+    public void delete(Room room) {
+        metrics.run("delete", () -> writing(() -> {
+            if (room.getId() == null) {
+                throw new IllegalArgumentException("Room has null ID: " + room);
+            }
+            try (var connection = dataSource.getConnection();
+                 var st = connection.prepareStatement("DELETE FROM ROOM WHERE ID = ?")) {
+                st.setLong(1, room.getId());
+                if (st.executeUpdate() == 0) {
+                    throw new DataException("Failed to delete non-existing room: " + room);
+                }
+            } catch (SQLException x) {
+                throw new DataException("Failed to delete room " + room, x);
+            }
+            roomCache.remove(room);
+            if (availabilityIndex != null) {
+                availabilityIndex.removeRoom(room);
+            }
+        }));
+    }
+
+    /**
+     * Returns all rooms ordered by ID, from the room cache once it is loaded.
+     */
+    public List<Room> findAll() {
+        return metrics.call("findAll", () -> loadedCache("Failed to load all rooms").getAll());
+    }
+
+    private List<Room> findAllInDatabase(String failureMessage) {
+        try (var connection = dataSource.getConnection()) {
+            return findAllInDatabase(connection);
         } catch (SQLException e) {
-            throw new DataException("Failed to store room " + room, e);
+            throw new DataException(failureMessage, e);
         }
     }
 
-    private void createTable() {
-        try (var connection = dataSource.getConnection();
-             var st = connection.createStatement()) {
-
-            st.executeUpdate("CREATE TABLE APP.ROOM (" +
-                    "ID BIGINT PRIMARY KEY GENERATED ALWAYS AS IDENTITY," +
-                    "ROOM_NUMBER INT NOT NULL," +
-                    "PRICE INT NOT NULL," +
-                    "BEDS_AMOUNT INT NOT NULL," +
-                    "BED_TYPES VARCHAR(150) NOT NULL" +
-                    ")");
-        } catch (SQLException e) {
-            throw new DataException("Failed to create ROOMS table", e);
+    private static List<Room> findAllInDatabase(Connection connection) throws SQLException {
+        try (var st = connection.prepareStatement(SELECT_SQL);
+             var rs = st.executeQuery()) {
+            List<Room> rooms = new ArrayList<>();
+            while (rs.next()) {
+                rooms.add(readRoom(rs));
+            }
+            return rooms;
         }
     }
 
-    public void delete(Room room) {
-        if (room.getId() == null) {
-            throw new IllegalArgumentException("Room has null ID: " + room);
+    private RoomCache loadedCache(String failureMessage) {
+        if (!roomCache.isLoaded()) {
+            roomCache.load(findAllInDatabase(failureMessage));
         }
-        try (var connection = dataSource.getConnection();
-             var st = connection.prepareStatement("DELETE FROM ROOM WHERE ID = ?")) {
-            st.setLong(1, room.getId());
-            if (st.executeUpdate() == 0) {
-                throw new DataException("Failed to delete non-existing room: " + room);
-            }
-        } catch (SQLException x) {
-            throw new DataException("Failed to delete room " + room, x);
+        return roomCache;
+    }
+
+    private RoomCache loadedCache(Connection connection) throws SQLException {
+        if (!roomCache.isLoaded()) {
+            roomCache.load(findAllInDatabase(connection));
         }
+        return roomCache;
     }
 
-    public List<Room> findAll() {
-        try (var connection = dataSource.getConnection();
-             var st = connection.prepareStatement(
-                     "SELECT ID, ROOM_NUMBER, PRICE, BEDS_AMOUNT, BED_TYPES" +
-                             " FROM ROOM")) {
+    public int count() {
+        return metrics.call("count", () -> {
+            try (var connection = dataSource.getConnection();
+                 var st = connection.prepareStatement("SELECT COUNT(*) FROM ROOM");
+                 var rs = st.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            } catch (SQLException e) {
+                throw new DataException("Failed to count rooms", e);
+            }
+        });
+    }
+
+    public RoomCache getRoomCache() {
+        return roomCache;
+    }
+
+    /**
+     * Returns the rooms that have no reservation, which has not been checked out yet, overlapping
+     * the stay from {@code in} to {@code out}. Answered from the availability index once it is
+     * loaded, otherwise from the database.
+     */
+    public List<Room> findAvailableRooms(LocalDate in, LocalDate out) {
+        return findAvailableRooms(in, out, new CancellationToken(), null);
+    }
+
+    /**
+     * Same as {@link #findAvailableRooms(LocalDate, LocalDate)}, but stops with
+     * {@link QueryCancelledException} once the token is cancelled or the database query runs longer
+     * than {@code timeout}.
+     *
+     * @param timeout longest time the database query may run, or {@code null} for no limit
+     */
+    public List<Room> findAvailableRooms(LocalDate in, LocalDate out, CancellationToken token, Duration timeout) {
+        return findAvailableRooms(RoomQuery.available(in, out), token, timeout);
+    }
+
+    /**
+     * Returns the available rooms that satisfy the query, in its order. Stops with
+     * {@link QueryCancelledException} once the token is cancelled or the database query runs longer
+     * than {@code timeout}.
+     *
+     * @param timeout longest time the database query may run, or {@code null} for no limit
+     */
+    public List<Room> findAvailableRooms(RoomQuery query, CancellationToken token, Duration timeout) {
+        return metrics.call("findAvailableRooms", () -> {
+            token.throwIfCancelled();
+            if (availabilityIndex != null && availabilityIndex.isLoaded()) {
+                return query.select(availabilityIndex.findAvailableRooms(query.getIn(), query.getOut()));
+            }
+            return findAvailableRoomsInDatabase(query, token, timeout);
+        });
+    }
 
+    private List<Room> findAvailableRoomsInDatabase(RoomQuery query, CancellationToken token, Duration timeout) {
+        try (var connection = dataSource.getConnection();
+             var st = connection.prepareStatement(query.toSql())) {
+            query.setParameters(st);
             List<Room> rooms = new ArrayList<>();
+            token.begin(st, timeout);
             try (var rs = st.executeQuery()) {
                 while (rs.next()) {
-                    RoomType roomType = new RoomType(
-                            BedType.valueOf(rs.getString("BED_TYPES")),
-                            rs.getInt("PRICE"),
-                            rs.getInt("BEDS_AMOUNT")
-                    );
-                    Room room = new Room(
-                            rs.getInt("ROOM_NUMBER"),
-                            roomType
-                    );
-                    room.setId(rs.getLong("ID"));
-                    rooms.add(room);
+                    token.throwIfCancelled();
+                    rooms.add(readRoom(rs));
                 }
+            } finally {
+                token.end(st);
             }
             return rooms;
         } catch (SQLException e) {
-            throw new DataException("Failed to load all rooms", e);
+            throw token.failure("Can't check available rooms.", e);
         }
     }
 
-    public List<Room> findAvailableRooms(LocalDate in, LocalDate out) {
+    /**
+     * Runs a write of this DAO, so that it is not missed by a reload of the availability index.
+     */
+    private void writing(Runnable write) {
+        if (availabilityIndex != null) {
+            availabilityIndex.write(write);
+        } else {
+            write.run();
+        }
+    }
+
+    /**
+     * Fills the availability index with all rooms and the stays of reservations that have not been
+     * checked out. From then on the DAOs sharing the index keep it current.
+     */
+    public void loadAvailabilityIndex() {
+        metrics.run("loadAvailabilityIndex", () -> {
+            if (availabilityIndex == null) {
+                throw new IllegalStateException("No availability index");
+            }
+            availabilityIndex.exclusively(() -> {
+                var rooms = findAllInDatabase("Failed to load availability index");
+                roomCache.load(rooms);
+                availabilityIndex.load(rooms, findActiveStays(null, null, "Failed to load availability index"));
+                return null;
+            });
+        });
+    }
+
+    /**
+     * Returns the stays of reservations that have not been checked out, all of them or those
+     * overlapping the days from {@code from} to {@code to}.
+     */
+    private List<AvailabilityIndex.Stay> findActiveStays(LocalDate from, LocalDate to, String failureMessage) {
+        var sql = "SELECT ID, ROOM_ID, EXPECTED_CHECK_IN_DATE, EXPECTED_CHECK_OUT_DATE FROM RESERVATION WHERE CHECK_OUT_DATE IS NULL";
+        if (from != null) {
+            sql += " AND EXPECTED_CHECK_IN_DATE < ? AND EXPECTED_CHECK_OUT_DATE > ?";
+        }
         try (var connection = dataSource.getConnection();
-             var st = connection.prepareStatement(
-                     "SELECT * FROM APP.ROOM WHERE ID NOT IN " +
-                             "(SELECT ROOM_ID FROM APP.RESERVATION WHERE RESERVATION.EXPECTED_CHECK_IN_DATE < ?" +
-                             " AND RESERVATION.EXPECTED_CHECK_OUT_DATE > ?" +
-                             " AND RESERVATION.CHECK_OUT_DATE IS NULL)")) {
-            st.setDate(1, Date.valueOf(out));
-            st.setDate(2, Date.valueOf(in));
-            List<Room> rooms = new ArrayList<>();
+             var st = connection.prepareStatement(sql)) {
+            if (from != null) {
+                st.setDate(1, Date.valueOf(to));
+                st.setDate(2, Date.valueOf(from));
+            }
+            List<AvailabilityIndex.Stay> stays = new ArrayList<>();
             try (var rs = st.executeQuery()) {
                 while (rs.next()) {
-                    RoomType roomType = new RoomType(
-                            BedType.valueOf(rs.getString("BED_TYPES")),
-                            rs.getInt("PRICE"),
-                            rs.getInt("BEDS_AMOUNT")
-                    );
-                    Room room = new Room(
-                            rs.getInt("ROOM_NUMBER"),
-                            roomType
-                    );
-                    room.setId(rs.getLong("ID"));
-                    rooms.add(room);
+                    stays.add(new AvailabilityIndex.Stay(rs.getLong("ID"), rs.getLong("ROOM_ID"),
+                            rs.getDate("EXPECTED_CHECK_IN_DATE").toLocalDate(),
+                            rs.getDate("EXPECTED_CHECK_OUT_DATE").toLocalDate()));
                 }
-            } catch (SQLException x) {
-                throw new DataException("Can't check available rooms.", x);
             }
-            return rooms;
+            return stays;
         } catch (SQLException e) {
-            throw new DataException("Can't check available rooms.", e);
+            throw new DataException(failureMessage, e);
         }
     }
 
+    /**
+     * Returns the best stays of the search, see {@link StayOption#ORDER}. Answered from the
+     * availability index if it is loaded and its calendars cover the search, otherwise from an index
+     * of the search window filled with one query, but never by querying each day.
+     */
+    public List<StayOption> findStayOptions(StaySearch search) {
+        return metrics.call("findStayOptions", () -> {
+            if (availabilityIndex != null && availabilityIndex.isLoaded() && availabilityIndex.covers(search)) {
+                return availabilityIndex.findStayOptions(search);
+            }
+            var failureMessage = "Failed to find stays: " + search;
+            var window = new AvailabilityIndex(search.getEarliestCheckIn(), search.getDays());
+            window.load(loadedCache(failureMessage).getAll(),
+                    findActiveStays(search.getEarliestCheckIn(), search.getLatestCheckOut(), failureMessage));
+            return window.findStayOptions(search);
+        });
+    }
+
+    /**
+     * Returns whether every room is occupied on the night starting on {@code night}, as far as the
+     * availability index knows; {@code false} when there is no loaded index. Does not access the
+     * database, so it can be called on the event dispatch thread.
+     */
+    public boolean isFullyBooked(LocalDate night) {
+        return availabilityIndex != null && availabilityIndex.isLoaded() && availabilityIndex.isFullyBooked(night);
+    }
+
+    /**
+     * Compares the answer of the availability index with the database for one stay. On mismatch,
+     * which means the database was changed bypassing these DAOs, a warning is logged and the index
+     * is reloaded.
+     *
+     * @return whether the index was consistent
+     */
+    public boolean checkAvailabilityIndex(LocalDate in, LocalDate out) {
+        return metrics.call("checkAvailabilityIndex", () -> {
+            if (availabilityIndex == null || !availabilityIndex.isLoaded()) {
+                return true;
+            }
+            return availabilityIndex.exclusively(() -> {
+                var expected = roomIds(findAvailableRoomsInDatabase(RoomQuery.available(in, out), new CancellationToken(), null));
+                var actual = roomIds(availabilityIndex.findAvailableRooms(in, out));
+                if (expected.equals(actual)) {
+                    return true;
+                }
+                LOGGER.warning("Availability index out of date for " + in + " - " + out + ": expected rooms " + expected
+                        + ", index returned " + actual + "; reloading");
+                loadAvailabilityIndex();
+                return false;
+            });
+        });
+    }
+
+    private static List<Long> roomIds(List<Room> rooms) {
+        List<Long> ids = new ArrayList<>(rooms.size());
+        for (var room : rooms) {
+            ids.add(room.getId());
+        }
+        ids.sort(null);
+        return ids;
+    }
+
     public Room findByNumber(int number) {
-        try (var connection = dataSource.getConnection();
-             var st = connection.prepareStatement("SELECT ID, ROOM_NUMBER, PRICE, BEDS_AMOUNT, BED_TYPES FROM ROOM WHERE ROOM_NUMBER = ?")) {
-            st.setInt(1, number);
+        return metrics.call("findByNumber", () -> {
+            var failureMessage = "Failed to load room number: " + number;
+            var room = loadedCache(failureMessage).getByNumber(number);
+            return room != null ? room : findInDatabase("ROOM_NUMBER", number, failureMessage);
+        });
+    }
+
+    /**
+     * Returns the room with the given ID, or {@code null} if there is none.
+     */
+    public Room findById(long id) {
+        return metrics.call("findById", () -> {
+            var failureMessage = "Failed to load room with ID: " + id;
+            var room = loadedCache(failureMessage).getById(id);
+            return room != null ? room : findInDatabase("ID", id, failureMessage);
+        });
+    }
+
+    /**
+     * Same as {@link #findById(long)} for the rooms of reservations read by {@link ReservationDao},
+     * which are not recorded as calls of this DAO. Rooms not cached yet are read on the connection
+     * reading the reservations rather than on another connection of the pool.
+     */
+    Room findRoom(Connection connection, long id) throws SQLException {
+        var room = loadedCache(connection).getById(id);
+        return room != null ? room : findInDatabase(connection, "ID", id);
+    }
+
+    /**
+     * Same as {@link #findByNumber(int)} for {@link ReservationDao}, on its connection.
+     */
+    Room findRoomByNumber(Connection connection, int number) throws SQLException {
+        var room = loadedCache(connection).getByNumber(number);
+        return room != null ? room : findInDatabase(connection, "ROOM_NUMBER", number);
+    }
+
+    private Room findInDatabase(String column, long value, String failureMessage) {
+        try (var connection = dataSource.getConnection()) {
+            return findInDatabase(connection, column, value);
+        } catch (SQLException ex) {
+            throw new DataException(failureMessage, ex);
+        }
+    }
+
+    private Room findInDatabase(Connection connection, String column, long value) throws SQLException {
+        try (var st = connection.prepareStatement(SELECT_SQL + " WHERE " + column + " = ?")) {
+            st.setLong(1, value);
             try (var rs = st.executeQuery()) {
                 if (rs.next()) {
-                    var room = new Room(
-                            rs.getInt("ROOM_NUMBER"),
-                            new RoomType(BedType.valueOf(rs.getString("BED_TYPES")), rs.getInt("PRICE"), rs.getInt("BEDS_AMOUNT")));
-                    room.setId(rs.getLong("ID"));
+                    var room = readRoom(rs);
+                    roomCache.put(room);
                     return room;
                 }
                 return null;
             }
-        } catch (SQLException ex) {
-            throw new DataException("Failed to load room number: " + number, ex);
         }
     }
 
+    private static Room readRoom(ResultSet rs) throws SQLException {
+        var room = new Room(
+                rs.getInt("ROOM_NUMBER"),
+                RoomTypes.intern(new RoomType(BedType.valueOf(rs.getString("BED_TYPES")), rs.getInt("PRICE"), rs.getInt("BEDS_AMOUNT"))));
+        room.setId(rs.getLong("ID"));
+        return room;
+    }
+
     public void update(Room room) {
-        if (room.getId() == null) {
-            throw new IllegalArgumentException("Room has null ID");
-        }
-        try (var connection = dataSource.getConnection();
-             var st = connection.prepareStatement("UPDATE ROOM SET ROOM_NUMBER = ?, PRICE = ?," +
-                     " BEDS_AMOUNT = ?, BED_TYPES = ? WHERE ID = ?")) {
+        metrics.run("update", () -> writing(() -> {
+            if (room.getId() == null) {
+                throw new IllegalArgumentException("Room has null ID");
+            }
+            try (var connection = dataSource.getConnection();
+                 var st = connection.prepareStatement("UPDATE ROOM SET ROOM_NUMBER = ?, PRICE = ?," +
+                         " BEDS_AMOUNT = ?, BED_TYPES = ? WHERE ID = ?")) {
 
-            st.setLong(1, room.getNumber());
-            st.setDouble(2, room.getType().getPrice());
-            st.setInt(3, room.getType().getNumberOfBeds());
-            st.setString(4, room.getType().getBedType().name());
-            st.setLong(5, room.getId());
-            st.executeUpdate();
+                st.setLong(1, room.getNumber());
+                st.setDouble(2, room.getType().getPrice());
+                st.setInt(3, room.getType().getNumberOfBeds());
+                st.setString(4, room.getType().getBedType().name());
+                st.setLong(5, room.getId());
 
-            if (st.executeUpdate() == 0) {
-                throw new DataException("Failed to update non-existing room: " + room);
+                if (st.executeUpdate() == 0) {
+                    throw new DataException("Failed to update non-existing room: " + room);
+                }
+            } catch (SQLException x) {
+                throw new DataException("Failed to update room: " + room, x);
             }
-        } catch (SQLException x) {
-            throw new DataException("Failed to update room: " + room, x);
-        }
+            roomCache.put(room);
+            if (availabilityIndex != null) {
+                availabilityIndex.putRoom(room);
+            }
+        }));
     }
 
     public class TableManager {
 
         public void initTable() {
-            if (!tableExits("APP", "ROOM")) {
-                createTable();
-            }
-        }
-
-        private boolean tableExits(String schema, String table) {
-            try (var connection = dataSource.getConnection();
-                 var rs = connection.getMetaData().getTables(null, schema, table, null)) {
-                return rs.next();
-            } catch (SQLException ex) {
-                throw new DataException("Failed to detect if the table " + schema + "." + table + " exists", ex);
-            }
+            new SchemaMigrations(dataSource).migrateTable("ROOM");
         }
 
         public void dropTable() {
@@ -212,10 +480,19 @@ public class RoomDao {
             } catch (SQLException ex) {
                 throw new DataException("Failed to drop ROOMS table", ex);
             }
+            new SchemaMigrations(dataSource).forget("ROOM");
+            roomCache.invalidate();
         }
     }
 
     public TableManager getTableManager() {
         return tableManager;
     }
+
+    /**
+     * Returns the latencies and failures of the calls of this DAO, by method name.
+     */
+    public DaoMetrics getMetrics() {
+        return metrics;
+    }
 }
@@ -0,0 +1,204 @@
+package data;
+
+import model.BedType;
+import model.Room;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Rooms available for a stay that can take the guests, of the bed types and in the price range
+ * wanted, in the order and number to show. The database answers it with one query, using the
+ * CAPACITY column and its index; the availability index applies the same conditions in memory.
+ */
+public final class RoomQuery {
+
+    public enum Order {
+        ROOM_NUMBER("ROOM_NUMBER", Comparator.comparingInt(Room::getNumber)),
+        /**
+         * Cheapest first.
+         */
+        PRICE("PRICE, ROOM_NUMBER", Comparator.comparingInt((Room room) -> room.getType().getPrice())
+                .thenComparingInt(Room::getNumber)),
+        /**
+         * Smallest room that fits the guests first, so that larger rooms stay free for larger groups.
+         */
+        CAPACITY("CAPACITY, PRICE, ROOM_NUMBER", Comparator.comparingInt(Room::getSize)
+                .thenComparingInt((Room room) -> room.getType().getPrice())
+                .thenComparingInt(Room::getNumber));
+
+        private final String orderBy;
+        private final Comparator<Room> comparator;
+
+        Order(String orderBy, Comparator<Room> comparator) {
+            this.orderBy = orderBy;
+            this.comparator = comparator;
+        }
+
+        public Comparator<Room> comparator() {
+            return comparator;
+        }
+    }
+
+    private final LocalDate in;
+    private final LocalDate out;
+    private int minCapacity;
+    private Set<BedType> bedTypes = EnumSet.allOf(BedType.class);
+    private Integer minPrice;
+    private Integer maxPrice;
+    private Order order = Order.ROOM_NUMBER;
+    private int limit;
+
+    private RoomQuery(LocalDate in, LocalDate out) {
+        this.in = Objects.requireNonNull(in);
+        this.out = Objects.requireNonNull(out);
+    }
+
+    /**
+     * Rooms that have no reservation, which has not been checked out yet, overlapping the stay from
+     * {@code in} to {@code out}.
+     */
+    public static RoomQuery available(LocalDate in, LocalDate out) {
+        return new RoomQuery(in, out);
+    }
+
+    /**
+     * Only rooms for at least this many guests, see {@link model.RoomType#getSpace()}.
+     */
+    public RoomQuery minCapacity(int guests) {
+        this.minCapacity = guests;
+        return this;
+    }
+
+    public RoomQuery bedTypes(Set<BedType> bedTypes) {
+        if (bedTypes.isEmpty()) {
+            throw new IllegalArgumentException("No bed type");
+        }
+        this.bedTypes = EnumSet.copyOf(bedTypes);
+        return this;
+    }
+
+    /**
+     * @param min lowest price, or {@code null} for no limit
+     * @param max highest price, or {@code null} for no limit
+     */
+    public RoomQuery price(Integer min, Integer max) {
+        this.minPrice = min;
+        this.maxPrice = max;
+        return this;
+    }
+
+    public RoomQuery orderBy(Order order) {
+        this.order = Objects.requireNonNull(order);
+        return this;
+    }
+
+    /**
+     * Returns at most this many rooms, or all of them if {@code limit} is 0.
+     */
+    public RoomQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Negative limit: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    public LocalDate getIn() {
+        return in;
+    }
+
+    public LocalDate getOut() {
+        return out;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * Returns whether the room satisfies the conditions of this query other than being available.
+     */
+    public boolean matches(Room room) {
+        var type = room.getType();
+        return type.getSpace() >= minCapacity
+                && bedTypes.contains(type.getBedType())
+                && (minPrice == null || type.getPrice() >= minPrice)
+                && (maxPrice == null || type.getPrice() <= maxPrice);
+    }
+
+    /**
+     * Applies the conditions, order and limit to the available rooms.
+     */
+    List<Room> select(List<Room> available) {
+        List<Room> rooms = new ArrayList<>();
+        for (var room : available) {
+            if (matches(room)) {
+                rooms.add(room);
+            }
+        }
+        rooms.sort(order.comparator);
+        return limit > 0 && rooms.size() > limit ? new ArrayList<>(rooms.subList(0, limit)) : rooms;
+    }
+
+    String toSql() {
+        var sql = new StringBuilder("SELECT ID, ROOM_NUMBER, PRICE, BEDS_AMOUNT, BED_TYPES FROM APP.ROOM WHERE CAPACITY >= ?");
+        if (bedTypes.size() < BedType.values().length) {
+            sql.append(" AND BED_TYPES IN (")
+                    .append(bedTypes.stream().map(type -> "?").collect(Collectors.joining(", ")))
+                    .append(')');
+        }
+        if (minPrice != null) {
+            sql.append(" AND PRICE >= ?");
+        }
+        if (maxPrice != null) {
+            sql.append(" AND PRICE <= ?");
+        }
+        sql.append(" AND ID NOT IN (SELECT ROOM_ID FROM APP.RESERVATION WHERE RESERVATION.EXPECTED_CHECK_IN_DATE < ?" +
+                " AND RESERVATION.EXPECTED_CHECK_OUT_DATE > ? AND RESERVATION.CHECK_OUT_DATE IS NULL)");
+        sql.append(" ORDER BY ").append(order.orderBy);
+        if (limit > 0) {
+            sql.append(" FETCH FIRST ? ROWS ONLY");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Sets the parameters of the statement prepared from {@link #toSql()}.
+     */
+    void setParameters(PreparedStatement st) throws SQLException {
+        int index = 1;
+        st.setInt(index++, minCapacity);
+        if (bedTypes.size() < BedType.values().length) {
+            for (var type : bedTypes) {
+                st.setString(index++, type.name());
+            }
+        }
+        if (minPrice != null) {
+            st.setInt(index++, minPrice);
+        }
+        if (maxPrice != null) {
+            st.setInt(index++, maxPrice);
+        }
+        st.setDate(index++, Date.valueOf(out));
+        st.setDate(index++, Date.valueOf(in));
+        if (limit > 0) {
+            st.setInt(index, limit);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return in + " - " + out + ", capacity >= " + minCapacity + ", " + bedTypes
+                + ", price " + minPrice + " - " + maxPrice + ", by " + order + (limit > 0 ? ", first " + limit : "");
+    }
+}
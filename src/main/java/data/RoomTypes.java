@@ -0,0 +1,23 @@
+package data;
+
+import model.RoomType;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shares one instance of each distinct {@link RoomType} among all loaded rooms. A hotel has only a
+ * handful of room types, so the registry never grows large.
+ */
+final class RoomTypes {
+
+    private static final ConcurrentMap<RoomType, RoomType> INSTANCES = new ConcurrentHashMap<>();
+
+    private RoomTypes() {
+    }
+
+    static RoomType intern(RoomType type) {
+        var existing = INSTANCES.putIfAbsent(type, type);
+        return existing != null ? existing : type;
+    }
+}
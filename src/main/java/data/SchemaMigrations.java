@@ -0,0 +1,286 @@
+package data;
+
+import model.BedType;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+/**
+ * Evolves the database schema by an ordered list of migrations. The versions applied are recorded
+ * in the SCHEMA_VERSION table, so that a start only reads that table and each migration runs once.
+ * <p>
+ * The pending migrations run in one transaction, so that a failure leaves the schema as it was.
+ * Online migrations only add what speeds up queries, such as indexes; the application works without
+ * them, so they can run in the background once it has started, each in its own transaction.
+ * <p>
+ * Databases created before the schema was versioned have no SCHEMA_VERSION table. They run all
+ * migrations, each of which skips the objects that exist already. A migration that cannot be
+ * completed, such as a constraint the existing rows violate, stays pending and is tried again.
+ */
+public final class SchemaMigrations {
+
+    private static final Logger LOGGER = Logger.getLogger(SchemaMigrations.class.getName());
+
+    /**
+     * SQL state reported when a table does not exist.
+     */
+    private static final String TABLE_NOT_FOUND = "42X05";
+
+    @FunctionalInterface
+    interface Step {
+        /**
+         * @return whether the migration is complete; if not, its version is not recorded and it
+         * runs again on the next start
+         */
+        boolean apply(SchemaObjects schema, Connection connection) throws SQLException;
+    }
+
+    static final class Migration {
+        private final int version;
+        private final String table;
+        private final String description;
+        private final boolean online;
+        private final Step step;
+
+        private Migration(int version, String table, String description, boolean online, Step step) {
+            this.version = version;
+            this.table = table;
+            this.description = description;
+            this.online = online;
+            this.step = step;
+        }
+
+        @Override
+        public String toString() {
+            return version + " " + description;
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "ROOM", "Create ROOM", false, (schema, connection) ->
+                    schema.createTable("APP", "ROOM", "CREATE TABLE APP.ROOM (" +
+                            "ID BIGINT PRIMARY KEY GENERATED ALWAYS AS IDENTITY," +
+                            "ROOM_NUMBER INT NOT NULL," +
+                            "PRICE INT NOT NULL," +
+                            "BEDS_AMOUNT INT NOT NULL," +
+                            "BED_TYPES VARCHAR(150) NOT NULL" +
+                            ")")),
+            new Migration(2, "RESERVATION", "Create RESERVATION", false, (schema, connection) ->
+                    schema.createTable("APP", "RESERVATION", "CREATE TABLE APP.RESERVATION (" +
+                            "ID BIGINT PRIMARY KEY GENERATED ALWAYS AS IDENTITY," +
+                            "GUEST_NAME VARCHAR(100) NOT NULL," +
+                            "EMAIL VARCHAR(100) NOT NULL," +
+                            "ADDRESS VARCHAR(100) NOT NULL," +
+                            "PHONE VARCHAR(20) NOT NULL," +
+                            "DETAILS VARCHAR(1000) NOT NULL," +
+                            "EXPECTED_CHECK_IN_DATE DATE NOT NULL," +
+                            "EXPECTED_CHECK_OUT_DATE DATE NOT NULL," +
+                            "CHECK_IN_DATE DATE," +
+                            "CHECK_OUT_DATE DATE," +
+                            "GUESTS_NUMBER INT NOT NULL," +
+                            "ROOM_ID BIGINT NOT NULL" +
+                            ")")),
+            new Migration(3, "RESERVATION", "Widen RESERVATION.ROOM_ID to BIGINT", false,
+                    SchemaMigrations::widenRoomId),
+            new Migration(4, "ROOM", "Unique room numbers", false, (schema, connection) ->
+                    schema.addConstraint("ROOM_NUMBER_UNIQUE",
+                            "ALTER TABLE APP.ROOM ADD CONSTRAINT ROOM_NUMBER_UNIQUE UNIQUE (ROOM_NUMBER)")),
+            new Migration(5, "RESERVATION", "Reservations reference rooms", false, (schema, connection) ->
+                    schema.addConstraint("RESERVATION_ROOM_FK",
+                            "ALTER TABLE APP.RESERVATION ADD CONSTRAINT RESERVATION_ROOM_FK FOREIGN KEY (ROOM_ID) REFERENCES APP.ROOM (ID)")),
+            // findAvailableRooms: CHECK_OUT_DATE IS NULL AND EXPECTED_CHECK_IN_DATE < ? AND EXPECTED_CHECK_OUT_DATE > ?
+            new Migration(6, "RESERVATION", "Index reservations by availability", true, (schema, connection) ->
+                    schema.createIndex("RESERVATION_AVAILABILITY_IDX",
+                            "CREATE INDEX APP.RESERVATION_AVAILABILITY_IDX ON APP.RESERVATION (CHECK_OUT_DATE, EXPECTED_CHECK_IN_DATE, EXPECTED_CHECK_OUT_DATE, ROOM_ID)")),
+            // date ranges of a single room
+            new Migration(7, "RESERVATION", "Index reservations by room and dates", true, (schema, connection) ->
+                    schema.createIndex("RESERVATION_ROOM_DATES_IDX",
+                            "CREATE INDEX APP.RESERVATION_ROOM_DATES_IDX ON APP.RESERVATION (ROOM_ID, EXPECTED_CHECK_IN_DATE, EXPECTED_CHECK_OUT_DATE)")),
+            new Migration(8, "ROOM", "Room capacity", false, (schema, connection) ->
+                    schema.addColumn("APP", "ROOM", "CAPACITY",
+                            "ALTER TABLE APP.ROOM ADD COLUMN CAPACITY INT GENERATED ALWAYS AS (" + capacityExpression() + ")")),
+            // RoomQuery: CAPACITY >= ? AND PRICE BETWEEN ? AND ?
+            new Migration(9, "ROOM", "Index rooms by capacity and price", true, (schema, connection) ->
+                    schema.createIndex("ROOM_CAPACITY_PRICE_IDX",
+                            "CREATE INDEX APP.ROOM_CAPACITY_PRICE_IDX ON APP.ROOM (CAPACITY, PRICE)"))
+    );
+
+    private final DataSource dataSource;
+
+    public SchemaMigrations(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Applies the pending migrations that are not online, in one transaction.
+     */
+    public void migrate() {
+        migrate(migration -> !migration.online);
+    }
+
+    /**
+     * Applies the pending online migrations, each in its own transaction. Tables being indexed are
+     * locked until their index is built, so this is best run once the data has been loaded.
+     */
+    public void migrateOnline() {
+        for (var migration : MIGRATIONS) {
+            if (migration.online) {
+                migrate(m -> m == migration);
+            }
+        }
+    }
+
+    /**
+     * Applies all pending migrations of the table, without waiting for online ones to be run
+     * separately. Tables referenced by the table must be migrated first.
+     */
+    void migrateTable(String table) {
+        migrate(migration -> !migration.online && migration.table.equals(table));
+        migrate(migration -> migration.online && migration.table.equals(table));
+    }
+
+    /**
+     * Forgets the migrations of a table that has been dropped, so that they run again.
+     */
+    void forget(String table) {
+        try (var connection = dataSource.getConnection();
+             var st = connection.prepareStatement("DELETE FROM APP.SCHEMA_VERSION WHERE TABLE_NAME = ?")) {
+            st.setString(1, table);
+            st.executeUpdate();
+        } catch (SQLException ex) {
+            if (!TABLE_NOT_FOUND.equals(ex.getSQLState())) {
+                throw new DataException("Failed to forget the schema version of " + table, ex);
+            }
+        }
+    }
+
+    private void migrate(Predicate<Migration> filter) {
+        try (var connection = dataSource.getConnection()) {
+            var applied = appliedVersions(connection);
+            List<Migration> pending = new ArrayList<>();
+            for (var migration : MIGRATIONS) {
+                if (filter.test(migration) && (applied == null || !applied.contains(migration.version))) {
+                    pending.add(migration);
+                }
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            connection.setAutoCommit(false);
+            try {
+                if (applied == null) {
+                    createVersionTable(connection);
+                }
+                var schema = new SchemaObjects(connection);
+                for (var migration : pending) {
+                    apply(schema, connection, migration);
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException ex) {
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            throw new DataException("Failed to migrate the database schema", ex);
+        }
+    }
+
+    /**
+     * Returns the versions applied so far, or null if the SCHEMA_VERSION table does not exist.
+     */
+    private static Set<Integer> appliedVersions(Connection connection) throws SQLException {
+        try (var st = connection.createStatement();
+             var rs = st.executeQuery("SELECT VERSION FROM APP.SCHEMA_VERSION")) {
+            Set<Integer> versions = new HashSet<>();
+            while (rs.next()) {
+                versions.add(rs.getInt(1));
+            }
+            return versions;
+        } catch (SQLException ex) {
+            if (TABLE_NOT_FOUND.equals(ex.getSQLState())) {
+                return null;
+            }
+            throw ex;
+        }
+    }
+
+    private static void createVersionTable(Connection connection) throws SQLException {
+        try (var st = connection.createStatement()) {
+            st.executeUpdate("CREATE TABLE APP.SCHEMA_VERSION (" +
+                    "VERSION INT PRIMARY KEY," +
+                    "TABLE_NAME VARCHAR(128) NOT NULL," +
+                    "DESCRIPTION VARCHAR(200) NOT NULL," +
+                    "INSTALLED_ON TIMESTAMP NOT NULL," +
+                    "EXECUTION_MILLIS INT NOT NULL" +
+                    ")");
+        }
+    }
+
+    private static void apply(SchemaObjects schema, Connection connection, Migration migration) throws SQLException {
+        long start = System.nanoTime();
+        boolean complete;
+        try {
+            complete = migration.step.apply(schema, connection);
+        } catch (SQLException ex) {
+            throw new SQLException("Migration " + migration + " failed", ex.getSQLState(), ex);
+        }
+        if (!complete) {
+            LOGGER.warning("Schema migration " + migration + " left pending");
+            return;
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        try (var st = connection.prepareStatement("INSERT INTO APP.SCHEMA_VERSION" +
+                " (VERSION, TABLE_NAME, DESCRIPTION, INSTALLED_ON, EXECUTION_MILLIS) VALUES (?, ?, ?, ?, ?)")) {
+            st.setInt(1, migration.version);
+            st.setString(2, migration.table);
+            st.setString(3, migration.description);
+            st.setTimestamp(4, Timestamp.from(Instant.now()));
+            st.setInt(5, (int) millis);
+            st.executeUpdate();
+        }
+        LOGGER.info("Applied schema migration " + migration + " in " + millis + " ms");
+    }
+
+    /**
+     * Number of guests a room takes, {@link model.RoomType#getSpace()}, computed by Derby from the
+     * beds. Changing the capacity of a bed type needs a migration that redefines the column.
+     */
+    private static String capacityExpression() {
+        var expression = new StringBuilder("BEDS_AMOUNT * CASE BED_TYPES");
+        for (var type : BedType.values()) {
+            expression.append(" WHEN '").append(type.name()).append("' THEN ").append(type.getCapacity());
+        }
+        return expression.append(" ELSE 0 END").toString();
+    }
+
+    /**
+     * Databases created by older versions store ROOM_ID as INT, which cannot reference the BIGINT
+     * ROOM.ID. Derby cannot change a column type in place, so the values are copied to a new BIGINT
+     * column.
+     */
+    private static boolean widenRoomId(SchemaObjects schema, Connection connection) throws SQLException {
+        if (!"INTEGER".equals(schema.columnType("APP", "RESERVATION", "ROOM_ID"))) {
+            return true;
+        }
+        try (var st = connection.createStatement()) {
+            st.executeUpdate("ALTER TABLE APP.RESERVATION ADD COLUMN ROOM_ID_WIDE BIGINT");
+            st.executeUpdate("UPDATE APP.RESERVATION SET ROOM_ID_WIDE = ROOM_ID");
+            st.executeUpdate("ALTER TABLE APP.RESERVATION DROP COLUMN ROOM_ID");
+            st.executeUpdate("RENAME COLUMN APP.RESERVATION.ROOM_ID_WIDE TO ROOM_ID");
+            st.executeUpdate("ALTER TABLE APP.RESERVATION ALTER COLUMN ROOM_ID NOT NULL");
+        }
+        return true;
+    }
+}
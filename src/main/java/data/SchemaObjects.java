@@ -0,0 +1,100 @@
+package data;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates tables, indexes and constraints unless they exist. Databases created before the schema
+ * was versioned have some of them already, as older versions created them on every start.
+ */
+final class SchemaObjects {
+
+    private static final Logger LOGGER = Logger.getLogger(SchemaObjects.class.getName());
+
+    /**
+     * SQL states reported when existing rows violate a new unique or foreign key constraint.
+     */
+    private static final String DUPLICATE_KEY = "23505";
+    private static final String FOREIGN_KEY_VIOLATION = "X0Y45";
+
+    private final Connection connection;
+
+    SchemaObjects(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * @return whether the table exists now, which is always the case
+     */
+    boolean createTable(String schema, String table, String ddl) throws SQLException {
+        if (!tableExists(schema, table)) {
+            execute(ddl);
+        }
+        return true;
+    }
+
+    boolean addColumn(String schema, String table, String column, String ddl) throws SQLException {
+        if (columnType(schema, table, column) == null) {
+            execute(ddl);
+        }
+        return true;
+    }
+
+    /**
+     * Adds the constraint unless it exists. If the rows already in the table violate it, the
+     * constraint is left out and a warning is logged, so that no data is lost.
+     *
+     * @return whether the constraint exists now
+     */
+    boolean addConstraint(String name, String ddl) throws SQLException {
+        if (exists("SELECT 1 FROM SYS.SYSCONSTRAINTS WHERE CONSTRAINTNAME = ?", name)) {
+            return true;
+        }
+        try {
+            execute(ddl);
+            return true;
+        } catch (SQLException ex) {
+            if (DUPLICATE_KEY.equals(ex.getSQLState()) || FOREIGN_KEY_VIOLATION.equals(ex.getSQLState())) {
+                LOGGER.log(Level.WARNING, "Constraint " + name + " not created, existing data violates it", ex);
+                return false;
+            }
+            throw ex;
+        }
+    }
+
+    boolean createIndex(String name, String ddl) throws SQLException {
+        if (!exists("SELECT 1 FROM SYS.SYSCONGLOMERATES WHERE CONGLOMERATENAME = ?", name)) {
+            execute(ddl);
+        }
+        return true;
+    }
+
+    boolean tableExists(String schema, String table) throws SQLException {
+        try (var rs = connection.getMetaData().getTables(null, schema, table, null)) {
+            return rs.next();
+        }
+    }
+
+    String columnType(String schema, String table, String column) throws SQLException {
+        try (var rs = connection.getMetaData().getColumns(null, schema, table, column)) {
+            return rs.next() ? rs.getString("TYPE_NAME") : null;
+        }
+    }
+
+    private void execute(String ddl) throws SQLException {
+        try (var st = connection.createStatement()) {
+            st.executeUpdate(ddl);
+        }
+    }
+
+    private boolean exists(String query, String name) throws SQLException {
+        try (var st = connection.prepareStatement(query)) {
+            st.setString(1, name);
+            try (var rs = st.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+}
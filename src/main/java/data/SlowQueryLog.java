@@ -0,0 +1,457 @@
+package data;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * {@link DataSource} decorator that times the statements run on its connections, logs those that
+ * take longer than the threshold and keeps the slowest ones.
+ * <p>
+ * A query is timed from its execution until its result set is closed, so the time includes reading
+ * the rows; an update until it returns. String parameters are masked, as they are the name, contact
+ * details and search text of guests; numbers and dates are shown. Statements from
+ * {@code prepareCall} are not timed.
+ */
+public class SlowQueryLog implements DataSource, SlowQueryLogMXBean {
+
+    private static final Logger LOGGER = Logger.getLogger(SlowQueryLog.class.getName());
+    /**
+     * Shown in place of the SQL of a batch of a plain statement, whose statements are not recorded.
+     */
+    private static final String BATCH_SQL = "<batch>";
+
+    private final DataSource target;
+    private final int topSize;
+    private volatile long thresholdNanos;
+    /**
+     * The slowest execution of each of the slowest statements, slowest first.
+     */
+    private final List<SlowStatement> slowest = new ArrayList<>();
+    /**
+     * Time of the fastest statement in a full {@link #slowest} list; faster executions are skipped
+     * without taking the lock.
+     */
+    private volatile long slowestFloorNanos;
+
+    /**
+     * @param threshold statements running at least this long are logged
+     * @param topSize   number of slowest statements kept
+     */
+    public SlowQueryLog(DataSource target, Duration threshold, int topSize) {
+        if (topSize < 0) {
+            throw new IllegalArgumentException("Number of kept statements must not be negative: " + topSize);
+        }
+        this.target = Objects.requireNonNull(target, "target");
+        this.thresholdNanos = threshold.toNanos();
+        this.topSize = topSize;
+    }
+
+    @Override
+    public long getThresholdMillis() {
+        return Duration.ofNanos(thresholdNanos).toMillis();
+    }
+
+    @Override
+    public void setThresholdMillis(long thresholdMillis) {
+        this.thresholdNanos = Duration.ofMillis(thresholdMillis).toNanos();
+    }
+
+    @Override
+    public synchronized List<SlowStatement> getSlowestStatements() {
+        return List.copyOf(slowest);
+    }
+
+    @Override
+    public synchronized void reset() {
+        slowest.clear();
+        slowestFloorNanos = 0;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(target.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(target.getConnection(username, password));
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(SlowQueryLog.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private void finished(Execution execution) {
+        long elapsed = System.nanoTime() - execution.started;
+        var event = execution.event;
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.sql = execution.sql;
+                event.parameters = execution.parameters();
+                event.rows = execution.rows;
+                event.correlationId = Correlation.current();
+                event.commit();
+            }
+        }
+        if (elapsed >= thresholdNanos) {
+            LOGGER.warning("Slow statement, " + Duration.ofNanos(elapsed).toMillis() + " ms ("
+                    + Duration.ofNanos(execution.executed - execution.started).toMillis() + " ms to execute), "
+                    + execution.rows + " rows: " + execution.sql + " " + execution.parameters());
+        }
+        if (topSize > 0 && elapsed > slowestFloorNanos) {
+            keep(new SlowStatement(execution.sql, execution.parameters(), execution.rows,
+                    Duration.ofNanos(elapsed).toMillis(), System.currentTimeMillis()));
+        }
+    }
+
+    private synchronized void keep(SlowStatement statement) {
+        for (int i = 0; i < slowest.size(); i++) {
+            if (slowest.get(i).getSql().equals(statement.getSql())) {
+                if (slowest.get(i).getElapsedMillis() >= statement.getElapsedMillis()) {
+                    return;
+                }
+                slowest.remove(i);
+                break;
+            }
+        }
+        slowest.add(statement);
+        slowest.sort(Comparator.comparingLong(SlowStatement::getElapsedMillis).reversed());
+        if (slowest.size() > topSize) {
+            slowest.remove(topSize);
+        }
+        if (slowest.size() == topSize) {
+            slowestFloorNanos = Duration.ofMillis(slowest.get(topSize - 1).getElapsedMillis()).toNanos();
+        }
+    }
+
+    /**
+     * Returns the bound parameters in order, with strings masked.
+     */
+    static String describe(Map<Integer, Object> parameters) {
+        var description = new StringBuilder("[");
+        parameters.forEach((index, value) -> {
+            if (description.length() > 1) {
+                description.append(", ");
+            }
+            description.append(index).append('=');
+            if (value == null) {
+                description.append("NULL");
+            } else if (value instanceof CharSequence || value instanceof Character) {
+                description.append("'***'");
+            } else if (value instanceof Number || value instanceof java.util.Date
+                    || value instanceof java.time.temporal.Temporal || value instanceof Boolean) {
+                description.append(value);
+            } else {
+                description.append('<').append(value.getClass().getSimpleName()).append('>');
+            }
+        });
+        return description.append(']').toString();
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return target.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        target.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        target.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return target.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return target.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return target.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || target.isWrapperFor(iface);
+    }
+
+    /**
+     * One run of a statement, from its execution until its result set is closed.
+     */
+    private static final class Execution {
+
+        private final String sql;
+        /**
+         * Parameters bound to the statement, described only when the execution is reported.
+         */
+        private Map<Integer, Object> boundParameters;
+        private String parameters;
+        private final long started = System.nanoTime();
+        private long executed;
+        private long rows;
+        /**
+         * Flight Recorder event of the execution, or {@code null} when the event is disabled.
+         */
+        private SqlStatementEvent event;
+
+        /**
+         * @param parameters      description of the parameters, or {@code null} to describe
+         *                        {@code boundParameters}
+         * @param boundParameters parameters of the statement, which it keeps changing
+         */
+        private Execution(String sql, String parameters, Map<Integer, Object> boundParameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.boundParameters = boundParameters;
+            var event = new SqlStatementEvent();
+            if (event.isEnabled()) {
+                event.begin();
+                this.event = event;
+            }
+        }
+
+        private String parameters() {
+            if (parameters == null) {
+                parameters = describe(boundParameters);
+                boundParameters = null;
+            }
+            return parameters;
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+
+        private ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return Proxy.newProxyInstance(SlowQueryLog.class.getClassLoader(),
+                            new Class<?>[]{PreparedStatement.class},
+                            new StatementHandler((Statement) SlowQueryLog.invoke(connection, method, args),
+                                    (String) args[0], proxy));
+                case "createStatement":
+                    return Proxy.newProxyInstance(SlowQueryLog.class.getClassLoader(),
+                            new Class<?>[]{Statement.class},
+                            new StatementHandler((Statement) SlowQueryLog.invoke(connection, method, args), null, proxy));
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return SlowQueryLog.invoke(connection, method, args);
+            }
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+        private final String preparedSql;
+        private final Object connection;
+        private final Map<Integer, Object> parameters = new TreeMap<>();
+        private int batchSize;
+        private Execution running;
+
+        private StatementHandler(Statement statement, String preparedSql, Object connection) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            var name = method.getName();
+            switch (name) {
+                case "executeQuery":
+                    start(args);
+                    var resultSet = (ResultSet) execute(method, args);
+                    return Proxy.newProxyInstance(SlowQueryLog.class.getClassLoader(),
+                            new Class<?>[]{ResultSet.class}, new ResultSetHandler(resultSet, this, proxy));
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "execute":
+                case "executeBatch":
+                case "executeLargeBatch":
+                    start(args);
+                    var result = execute(method, args);
+                    running.rows = updateCount(result);
+                    batchSize = 0;
+                    finish();
+                    return result;
+                case "addBatch":
+                    batchSize++;
+                    return SlowQueryLog.invoke(statement, method, args);
+                case "clearBatch":
+                    batchSize = 0;
+                    return SlowQueryLog.invoke(statement, method, args);
+                case "clearParameters":
+                    parametersChanging();
+                    parameters.clear();
+                    return SlowQueryLog.invoke(statement, method, args);
+                case "close":
+                    finish();
+                    return SlowQueryLog.invoke(statement, method, args);
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        parametersChanging();
+                        parameters.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                    }
+                    return SlowQueryLog.invoke(statement, method, args);
+            }
+        }
+
+        private void start(Object[] args) {
+            finish();
+            // executeBatch of a plain statement has no SQL argument
+            var sql = preparedSql != null ? preparedSql : args != null ? (String) args[0] : BATCH_SQL;
+            if (batchSize > 0) {
+                running = new Execution(sql, "[batch of " + batchSize + "]", null);
+            } else if (preparedSql != null) {
+                running = new Execution(sql, null, parameters);
+            } else {
+                running = new Execution(sql, "", null);
+            }
+        }
+
+        /**
+         * Describes the parameters of the running execution before they change, as it may still
+         * be reported later.
+         */
+        private void parametersChanging() {
+            if (running != null) {
+                running.parameters();
+            }
+        }
+
+        /**
+         * Runs the execution started last; a failed execution is finished at once.
+         */
+        private Object execute(Method method, Object[] args) throws Throwable {
+            try {
+                var result = SlowQueryLog.invoke(statement, method, args);
+                running.executed = System.nanoTime();
+                return result;
+            } catch (Throwable e) {
+                running.executed = System.nanoTime();
+                batchSize = 0;
+                finish();
+                throw e;
+            }
+        }
+
+        private void finish() {
+            if (running != null) {
+                var execution = running;
+                running = null;
+                finished(execution);
+            }
+        }
+
+        private long updateCount(Object result) throws SQLException {
+            if (result instanceof Integer || result instanceof Long) {
+                return ((Number) result).longValue();
+            }
+            if (result instanceof int[] || result instanceof long[]) {
+                long sum = 0;
+                if (result instanceof int[]) {
+                    for (int count : (int[]) result) {
+                        sum += Math.max(0, count);
+                    }
+                } else {
+                    for (long count : (long[]) result) {
+                        sum += Math.max(0, count);
+                    }
+                }
+                return sum;
+            }
+            return Math.max(0, statement.getUpdateCount());
+        }
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+
+        private final ResultSet resultSet;
+        private final StatementHandler statement;
+        private final Object statementProxy;
+
+        private ResultSetHandler(ResultSet resultSet, StatementHandler statement, Object statementProxy) {
+            this.resultSet = resultSet;
+            this.statement = statement;
+            this.statementProxy = statementProxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    var hasRow = (Boolean) SlowQueryLog.invoke(resultSet, method, args);
+                    if (hasRow && statement.running != null) {
+                        statement.running.rows++;
+                    }
+                    return hasRow;
+                case "close":
+                    statement.finish();
+                    return SlowQueryLog.invoke(resultSet, method, args);
+                case "getStatement":
+                    return statementProxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return SlowQueryLog.invoke(resultSet, method, args);
+            }
+        }
+    }
+}
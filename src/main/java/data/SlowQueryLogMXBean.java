@@ -0,0 +1,21 @@
+package data;
+
+import java.util.List;
+
+/**
+ * Management interface of {@link SlowQueryLog}, as shown by JConsole or VisualVM.
+ */
+public interface SlowQueryLogMXBean {
+
+    long getThresholdMillis();
+
+    void setThresholdMillis(long thresholdMillis);
+
+    /**
+     * Returns the slowest execution of each of the slowest statements since the last reset, slowest
+     * first.
+     */
+    List<SlowStatement> getSlowestStatements();
+
+    void reset();
+}
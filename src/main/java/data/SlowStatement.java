@@ -0,0 +1,58 @@
+package data;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * One execution of a statement recorded by {@link SlowQueryLog}.
+ */
+public final class SlowStatement {
+
+    private final String sql;
+    private final String parameters;
+    private final long rows;
+    private final long elapsedMillis;
+    private final long timestamp;
+
+    @ConstructorProperties({"sql", "parameters", "rows", "elapsedMillis", "timestamp"})
+    public SlowStatement(String sql, String parameters, long rows, long elapsedMillis, long timestamp) {
+        this.sql = sql;
+        this.parameters = parameters;
+        this.rows = rows;
+        this.elapsedMillis = elapsedMillis;
+        this.timestamp = timestamp;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Returns the bound parameters, with strings masked.
+     */
+    public String getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Returns the number of rows read by a query, or changed by an update.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Returns when the statement finished, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return elapsedMillis + " ms, " + rows + " rows: " + sql + " " + parameters;
+    }
+}
@@ -0,0 +1,27 @@
+package data;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("hotel.SqlStatement")
+@Label("SQL Statement")
+@Category({"Hotel", "Database"})
+@Description("Statement run through the slow query log, until its result set was closed")
+class SqlStatementEvent extends Event {
+
+    @Label("SQL")
+    String sql;
+
+    @Label("Parameters")
+    @Description("Bound parameters, with strings masked")
+    String parameters;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Correlation ID")
+    long correlationId;
+}
@@ -0,0 +1,45 @@
+package data;
+
+import model.Room;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+
+/**
+ * A room free for a whole stay, found by {@link RoomDao#findStayOptions(StaySearch)}.
+ */
+public final class StayOption {
+
+    /**
+     * Earliest check-in first, then the smallest room that fits, as {@link RoomQuery.Order#CAPACITY}.
+     */
+    static final Comparator<StayOption> ORDER = Comparator.comparing(StayOption::getCheckIn)
+            .thenComparing(StayOption::getRoom, RoomQuery.Order.CAPACITY.comparator());
+
+    private final Room room;
+    private final LocalDate checkIn;
+    private final LocalDate checkOut;
+
+    StayOption(Room room, LocalDate checkIn, LocalDate checkOut) {
+        this.room = room;
+        this.checkIn = checkIn;
+        this.checkOut = checkOut;
+    }
+
+    public Room getRoom() {
+        return room;
+    }
+
+    public LocalDate getCheckIn() {
+        return checkIn;
+    }
+
+    public LocalDate getCheckOut() {
+        return checkOut;
+    }
+
+    @Override
+    public String toString() {
+        return room + " " + checkIn + " - " + checkOut;
+    }
+}
@@ -0,0 +1,107 @@
+package data;
+
+import model.BedType;
+import model.Room;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+
+/**
+ * Stays of a given number of nights starting on any day of a window, for a number of guests and
+ * optionally a bed type: "when can I get 4 nights in a KING room next month?". The best options are
+ * those of {@link StayOption#ORDER}.
+ */
+public final class StaySearch {
+
+    public static final int DEFAULT_LIMIT = 20;
+
+    private final int nights;
+    private final LocalDate earliestCheckIn;
+    private final LocalDate latestCheckIn;
+    private int minCapacity;
+    private BedType bedType;
+    private int limit = DEFAULT_LIMIT;
+
+    private StaySearch(int nights, LocalDate earliestCheckIn, LocalDate latestCheckIn) {
+        if (nights < 1) {
+            throw new IllegalArgumentException("Stay must be at least one night: " + nights);
+        }
+        if (latestCheckIn.isBefore(earliestCheckIn)) {
+            throw new IllegalArgumentException("Empty check-in window: " + earliestCheckIn + " - " + latestCheckIn);
+        }
+        this.nights = nights;
+        this.earliestCheckIn = earliestCheckIn;
+        this.latestCheckIn = latestCheckIn;
+    }
+
+    /**
+     * Stays of {@code nights} checking in from {@code earliestCheckIn} to {@code latestCheckIn},
+     * both inclusive.
+     */
+    public static StaySearch of(int nights, LocalDate earliestCheckIn, LocalDate latestCheckIn) {
+        return new StaySearch(nights, Objects.requireNonNull(earliestCheckIn), Objects.requireNonNull(latestCheckIn));
+    }
+
+    /**
+     * Only rooms for at least this many guests, see {@link model.RoomType#getSpace()}.
+     */
+    public StaySearch minCapacity(int guests) {
+        this.minCapacity = guests;
+        return this;
+    }
+
+    /**
+     * @param bedType bed type of the room, or {@code null} for any
+     */
+    public StaySearch bedType(BedType bedType) {
+        this.bedType = bedType;
+        return this;
+    }
+
+    public StaySearch limit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    public int getNights() {
+        return nights;
+    }
+
+    public LocalDate getEarliestCheckIn() {
+        return earliestCheckIn;
+    }
+
+    public LocalDate getLatestCheckIn() {
+        return latestCheckIn;
+    }
+
+    public LocalDate getLatestCheckOut() {
+        return latestCheckIn.plusDays(nights);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Number of days from the earliest check-in to the latest check-out.
+     */
+    int getDays() {
+        return (int) ChronoUnit.DAYS.between(earliestCheckIn, getLatestCheckOut());
+    }
+
+    boolean matches(Room room) {
+        var type = room.getType();
+        return type.getSpace() >= minCapacity && (bedType == null || type.getBedType() == bedType);
+    }
+
+    @Override
+    public String toString() {
+        return nights + " nights checking in " + earliestCheckIn + " - " + latestCheckIn + ", capacity >= "
+                + minCapacity + (bedType != null ? ", " + bedType : "") + ", first " + limit;
+    }
+}
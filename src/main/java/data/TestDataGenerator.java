@@ -19,7 +19,7 @@ public class TestDataGenerator {
     }
 
     public void createTestData() {
-        if(roomDao.findAll().size() == 0){
+        if(roomDao.count() == 0){
             List<RoomType> types = new ArrayList<>(Arrays.asList(
                     new RoomType(BedType.QUEEN, 18, 2),
                     new RoomType(BedType.TWINXL, 10, 1),
@@ -28,10 +28,11 @@ public class TestDataGenerator {
                     new RoomType(BedType.TWIN, 12, 1),
                     new RoomType(BedType.FULL, 20, 4)));
 
+            List<Room> rooms = new ArrayList<>();
             for (int x = 1; x < 6; x++) {
-                Room room = new Room(x, types.get(ThreadLocalRandom.current().nextInt(0, types.size())));
-                roomDao.create(room);
+                rooms.add(new Room(x, types.get(ThreadLocalRandom.current().nextInt(0, types.size()))));
             }
+            roomDao.createAll(rooms);
 
             Guest guest = new Guest("Honza Pepega", "alik@seznam.cz", "Brno", "no details", "+420905174925");
             Guest guest2 = new Guest("Michal Nový", "rofl@centrum.lol", "Praha 123", "Jsem vegan nebo co", "123519681");
@@ -48,9 +49,7 @@ public class TestDataGenerator {
             res.setRoom(room1);
             res2.setRoom(room5);
             res3.setRoom(room5);
-            reservationDao.create(res);
-            reservationDao.create(res2);
-            reservationDao.create(res3);
+            reservationDao.createAll(List.of(res, res2, res3));
         }
     }
 
@@ -1,9 +1,21 @@
 package model;
 
 import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
 
 public class Reservation {
 
+    /**
+     * Stored values of a reservation that its setters record as modified.
+     */
+    public enum Field {
+        GUEST_NAME, EMAIL, ADDRESS, PHONE, DETAILS,
+        EXPECTED_CHECK_IN_DATE, EXPECTED_CHECK_OUT_DATE, CHECK_IN_DATE, CHECK_OUT_DATE, NUM_GUESTS, ROOM
+    }
+
     private Long id;
     private LocalDate expectedCheckInDate;
     private LocalDate expectedCheckOutDate;
@@ -12,6 +24,7 @@ public class Reservation {
     private int numGuests;
     private Guest guest;
     private Room room;
+    private final Set<Field> modifiedFields = EnumSet.noneOf(Field.class);
 
     public Reservation(LocalDate expectedCheckInDate, LocalDate expectedCheckOutDate, int numGuests, Guest guest) {
         this.expectedCheckInDate = expectedCheckInDate;
@@ -62,6 +75,7 @@ public class Reservation {
     }
 
     public void setRoom(Room room) {
+        modify(Field.ROOM, this.room, room);
         this.room = room;
     }
 
@@ -94,26 +108,59 @@ public class Reservation {
     }
 
     public void setCheckInDate(LocalDate date) {
+        modify(Field.CHECK_IN_DATE, checkInDate, date);
         this.checkInDate = date;
     }
 
     public void setCheckOutDate(LocalDate date) {
+        modify(Field.CHECK_OUT_DATE, checkOutDate, date);
         this.checkOutDate = date;
     }
 
     public void setExpectedCheckInDate(LocalDate expectedCheckInDate) {
+        modify(Field.EXPECTED_CHECK_IN_DATE, this.expectedCheckInDate, expectedCheckInDate);
         this.expectedCheckInDate = expectedCheckInDate;
     }
 
     public void setExpectedCheckOutDate(LocalDate expectedCheckOutDate) {
+        modify(Field.EXPECTED_CHECK_OUT_DATE, this.expectedCheckOutDate, expectedCheckOutDate);
         this.expectedCheckOutDate = expectedCheckOutDate;
     }
 
     public void setNumGuests(int numGuests) {
+        modify(Field.NUM_GUESTS, this.numGuests, numGuests);
         this.numGuests = numGuests;
     }
 
     public void setGuest(Guest guest) {
+        if (this.guest == null || guest == null) {
+            if (this.guest != guest) {
+                modifiedFields.addAll(EnumSet.range(Field.GUEST_NAME, Field.DETAILS));
+            }
+        } else {
+            modify(Field.GUEST_NAME, this.guest.getName(), guest.getName());
+            modify(Field.EMAIL, this.guest.getEmail(), guest.getEmail());
+            modify(Field.ADDRESS, this.guest.getAddress(), guest.getAddress());
+            modify(Field.PHONE, this.guest.getPhone(), guest.getPhone());
+            modify(Field.DETAILS, this.guest.getDetails(), guest.getDetails());
+        }
         this.guest = guest;
     }
+
+    /**
+     * Returns the fields changed by the setters since the reservation was last stored or loaded.
+     */
+    public Set<Field> getModifiedFields() {
+        return Collections.unmodifiableSet(EnumSet.copyOf(modifiedFields));
+    }
+
+    public void clearModifiedFields() {
+        modifiedFields.clear();
+    }
+
+    private void modify(Field field, Object oldValue, Object newValue) {
+        if (!Objects.equals(oldValue, newValue)) {
+            modifiedFields.add(field);
+        }
+    }
 }
\ No newline at end of file
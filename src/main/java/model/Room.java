@@ -1,5 +1,7 @@
 package model;
 
+import java.util.Objects;
+
 public class Room {
 
     private Long id;
@@ -11,6 +13,19 @@ public class Room {
         this.type = type;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Room that = (Room) o;
+        return id != null && id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
+
     public String toString() {
         return String.valueOf(number);
     }
@@ -1,5 +1,7 @@
 package model;
 
+import java.util.Objects;
+
 public class RoomType {
 
     private final BedType bed;
@@ -28,6 +30,19 @@ public class RoomType {
         return bed.getCapacity() * numberOfBeds;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RoomType that = (RoomType) o;
+        return bed == that.bed && price == that.price && numberOfBeds == that.numberOfBeds;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(bed, price, numberOfBeds);
+    }
+
     public String toString() {
         return bed.name();
     }
@@ -18,9 +18,13 @@ public abstract class AbstractEntityTableModel<E> extends AbstractTableModel {
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        return getColumn(columnIndex).getValue(getEntity(rowIndex));
+        E entity = getEntity(rowIndex);
+        return entity == null ? null : getColumn(columnIndex).getValue(entity);
     }
 
+    /**
+     * Returns the entity shown in the given row, or {@code null} if the row is still being loaded.
+     */
     protected abstract E getEntity(int rowIndex);
 
     protected void updateEntity(E entity) {
@@ -44,6 +48,9 @@ public abstract class AbstractEntityTableModel<E> extends AbstractTableModel {
     @Override
     public void setValueAt(Object value, int rowIndex, int columnIndex) {
         E entity = getEntity(rowIndex);
+        if (entity == null) {
+            return;
+        }
         getColumn(columnIndex).setValue(value, entity);
         updateEntity(entity);
     }
@@ -3,6 +3,8 @@ package ui;
 import model.Reservation;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -21,12 +23,19 @@ public class AllReservationTab {
     private JTable rTable = new JTable();
     private final JLabel endLabel = new JLabel("");
     private final ReservationEditor reservationEditor;
+    /**
+     * Searches once the user stops typing for a moment instead of on every keystroke.
+     */
+    private final Timer searchTimer = new Timer(SEARCH_DELAY_MILLIS,
+            UserActionEvent.traced("allReservations", "searchAsYouType", e -> searchAsYouType()));
 
+    private static final int SEARCH_DELAY_MILLIS = 150;
     private static final I18N I18N = new I18N(AllReservationTab.class);
 
     public AllReservationTab(ReservationTableModel reservationTableModel, ReservationEditor reservationEditor) {
         this.reservationTableModel = reservationTableModel;
         this.reservationEditor = reservationEditor;
+        searchTimer.setRepeats(false);
     }
 
     public void createPanel() {
@@ -54,7 +63,7 @@ public class AllReservationTab {
         JButton button = new JButton(I18N.getString(key));
         CustomizationTools.customizeButton(button);
         controlPanel.add(button, constrains(grid, new Insets(10, 10, 10, 10), 1, 1));
-        button.addActionListener(listener);
+        button.addActionListener(UserActionEvent.traced("allReservations", key, listener));
         return button;
     }
 
@@ -63,6 +72,24 @@ public class AllReservationTab {
 
         addSearchField("guestName", guestNameTextField);
         addSearchField("roomNumber", roomNumTextField);
+        DocumentListener restartSearch = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+        };
+        guestNameTextField.getDocument().addDocumentListener(restartSearch);
+        roomNumTextField.getDocument().addDocumentListener(restartSearch);
 
         addButton("search", this::searchForReservations, 1);
         addButton("showAll", this::showAllReservations, 1);
@@ -116,20 +143,45 @@ public class AllReservationTab {
     }
 
     public void searchForReservations(ActionEvent actionEvent) {
+        searchTimer.stop();
         String guestName = guestNameTextField.getText();
-        String roomNumber = roomNumTextField.getText();
+        String roomNumber = roomNumTextField.getText().trim();
         editEndLabel("");
 
-        if ((guestName == null || roomNumber == null) || (guestName.trim().length() <= 0 && roomNumber.trim().length() <= 0)) {
+        if (guestName.trim().length() <= 0 && roomNumber.length() <= 0) {
             editEndLabel("invalidArguments");
-        } else {
+        } else if (isValidRoomNumber(roomNumber)) {
+            reservationTableModel.filterReservations(guestName, roomNumber);
+        }
+    }
+
+    /**
+     * Runs after the search fields were edited; clearing both fields shows all reservations again.
+     */
+    private void searchAsYouType() {
+        String guestName = guestNameTextField.getText();
+        String roomNumber = roomNumTextField.getText().trim();
+        editEndLabel("");
+
+        if (guestName.trim().length() <= 0 && roomNumber.length() <= 0) {
+            reservationTableModel.showAll();
+        } else if (isValidRoomNumber(roomNumber)) {
             reservationTableModel.filterReservations(guestName, roomNumber);
         }
     }
 
+    private boolean isValidRoomNumber(String roomNumber) {
+        if (roomNumber.isEmpty() || roomNumber.matches("\\d{1,9}")) {
+            return true;
+        }
+        editEndLabel("invalidRoomNumber");
+        return false;
+    }
+
     public void showAllReservations(ActionEvent actionEvent){
-        reservationTableModel.showAll();
         clearTextFields();
+        searchTimer.stop();
+        reservationTableModel.showAll();
     }
 
     public void editReservation(ActionEvent actionEvent){
@@ -139,7 +191,9 @@ public class AllReservationTab {
         } else {
             ReservationTableModel model = (ReservationTableModel) rTable.getModel();
             Reservation toEdit = model.getEntity(selectedRows[0]);
-            if (toEdit.getCheckOutDate() != null) {
+            if (toEdit == null) {
+                editEndLabel("noReservationSelected");
+            } else if (toEdit.getCheckOutDate() != null) {
                editEndLabel("alreadyCheckOut");
             } else {
                 reservationEditor.edit(toEdit);
@@ -150,8 +204,9 @@ public class AllReservationTab {
     public Reservation pickReservation() {
         int selectedRow = rTable.getSelectedRow();
         editEndLabel("");
-        if (selectedRow > -1) {
-            return reservationTableModel.getEntity(selectedRow);
+        Reservation reservation = selectedRow > -1 ? reservationTableModel.getEntity(selectedRow) : null;
+        if (reservation != null) {
+            return reservation;
         } else {
             endLabel.setText(I18N.getString("noReservationSelected"));
             return null;
@@ -239,7 +294,8 @@ public class AllReservationTab {
     }
 
     public void deleteReservation(ActionEvent actionEvent) {
-        reservationTableModel.deleteRow(rTable.getSelectedRow());
-        editEndLabel("");
+        if (pickReservation() != null) {
+            reservationTableModel.deleteRow(rTable.getSelectedRow());
+        }
     }
 }
@@ -0,0 +1,40 @@
+package ui;
+
+import data.Correlation;
+
+import java.awt.EventQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+/**
+ * Executor running tasks on the event dispatch thread, used to complete futures of the
+ * asynchronous DAOs there, e.g. {@code future.whenCompleteAsync(action, EdtExecutor.INSTANCE)}.
+ * Tasks submitted on the event dispatch thread run at once; others keep the correlation ID of the
+ * thread submitting them.
+ */
+public final class EdtExecutor implements Executor {
+
+    public static final EdtExecutor INSTANCE = new EdtExecutor();
+
+    private EdtExecutor() {
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (EventQueue.isDispatchThread()) {
+            task.run();
+        } else {
+            EventQueue.invokeLater(Correlation.propagate(task));
+        }
+    }
+
+    /**
+     * Returns an action for {@code whenComplete} that gets the failure of the stage unwrapped from
+     * the {@link CompletionException} added by dependent stages.
+     */
+    public static <T> BiConsumer<T, Throwable> unwrapping(BiConsumer<? super T, ? super Throwable> action) {
+        return (result, failure) -> action.accept(result, failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure);
+    }
+}
@@ -0,0 +1,174 @@
+package ui;
+
+import java.awt.EventQueue;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Detects stalls of the event dispatch thread. Every sample interval the watchdog posts a heartbeat
+ * task to the event queue; if the previous one has not run for longer than the threshold, the
+ * thread is stalled and the watchdog samples its stack until the heartbeat runs. At the end of a
+ * stall the stack seen most often is logged. Across stalls the samples are counted by their top
+ * application frame, the first one outside the JDK and libraries, which is usually the code to fix.
+ * <p>
+ * The heartbeats keep AWT from shutting down on its own, so the application has to exit explicitly,
+ * as the main window does when it is closed, or close the watchdog.
+ */
+public final class EdtWatchdog implements EdtWatchdogMXBean, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(EdtWatchdog.class.getName());
+
+    private static final String[] LIBRARY_PACKAGES = {
+            "java.", "javax.", "jdk.", "sun.", "com.sun.", "org.apache.derby.", "com.github.lgooddatepicker."};
+    private static final int LOGGED_FRAMES = 15;
+    private static final int HOT_FRAMES = 20;
+
+    private final long thresholdNanos;
+    private final ScheduledExecutorService sampler;
+    private volatile Thread dispatchThread;
+    /**
+     * When the pending heartbeat was posted, or 0 when it has run.
+     */
+    private final AtomicLong heartbeatPosted = new AtomicLong();
+    private volatile long heartbeatRan;
+
+    // used by the sampler thread only
+    private long stallStart;
+    private final Map<String, Integer> stallStacks = new HashMap<>();
+
+    private final LongAdder stallCount = new LongAdder();
+    private final LongAdder totalStallNanos = new LongAdder();
+    private final AtomicLong longestStallNanos = new AtomicLong();
+    private final Map<String, LongAdder> hotFrames = new ConcurrentHashMap<>();
+
+    /**
+     * @param threshold      shortest stall that is reported
+     * @param sampleInterval time between heartbeats, and between stack samples during a stall
+     */
+    public EdtWatchdog(Duration threshold, Duration sampleInterval) {
+        this.thresholdNanos = threshold.toNanos();
+        this.sampler = Executors.newSingleThreadScheduledExecutor(task -> {
+            var thread = new Thread(task, "edt-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, sampleInterval.toMillis());
+        sampler.scheduleWithFixedDelay(this::check, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long getThresholdMillis() {
+        return Duration.ofNanos(thresholdNanos).toMillis();
+    }
+
+    @Override
+    public long getStallCount() {
+        return stallCount.sum();
+    }
+
+    @Override
+    public long getTotalStallMillis() {
+        return Duration.ofNanos(totalStallNanos.sum()).toMillis();
+    }
+
+    @Override
+    public long getLongestStallMillis() {
+        return Duration.ofNanos(longestStallNanos.get()).toMillis();
+    }
+
+    @Override
+    public Map<String, Long> getHotFrames() {
+        return hotFrames.entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), e.getValue().sum()))
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(HOT_FRAMES)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    @Override
+    public void reset() {
+        stallCount.reset();
+        totalStallNanos.reset();
+        longestStallNanos.set(0);
+        hotFrames.clear();
+    }
+
+    @Override
+    public void close() {
+        sampler.shutdownNow();
+    }
+
+    private void check() {
+        long now = System.nanoTime();
+        long posted = heartbeatPosted.get();
+        if (posted == 0) {
+            if (stallStart != 0) {
+                stallEnded();
+            }
+            heartbeatPosted.set(now);
+            EventQueue.invokeLater(() -> {
+                dispatchThread = Thread.currentThread();
+                heartbeatRan = System.nanoTime();
+                heartbeatPosted.set(0);
+            });
+        } else if (now - posted >= thresholdNanos) {
+            if (stallStart == 0) {
+                stallStart = posted;
+            }
+            sample();
+        }
+    }
+
+    private void sample() {
+        var thread = dispatchThread;
+        if (thread == null) {
+            return;
+        }
+        var stack = thread.getStackTrace();
+        if (stack.length == 0) {
+            return;
+        }
+        var frames = Arrays.stream(stack).limit(LOGGED_FRAMES)
+                .map(frame -> "\tat " + frame)
+                .collect(Collectors.joining("\n"));
+        stallStacks.merge(frames, 1, Integer::sum);
+        hotFrames.computeIfAbsent(applicationFrame(stack).toString(), f -> new LongAdder()).increment();
+    }
+
+    /**
+     * Accounts for the stall that ended when the last heartbeat ran.
+     */
+    private void stallEnded() {
+        long duration = heartbeatRan - stallStart;
+        stallStart = 0;
+        stallCount.increment();
+        totalStallNanos.add(duration);
+        longestStallNanos.accumulateAndGet(duration, Math::max);
+        var stack = stallStacks.entrySet().stream().max(Comparator.comparingInt(Map.Entry::getValue));
+        int samples = stallStacks.values().stream().mapToInt(Integer::intValue).sum();
+        stallStacks.clear();
+        LOGGER.warning("Event dispatch thread stalled for about " + Duration.ofNanos(duration).toMillis() + " ms"
+                + stack.map(s -> "; " + s.getValue() + " of " + samples + " samples in\n" + s.getKey()).orElse(""));
+    }
+
+    private static StackTraceElement applicationFrame(StackTraceElement[] stack) {
+        for (var frame : stack) {
+            if (Arrays.stream(LIBRARY_PACKAGES).noneMatch(frame.getClassName()::startsWith)) {
+                return frame;
+            }
+        }
+        return stack[0];
+    }
+}
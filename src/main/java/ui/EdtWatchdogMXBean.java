@@ -0,0 +1,25 @@
+package ui;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link EdtWatchdog}, as shown by JConsole or VisualVM.
+ */
+public interface EdtWatchdogMXBean {
+
+    long getThresholdMillis();
+
+    long getStallCount();
+
+    long getTotalStallMillis();
+
+    long getLongestStallMillis();
+
+    /**
+     * Returns the number of stack samples taken during stalls by their top application frame, most
+     * frequent first.
+     */
+    Map<String, Long> getHotFrames();
+
+    void reset();
+}
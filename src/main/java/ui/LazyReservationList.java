@@ -0,0 +1,214 @@
+package ui;
+
+import data.AsyncReservationDao;
+import model.Reservation;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * List of all reservations in ID order whose rows are loaded page by page as they are requested.
+ * <p>
+ * {@link #get(int)} returns {@code null} for rows whose page is not loaded yet and starts loading it
+ * in the background; the listener is notified on the event dispatch thread once the page arrives.
+ * Only a bounded number of pages is kept in memory. Pages are fetched with keyset pagination,
+ * which needs the ID of the last row of the previous page; these boundaries are remembered even
+ * for evicted pages, so scrolling back never scans the table from the start.
+ * <p>
+ * Reservations added through {@link #add(Reservation)} are kept after the rows of the database,
+ * which matches the ID order of newly created reservations. All methods must be called on the
+ * event dispatch thread.
+ */
+class LazyReservationList extends AbstractList<Reservation> {
+
+    static final int PAGE_SIZE = 200;
+    static final int MAX_CACHED_PAGES = 50;
+
+    interface PageListener {
+        void rowsLoaded(LazyReservationList list, int firstRow, int lastRow);
+    }
+
+    private final AsyncReservationDao reservationDao;
+    private final PageListener listener;
+    private final Map<Integer, List<Reservation>> pages = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * ID of the last reservation before the given page; page 0 starts after ID 0.
+     */
+    private final Map<Integer, Long> pageStarts = new HashMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+    private final List<Reservation> appended = new ArrayList<>();
+    /**
+     * IDs of the reservations removed from the list. Their deletes are queued, so pages loaded
+     * before they are written may still contain them.
+     */
+    private final Set<Long> removedIds = new HashSet<>();
+    private int databaseCount;
+    private boolean discarded;
+
+    /**
+     * @param firstPage     the first page, already loaded
+     * @param databaseCount the number of reservations in the database, or the size of the first page
+     *                      until the real count is known
+     */
+    LazyReservationList(AsyncReservationDao reservationDao, List<Reservation> firstPage, int databaseCount, PageListener listener) {
+        this.reservationDao = reservationDao;
+        this.listener = listener;
+        this.databaseCount = databaseCount;
+        pageStarts.put(0, 0L);
+        storePage(0, firstPage);
+    }
+
+    void setDatabaseCount(int databaseCount) {
+        this.databaseCount = databaseCount;
+    }
+
+    /**
+     * Stops delivering pages that are still being loaded, used when the list is replaced.
+     */
+    void discard() {
+        discarded = true;
+    }
+
+    @Override
+    public int size() {
+        return databaseCount + appended.size();
+    }
+
+    @Override
+    public Reservation get(int index) {
+        if (index >= databaseCount) {
+            return appended.get(index - databaseCount);
+        }
+        int page = index / PAGE_SIZE;
+        var rows = pages.get(page);
+        if (rows == null) {
+            requestPage(page);
+            return null;
+        }
+        int offset = index % PAGE_SIZE;
+        return offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    @Override
+    public Reservation set(int index, Reservation reservation) {
+        if (index >= databaseCount) {
+            return appended.set(index - databaseCount, reservation);
+        }
+        var rows = pages.get(index / PAGE_SIZE);
+        int offset = index % PAGE_SIZE;
+        if (rows == null || offset >= rows.size()) {
+            return null;
+        }
+        return rows.set(offset, reservation);
+    }
+
+    @Override
+    public boolean add(Reservation reservation) {
+        return appended.add(reservation);
+    }
+
+    @Override
+    public Reservation remove(int index) {
+        if (index >= databaseCount) {
+            return appended.remove(index - databaseCount);
+        }
+        var removed = get(index);
+        if (removed != null && removed.getId() != null) {
+            removedIds.add(removed.getId());
+        }
+        databaseCount--;
+        // rows after the removed one shift by one, so pages from here on must be reloaded
+        int page = index / PAGE_SIZE;
+        pages.keySet().removeIf(p -> p >= page);
+        pageStarts.keySet().removeIf(p -> p > page);
+        return removed;
+    }
+
+    /**
+     * Searches only the rows that are in memory; rows of pages that are not loaded cannot be
+     * displayed, so they are never looked up.
+     */
+    @Override
+    public int indexOf(Object o) {
+        for (var entry : pages.entrySet()) {
+            int offset = entry.getValue().indexOf(o);
+            if (offset >= 0) {
+                return entry.getKey() * PAGE_SIZE + offset;
+            }
+        }
+        int offset = appended.indexOf(o);
+        return offset >= 0 ? databaseCount + offset : -1;
+    }
+
+    private void requestPage(int page) {
+        if (discarded || !loading.add(page)) {
+            return;
+        }
+        var knownStart = pageStarts.get(page);
+        int nearestPage = page;
+        while (knownStart == null) {
+            nearestPage--;
+            knownStart = pageStarts.get(nearestPage);
+        }
+        long nearestStart = knownStart;
+        int rowsToSkip = (page - nearestPage) * PAGE_SIZE;
+
+        // the ID before the page is found first only when the pages in between were never loaded
+        CompletableFuture<Long> start = rowsToSkip > 0
+                ? reservationDao.findIdAfter(nearestStart, rowsToSkip - 1)
+                : CompletableFuture.completedFuture(nearestStart);
+        start.thenCompose(pageStart -> pageStart == null
+                ? CompletableFuture.completedFuture(Map.entry(nearestStart, List.<Reservation>of()))
+                : reservationDao.findPage(pageStart, PAGE_SIZE + removedIds.size())
+                        .thenApply(rows -> Map.entry(pageStart, rows))
+        ).whenCompleteAsync(EdtExecutor.unwrapping((loaded, failure) -> {
+            loading.remove(page);
+            if (discarded) {
+                return;
+            }
+            if (failure != null) {
+                failure.printStackTrace();
+                return;
+            }
+            pageStarts.put(page, loaded.getKey());
+            storePage(page, loaded.getValue());
+            int first = page * PAGE_SIZE;
+            int last = Math.min(first + PAGE_SIZE, databaseCount) - 1;
+            if (last >= first) {
+                listener.rowsLoaded(LazyReservationList.this, first, last);
+            }
+        }), EdtExecutor.INSTANCE);
+    }
+
+    /**
+     * Stores the first {@value #PAGE_SIZE} of the rows that have not been removed; pages are
+     * loaded with one more row for each removed reservation to fill the gaps they leave.
+     */
+    private void storePage(int page, List<Reservation> loaded) {
+        List<Reservation> rows = new ArrayList<>(Math.min(loaded.size(), PAGE_SIZE));
+        for (var reservation : loaded) {
+            if (rows.size() == PAGE_SIZE) {
+                break;
+            }
+            if (!removedIds.contains(reservation.getId())) {
+                rows.add(reservation);
+            }
+        }
+        pages.put(page, rows);
+        if (!rows.isEmpty()) {
+            pageStarts.put(page + 1, rows.get(rows.size() - 1).getId());
+        }
+        var it = pages.keySet().iterator();
+        while (pages.size() > MAX_CACHED_PAGES) {
+            it.next();
+            it.remove();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package ui;
 
 import data.ReservationDao;
+import data.ReservationWriteQueue;
 import data.RoomDao;
 
 import javax.swing.*;
@@ -9,17 +10,20 @@ import java.awt.*;
 public class MainWindow {
 
     private final JFrame frame;
+    private final JTabbedPane tabbedPane;
     private final NewReservationTab newReservationTab;
     private final AllReservationTab allReservationTab;
     private static final I18N I18N = new I18N(MainWindow.class);
 
-    public MainWindow(RoomDao roomDao, ReservationDao reservationDao) {
-        var reservationTableModel = new ReservationTableModel(reservationDao, roomDao);
-        var roomTableModel = new RoomTableModel(roomDao);
-        this.newReservationTab = new NewReservationTab(reservationTableModel, roomTableModel);
+    public MainWindow(RoomDao roomDao, ReservationDao reservationDao, ReservationWriteQueue writeQueue,
+                      TaskExecutors executors) {
+        var reservationTableModel = new ReservationTableModel(reservationDao, writeQueue, executors);
+        var roomTableModel = new RoomTableModel(roomDao, executors);
+        var stayOptionTableModel = new StayOptionTableModel(roomDao, executors);
+        this.newReservationTab = new NewReservationTab(reservationTableModel, roomTableModel, stayOptionTableModel);
         this.allReservationTab = new AllReservationTab(reservationTableModel, newReservationTab);
         frame = createFrame();
-        var tabbedPane = createTabbedPane();
+        tabbedPane = createTabbedPane();
         tabbedPane.addChangeListener(e -> {
             if (tabbedPane.getSelectedIndex() == 0) {
                 if (newReservationTab.getToEdit() != null)
@@ -30,8 +34,37 @@ public class MainWindow {
         frame.pack();
         frame.setLocationRelativeTo(null);
         frame.getContentPane().setBackground(new Color(255, 230, 230));
-        ImageIcon img = new ImageIcon(MainWindow.class.getResource("all.png"));
-        frame.setIconImage(img.getImage());
+    }
+
+    /**
+     * Icons of the window. Scaling them takes long enough to be noticed at startup, so they are
+     * loaded by {@link #loadIcons()} off the event dispatch thread and set when ready.
+     */
+    public static final class Icons {
+        private final Image windowIcon;
+        private final Icon newReservationTab;
+        private final Icon findReservationTab;
+
+        private Icons(Image windowIcon, Icon newReservationTab, Icon findReservationTab) {
+            this.windowIcon = windowIcon;
+            this.newReservationTab = newReservationTab;
+            this.findReservationTab = findReservationTab;
+        }
+    }
+
+    /**
+     * Loads and scales the icons; may be called on any thread.
+     */
+    public static Icons loadIcons() {
+        return new Icons(new ImageIcon(MainWindow.class.getResource("all.png")).getImage(),
+                resizeIcon("add.png", 32, 29),
+                resizeIcon("find.png", 31, 27));
+    }
+
+    public void setIcons(Icons icons) {
+        frame.setIconImage(icons.windowIcon);
+        tabbedPane.setIconAt(0, icons.newReservationTab);
+        tabbedPane.setIconAt(1, icons.findReservationTab);
     }
 
     private JFrame createFrame() {
@@ -51,16 +84,14 @@ public class MainWindow {
 
         newReservationTab.createPanel();
         tabbedPane.add(I18N.getString("newReservationTab"), newReservationTab.getMainPanel());
-        tabbedPane.setIconAt(0, resizeIcon("add.png", 32, 29));
 
         allReservationTab.createPanel();
         tabbedPane.add(I18N.getString("findReservation"), allReservationTab.getMainPanel());
-        tabbedPane.setIconAt(1, resizeIcon("find.png", 31, 27));
 
         return tabbedPane;
     }
 
-    public ImageIcon resizeIcon(String path, int width, int height) {
+    private static ImageIcon resizeIcon(String path, int width, int height) {
         ImageIcon icon = new ImageIcon(MainWindow.class.getResource(path));
         Image image = icon.getImage();
         icon = new ImageIcon(image.getScaledInstance(width, height, java.awt.Image.SCALE_SMOOTH));
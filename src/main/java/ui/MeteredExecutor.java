@@ -0,0 +1,186 @@
+package ui;
+
+import data.Correlation;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executor that counts the tasks waiting in the wrapped executor and measures how long they wait
+ * before they start.
+ */
+public final class MeteredExecutor implements Executor {
+
+    private static final Logger LOGGER = Logger.getLogger(MeteredExecutor.class.getName());
+
+    private final String name;
+    private final Executor delegate;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    /**
+     * Most tasks kept while the executor is held; further ones are rejected.
+     */
+    private final int holdCapacity;
+    /**
+     * Tasks kept while the executor is held, or {@code null}.
+     */
+    private volatile List<HeldTask> held;
+
+    private static final class HeldTask {
+        private final Runnable task;
+        private final Runnable metered;
+
+        private HeldTask(Runnable task, Runnable metered) {
+            this.task = task;
+            this.metered = metered;
+        }
+    }
+
+    /**
+     * @param holdCapacity most tasks kept while held; at most the queue capacity of a bounded
+     *                     delegate, so that it can take all of them on release
+     */
+    MeteredExecutor(String name, Executor delegate, int holdCapacity) {
+        this.name = name;
+        this.delegate = delegate;
+        this.holdCapacity = holdCapacity;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Runs the task with the correlation ID of the calling thread, and records it as a Flight
+     * Recorder event when that is enabled.
+     *
+     * @throws RejectedExecutionException if the executor is full or shut down
+     */
+    @Override
+    public void execute(Runnable task) {
+        long submitted = System.nanoTime();
+        long correlationId = Correlation.current();
+        queued.incrementAndGet();
+        Runnable metered = () -> {
+            long wait = System.nanoTime() - submitted;
+            queued.decrementAndGet();
+            started.increment();
+            waitNanos.add(wait);
+            maxWaitNanos.accumulateAndGet(wait, Math::max);
+            long previous = Correlation.enter(correlationId);
+            var event = new UiTaskEvent();
+            event.begin();
+            try {
+                task.run();
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.executor = name;
+                    event.task = task.getClass().getName();
+                    event.queueWait = wait;
+                    event.correlationId = correlationId;
+                    event.commit();
+                }
+                Correlation.restore(previous);
+            }
+        };
+        if (held != null) {
+            synchronized (this) {
+                if (held != null) {
+                    if (held.size() >= holdCapacity) {
+                        queued.decrementAndGet();
+                        throw new RejectedExecutionException(name + " holds " + holdCapacity + " tasks already");
+                    }
+                    held.add(new HeldTask(task, metered));
+                    return;
+                }
+            }
+        }
+        try {
+            delegate.execute(metered);
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Keeps the tasks submitted from now on until {@link #release()}.
+     */
+    synchronized void hold() {
+        if (held == null) {
+            held = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Passes the held tasks to the wrapped executor in the order they were submitted. Tasks
+     * submitted meanwhile are still held and passed on after them. A held task the wrapped
+     * executor rejects is cancelled if it is a {@link Future}, such as a
+     * {@link javax.swing.SwingWorker}, so that it does not stay pending.
+     */
+    void release() {
+        while (true) {
+            List<HeldTask> tasks;
+            synchronized (this) {
+                tasks = held;
+                if (tasks == null) {
+                    return;
+                }
+                if (tasks.isEmpty()) {
+                    held = null;
+                    return;
+                }
+                held = new ArrayList<>();
+            }
+            for (var task : tasks) {
+                try {
+                    delegate.execute(task.metered);
+                } catch (RejectedExecutionException e) {
+                    queued.decrementAndGet();
+                    LOGGER.log(Level.WARNING, "Rejected held task of " + name, e);
+                    if (task.task instanceof Future) {
+                        ((Future<?>) task.task).cancel(false);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tasks submitted but not started yet.
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public long getStartedCount() {
+        return started.sum();
+    }
+
+    public Duration getAverageWait() {
+        long count = started.sum();
+        return Duration.ofNanos(count == 0 ? 0 : waitNanos.sum() / count);
+    }
+
+    public Duration getMaxWait() {
+        return Duration.ofNanos(maxWaitNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return name + ": queued " + getQueueDepth() + ", started " + getStartedCount()
+                + ", average wait " + getAverageWait().toMillis() + " ms, max wait " + getMaxWait().toMillis() + " ms";
+    }
+}
@@ -2,6 +2,8 @@ package ui;
 
 import com.github.lgooddatepicker.components.DatePicker;
 import com.github.lgooddatepicker.components.DatePickerSettings;
+import data.StaySearch;
+import model.BedType;
 import model.Guest;
 import model.Reservation;
 import model.Room;
@@ -10,13 +12,15 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.ItemEvent;
 import java.time.LocalDateTime;
-import java.util.concurrent.ExecutionException;
 
 public class NewReservationTab implements ReservationEditor {
 
     private JPanel mainPanel, leftPanel, rightPanel, controlPanel, detailsPanel, tablePanel;
-    private JComboBox<Integer> numOfGuestsComboBox;
+    private JComboBox<Integer> numOfGuestsComboBox, nightsComboBox;
+    private JComboBox<BedType> bedTypeComboBox;
+    private JCheckBox flexibleDatesCheckBox;
     private JTable roomsTable;
     private JTextField nameTextField, phoneTextField, emailTextField, addressTextField;
     private JTextArea detailsTextArea;
@@ -24,6 +28,7 @@ public class NewReservationTab implements ReservationEditor {
     private Component previousTabComponent;
     private final ReservationTableModel reservationTableModel;
     private final RoomTableModel roomTableModel;
+    private final StayOptionTableModel stayOptionTableModel;
     private final JLabel warningLabel = new JLabel("");
     private static final I18N I18N = new I18N(NewReservationTab.class);
 
@@ -31,9 +36,11 @@ public class NewReservationTab implements ReservationEditor {
 
     private volatile Reservation toEdit;
 
-    public NewReservationTab(ReservationTableModel reservationTableModel, RoomTableModel roomTableModel) {
+    public NewReservationTab(ReservationTableModel reservationTableModel, RoomTableModel roomTableModel,
+                             StayOptionTableModel stayOptionTableModel) {
         this.reservationTableModel = reservationTableModel;
         this.roomTableModel = roomTableModel;
+        this.stayOptionTableModel = stayOptionTableModel;
     }
 
     public void createPanel() {
@@ -98,9 +105,74 @@ public class NewReservationTab implements ReservationEditor {
 
         addButton(controlPanel,"search", this::showAvailableRooms, 1, new Insets(0, 10, 10, 10));
 
+        fillFlexibleDatesControls();
+
+        // a stay cannot include a night on which every room is taken; an edited reservation
+        // occupies a room itself, and flexible dates give a window in which the stay is searched,
+        // so their dates are not restricted
+        checkInDatePicker.getSettings().setVetoPolicy(
+                date -> areDatesUnrestricted() || !roomTableModel.isFullyBooked(date));
+        checkOutDatePicker.getSettings().setVetoPolicy(
+                date -> areDatesUnrestricted() || !roomTableModel.isFullyBooked(date.minusDays(1)));
+
         leftPanel.add(controlPanel, constrains(0, new Insets(0, 0, 0, 0), 1, 1));
     }
 
+    private boolean areDatesUnrestricted() {
+        return toEdit != null || flexibleDatesCheckBox.isSelected();
+    }
+
+    /**
+     * In the flexible dates mode the date pickers give the window of the stay, which is as many
+     * nights as selected, and the table shows the best stays found instead of the available rooms.
+     */
+    private void fillFlexibleDatesControls() {
+        JLabel flexibleDates = new JLabel(I18N.getString("flexibleDates"));
+        CustomizationTools.customizeLabelBold(flexibleDates);
+        JLabel nights = new JLabel(I18N.getString("nights"));
+        CustomizationTools.customizeLabelBold(nights);
+        JLabel bedType = new JLabel(I18N.getString("bedType"));
+        CustomizationTools.customizeLabelBold(bedType);
+
+        controlPanel.add(flexibleDates, constrains(2, new Insets(0, 10, 5, 10), 1, 1));
+        controlPanel.add(nights, constrains(2, new Insets(0, 10, 5, 10), 1, 1));
+        controlPanel.add(bedType, constrains(2, new Insets(0, 10, 5, 10), 1, 1));
+
+        flexibleDatesCheckBox = new JCheckBox();
+        flexibleDatesCheckBox.setOpaque(false);
+        flexibleDatesCheckBox.addItemListener(e -> {
+            boolean flexible = e.getStateChange() == ItemEvent.SELECTED;
+            roomTableModel.hideAll();
+            stayOptionTableModel.hideAll();
+            roomsTable.setModel(flexible ? stayOptionTableModel : roomTableModel);
+            nightsComboBox.setEnabled(flexible);
+            bedTypeComboBox.setEnabled(flexible);
+        });
+        controlPanel.add(flexibleDatesCheckBox, constrains(3, new Insets(0, 10, 10, 10), 1, 1));
+
+        nightsComboBox = new JComboBox<>(new DefaultComboBoxModel<>(new Integer[]{
+                1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 21, 28}));
+        nightsComboBox.setEnabled(false);
+        controlPanel.add(nightsComboBox, constrains(3, new Insets(0, 10, 10, 10), 1, 1));
+
+        var bedTypes = new DefaultComboBoxModel<BedType>();
+        bedTypes.addElement(null);
+        for (var type : BedType.values()) {
+            bedTypes.addElement(type);
+        }
+        bedTypeComboBox = new JComboBox<>(bedTypes);
+        bedTypeComboBox.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected,
+                                                          boolean cellHasFocus) {
+                return super.getListCellRendererComponent(list, value == null ? I18N.getString("anyBedType") : value,
+                        index, isSelected, cellHasFocus);
+            }
+        });
+        bedTypeComboBox.setEnabled(false);
+        controlPanel.add(bedTypeComboBox, constrains(3, new Insets(0, 10, 10, 10), 1, 1));
+    }
+
     public void fillTablePanel() {
         roomsTable = createTable();
         tablePanel.add(new JScrollPane(roomsTable), BorderLayout.CENTER);
@@ -144,7 +216,7 @@ public class NewReservationTab implements ReservationEditor {
         JButton button = new JButton(I18N.getString(key));
         CustomizationTools.customizeButton(button);
         panel.add(button, constrains(grid, insets, 0, 1));
-        button.addActionListener(listener);
+        button.addActionListener(UserActionEvent.traced("newReservation", key, listener));
         return button;
     }
 
@@ -212,6 +284,7 @@ public class NewReservationTab implements ReservationEditor {
         checkOutDatePicker.setDate(null);
         roomsTable.clearSelection();
         roomTableModel.hideAll();
+        stayOptionTableModel.hideAll();
     }
 
     public void editReservation() {
@@ -222,6 +295,7 @@ public class NewReservationTab implements ReservationEditor {
             nameTextField.setText(toEdit.getGuest().getName());
             addressTextField.setText(toEdit.getGuest().getAddress());
             numOfGuestsComboBox.setSelectedIndex(toEdit.getNumGuests());
+            flexibleDatesCheckBox.setSelected(false);
             checkInDatePicker.setDate(toEdit.getExpectedCheckInDate());
             checkOutDatePicker.setDate(toEdit.getExpectedCheckOutDate());
             int roomNumber = toEdit.getRoom().getNumber();
@@ -265,51 +339,41 @@ public class NewReservationTab implements ReservationEditor {
         var checkOutDate = checkOutDatePicker.getDate();
         var guest = new Guest(nameTextField.getText(), emailTextField.getText(), addressTextField.getText(), detailsTextArea.getText(), phoneTextField.getText());
         var numOfGuests = (int) numOfGuestsComboBox.getModel().getSelectedItem();
-        var roomNumber = (int) roomsTable.getValueAt(roomsTable.getSelectedRow(), 0);
-
-        SwingWorker<Void, Void> worker = new SwingWorker<>() {
-            @Override
-            protected Void doInBackground() {
-
-                Room room = roomTableModel.getSelectedRoom(roomNumber);
-
-                if (toEdit == null) {
-                    newReservation = new Reservation(checkInDate, checkOutDate, numOfGuests, guest);
-                } else {
-                    newReservation = toEdit;
-                    newReservation.setExpectedCheckInDate(checkInDate);
-                    newReservation.setExpectedCheckOutDate(checkOutDate);
-                    newReservation.setNumGuests(numOfGuests);
-                    newReservation.setGuest(guest);
-                }
-                newReservation.setRoom(room);
+        int selectedRow = roomsTable.convertRowIndexToModel(roomsTable.getSelectedRow());
+        Room room;
+        if (flexibleDatesCheckBox.isSelected()) {
+            var option = stayOptionTableModel.getEntity(selectedRow);
+            room = option.getRoom();
+            checkInDate = option.getCheckIn();
+            checkOutDate = option.getCheckOut();
+        } else {
+            room = roomTableModel.getEntity(selectedRow);
+        }
 
-                if (checkIn) {
-                    newReservation.setCheckInDate(LocalDateTime.now().toLocalDate());
-                }
-                return null;
-            }
+        if (toEdit == null) {
+            newReservation = new Reservation(checkInDate, checkOutDate, numOfGuests, guest);
+        } else {
+            newReservation = toEdit;
+            newReservation.setExpectedCheckInDate(checkInDate);
+            newReservation.setExpectedCheckOutDate(checkOutDate);
+            newReservation.setNumGuests(numOfGuests);
+            newReservation.setGuest(guest);
+        }
+        newReservation.setRoom(room);
 
-            @Override
-            protected void done() {
-                try {
-                    get();
-                } catch (InterruptedException | ExecutionException e) {
-                    JOptionPane.showMessageDialog(null, I18N.getString("creatingFailed"));
-                    e.printStackTrace();
-                }
-                if (toEdit != null) {
-                    reservationTableModel.updateEntity(newReservation);
-                    toEdit = null;
-                    switchToPreviousTab();
-                }else{
-                    reservationTableModel.addRow(newReservation);
-                }
-                roomTableModel.hideAll();
-                clearAll(null);
-            }
-        };
-        worker.execute();
+        if (checkIn) {
+            newReservation.setCheckInDate(LocalDateTime.now().toLocalDate());
+        }
+        // both store the reservation in the background and report a failure themselves
+        if (toEdit != null) {
+            reservationTableModel.updateEntity(newReservation);
+            toEdit = null;
+            switchToPreviousTab();
+        } else {
+            reservationTableModel.addRow(newReservation);
+        }
+        roomTableModel.hideAll();
+        clearAll(null);
     }
 
     public void showAvailableRooms(ActionEvent actionEvent) {
@@ -320,8 +384,19 @@ public class NewReservationTab implements ReservationEditor {
             showDialog("selectValDate");
         } else if (numOfGuestsComboBox.getSelectedItem() != null && (Integer) numOfGuestsComboBox.getSelectedItem() == 0) {
             showDialog("zeroGuests");
+        } else if (flexibleDatesCheckBox.isSelected()) {
+            int nights = (Integer) nightsComboBox.getSelectedItem();
+            var latestCheckIn = checkOutDate.minusDays(nights);
+            if (latestCheckIn.isBefore(checkInDate)) {
+                showDialog("selectValDate");
+                return;
+            }
+            stayOptionTableModel.showStayOptions(StaySearch.of(nights, checkInDate, latestCheckIn)
+                    .minCapacity((Integer) numOfGuestsComboBox.getSelectedItem())
+                    .bedType((BedType) bedTypeComboBox.getSelectedItem()));
         } else {
-            roomTableModel.showAvailableRooms(checkInDate, checkOutDate, (toEdit != null) ? toEdit.getRoom().getNumber() : null);
+            roomTableModel.showAvailableRooms(checkInDate, checkOutDate, (Integer) numOfGuestsComboBox.getSelectedItem(),
+                    (toEdit != null) ? toEdit.getRoom().getNumber() : null);
         }
     }
 
@@ -17,8 +17,8 @@ public class ReservationTableCellRenderer extends DefaultTableCellRenderer {
         ((JLabel) cellComponent).setHorizontalAlignment(JLabel.LEFT);
         ((JLabel) cellComponent).setBorder(new EmptyBorder(1, 1, 1, 1));
         Reservation reservation = ((ReservationTableModel) table.getModel()).getEntity(table.convertRowIndexToModel(row));
-        boolean checkedIn = reservation.getCheckInDate() != null;
-        boolean checkedOut = reservation.getCheckOutDate() != null;
+        boolean checkedIn = reservation != null && reservation.getCheckInDate() != null;
+        boolean checkedOut = reservation != null && reservation.getCheckOutDate() != null;
         if (isSelected) {
             cellComponent.setBackground(table.getSelectionBackground());
         } else {
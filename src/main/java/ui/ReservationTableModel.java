@@ -1,21 +1,38 @@
 package ui;
 
+import data.AsyncReservationDao;
+import data.CancellationToken;
 import data.ReservationDao;
-import data.RoomDao;
+import data.ReservationWriteQueue;
 import model.Reservation;
 import model.Room;
 
 import javax.swing.*;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 public class ReservationTableModel extends AbstractEntityTableModel<Reservation> {
 
     private List<Reservation> reservations = new ArrayList<>();
     private final ReservationDao reservationDao;
-    private final RoomDao roomDao;
+    private final AsyncReservationDao asyncReservationDao;
+    private final ReservationWriteQueue writeQueue;
+    private final TaskExecutors executors;
+    /**
+     * Incremented by every query that replaces the shown reservations. A query applies its result
+     * only if no newer one has been started meanwhile, so a slow old query cannot overwrite the
+     * result of a newer one.
+     */
+    private int queryGeneration;
+    private Future<?> runningQuery;
+    private CancellationToken runningQueryToken;
+    private static final Duration FILTER_TIMEOUT = Duration.ofSeconds(30);
     private static final I18N I18N = new I18N(ReservationTableModel.class);
 
     private static final List<Column<?, Reservation>> COLUMNS = List.of(
@@ -32,28 +49,18 @@ public class ReservationTableModel extends AbstractEntityTableModel<Reservation>
             Column.readOnly(I18N.getString("details"), String.class, Reservation::getGuestDetails)
     );
 
-    public ReservationTableModel(ReservationDao reservationDao, RoomDao roomDao) {
+    /**
+     * @param writeQueue stores the added, changed and deleted reservations; its failure callbacks
+     *                   must run on the event dispatch thread
+     * @param executors  run the queries
+     */
+    public ReservationTableModel(ReservationDao reservationDao, ReservationWriteQueue writeQueue, TaskExecutors executors) {
         super(COLUMNS);
         this.reservationDao = reservationDao;
-        this.roomDao = roomDao;
-        SwingWorker<List<Reservation>, Void> worker = new SwingWorker<>() {
-            @Override
-            protected List<Reservation> doInBackground() {
-                return reservationDao.findAll();
-            }
-
-            @Override
-            protected void done() {
-                try {
-                    reservations.addAll(get());
-                } catch (InterruptedException | ExecutionException e) {
-                    JOptionPane.showMessageDialog(null, I18N.getString("loadingFailed"));
-                    e.printStackTrace();
-                }
-                fireTableDataChanged();
-            }
-        };
-        worker.execute();
+        this.asyncReservationDao = new AsyncReservationDao(reservationDao, executors.reads(), executors.writes());
+        this.writeQueue = writeQueue;
+        this.executors = executors;
+        loadAll("loadingFailed");
     }
 
     @Override
@@ -63,28 +70,15 @@ public class ReservationTableModel extends AbstractEntityTableModel<Reservation>
 
     @Override
     protected void updateEntity(Reservation entity) {
-        SwingWorker<Void, Void> worker = new SwingWorker<>() {
-            @Override
-            protected Void doInBackground() {
-                reservationDao.update(entity);
-                roomDao.update(entity.getRoom());
-                return null;
-            }
-
-            @Override
-            protected void done() {
-                try {
-                    get();
-                } catch (InterruptedException | ExecutionException e) {
-                    JOptionPane.showMessageDialog(null, I18N.getString("updatingFailed"));
-                    e.printStackTrace();
-                }
-                int rowIndex = reservations.indexOf(entity);
-                reservations.set(rowIndex, entity);
-                fireTableRowsUpdated(rowIndex, rowIndex);
-            }
-        };
-        worker.execute();
+        writeQueue.update(entity, e -> {
+            JOptionPane.showMessageDialog(null, I18N.getString("updatingFailed"));
+            e.printStackTrace();
+        });
+        int rowIndex = reservations.indexOf(entity);
+        if (rowIndex >= 0) {
+            reservations.set(rowIndex, entity);
+            fireTableRowsUpdated(rowIndex, rowIndex);
+        }
     }
 
     @Override
@@ -97,92 +91,169 @@ public class ReservationTableModel extends AbstractEntityTableModel<Reservation>
     }
 
     public void deleteRow(int rowIndex) {
-        SwingWorker<Void, Void> worker = new SwingWorker<>() {
-            @Override
-            protected Void doInBackground() {
-                reservationDao.delete(reservations.get(rowIndex));
-                return null;
-            }
+        var reservation = reservations.get(rowIndex);
+        writeQueue.delete(reservation, e -> {
+            JOptionPane.showMessageDialog(null, I18N.getString("deletingFailed"));
+            e.printStackTrace();
+        });
+        reservations.remove(rowIndex);
+        fireTableRowsDeleted(rowIndex, rowIndex);
+    }
 
-            @Override
-            protected void done() {
-                try {
-                    get();
-                } catch (InterruptedException | ExecutionException e) {
-                    JOptionPane.showMessageDialog(null, I18N.getString("deletingFailed"));
-                    e.printStackTrace();
-                }
+    /**
+     * Shows the reservation at once; it is removed again if it cannot be stored.
+     */
+    public void addRow(Reservation reservation) {
+        writeQueue.create(reservation, e -> {
+            JOptionPane.showMessageDialog(null, I18N.getString("additionFailed"));
+            e.printStackTrace();
+            int rowIndex = reservations.indexOf(reservation);
+            if (rowIndex >= 0) {
                 reservations.remove(rowIndex);
                 fireTableRowsDeleted(rowIndex, rowIndex);
             }
-        };
-        worker.execute();
+        });
+        int newRowIndex = reservations.size();
+        reservations.add(reservation);
+        fireTableRowsInserted(newRowIndex, newRowIndex);
     }
 
-    public void addRow(Reservation reservation) {
-        int newRowIndex = reservations.size();
-        SwingWorker<Void, Void> worker = new SwingWorker<>() {
+    /**
+     * Shows the matching reservations. The rows are added to the table in batches while they are
+     * read, so the first ones appear without waiting for the whole result.
+     */
+    public void filterReservations(String name, String number) {
+        int generation = nextQueryGeneration();
+        var token = new CancellationToken();
+        runningQueryToken = token;
+        SwingWorker<Void, Reservation> worker = new SwingWorker<>() {
+            private List<Reservation> shown;
+
             @Override
             protected Void doInBackground() {
-                reservationDao.create(reservation);
+                reservationDao.filterReservations(name, number, token, FILTER_TIMEOUT, this::publish);
                 return null;
             }
 
             @Override
-            protected void done() {
-                try {
-                    get();
-                } catch (InterruptedException | ExecutionException e) {
-                    JOptionPane.showMessageDialog(null, I18N.getString("additionFailed"));
-                    e.printStackTrace();
+            protected void process(List<Reservation> rows) {
+                if (isCancelled() || generation != queryGeneration) {
+                    return;
                 }
-                reservations.add(reservation);
-                fireTableRowsInserted(newRowIndex, newRowIndex);
-            }
-        };
-        worker.execute();
-    }
-
-    public void filterReservations(String name, String number) {
-        SwingWorker<List<Reservation>, Void> worker = new SwingWorker<>() {
-            @Override
-            protected List<Reservation> doInBackground() {
-                return reservationDao.filterReservations(name, number);
+                showRows(rows);
             }
 
             @Override
             protected void done() {
+                if (isCancelled() || generation != queryGeneration) {
+                    return;
+                }
                 try {
-                    reservations = get();
+                    get();
+                    showRows(List.of());
                 } catch (InterruptedException | ExecutionException e) {
                     JOptionPane.showMessageDialog(null, I18N.getString("sortingFailed"));
                     e.printStackTrace();
                 }
-                fireTableDataChanged();
+            }
+
+            /**
+             * Replaces the shown reservations by the first batch and appends the later ones.
+             */
+            private void showRows(List<Reservation> rows) {
+                if (shown == null) {
+                    shown = new ArrayList<>(rows);
+                    replaceReservations(shown);
+                } else if (!rows.isEmpty()) {
+                    int firstRow = shown.size();
+                    shown.addAll(rows);
+                    fireTableRowsInserted(firstRow, shown.size() - 1);
+                }
             }
         };
-        worker.execute();
+        startQuery(worker, "sortingFailed");
     }
 
     public void showAll() {
-        SwingWorker<List<Reservation>, Void> worker = new SwingWorker<>() {
-            @Override
-            protected List<Reservation> doInBackground() {
-                return reservationDao.findAll();
-            }
+        loadAll("showAllFailed");
+    }
 
-            @Override
-            protected void done() {
-                try {
-                    reservations = get();
-                } catch (InterruptedException | ExecutionException e) {
-                    JOptionPane.showMessageDialog(null, I18N.getString("showAllFailed"));
-                    e.printStackTrace();
-                }
+    /**
+     * Shows all reservations as a {@link LazyReservationList}. The first page and the total count
+     * are loaded in parallel; the page is shown as soon as it arrives, the count once both have,
+     * and the remaining pages are loaded while the table scrolls.
+     */
+    private void loadAll(String failureKey) {
+        int generation = nextQueryGeneration();
+        var firstPage = asyncReservationDao.findPage(0, LazyReservationList.PAGE_SIZE);
+        var count = asyncReservationDao.count();
+        var shown = firstPage.thenApplyAsync(page -> {
+            if (generation != queryGeneration) {
+                return null;
+            }
+            var list = new LazyReservationList(asyncReservationDao, page, page.size(), this::rowsLoaded);
+            replaceReservations(list);
+            return list;
+        }, EdtExecutor.INSTANCE);
+        var query = shown.thenAcceptBothAsync(count, (list, databaseCount) -> {
+            if (list != null && reservations == list) {
+                list.setDatabaseCount(databaseCount);
                 fireTableDataChanged();
             }
-        };
-        worker.execute();
+        }, EdtExecutor.INSTANCE);
+        query.whenCompleteAsync(EdtExecutor.unwrapping((result, failure) -> {
+            if (failure != null && !(failure instanceof CancellationException) && generation == queryGeneration) {
+                JOptionPane.showMessageDialog(null, I18N.getString(failureKey));
+                failure.printStackTrace();
+            }
+        }), EdtExecutor.INSTANCE);
+        runningQuery = query;
+    }
+
+    /**
+     * Starts a new query generation and cancels the query of the previous one. A filter query stops
+     * at its next row through its token and gives back its connection; other cancelled queries run
+     * their database calls to the end, but their result is dropped.
+     */
+    private int nextQueryGeneration() {
+        if (runningQuery != null) {
+            runningQuery.cancel(false);
+            runningQuery = null;
+        }
+        if (runningQueryToken != null) {
+            runningQueryToken.cancel();
+            runningQueryToken = null;
+        }
+        return ++queryGeneration;
+    }
+
+    /**
+     * Runs the worker on the read executor. If the executor is full, the worker never runs, so
+     * the failure is shown here instead of by the worker.
+     */
+    private void startQuery(SwingWorker<?, ?> worker, String failureKey) {
+        runningQuery = worker;
+        try {
+            executors.reads().execute(worker);
+        } catch (RejectedExecutionException e) {
+            runningQuery = null;
+            JOptionPane.showMessageDialog(null, I18N.getString(failureKey));
+            e.printStackTrace();
+        }
+    }
+
+    private void rowsLoaded(LazyReservationList list, int firstRow, int lastRow) {
+        if (reservations == list) {
+            fireTableRowsUpdated(firstRow, lastRow);
+        }
+    }
+
+    private void replaceReservations(List<Reservation> newReservations) {
+        if (reservations instanceof LazyReservationList) {
+            ((LazyReservationList) reservations).discard();
+        }
+        reservations = newReservations;
+        fireTableDataChanged();
     }
 
 }
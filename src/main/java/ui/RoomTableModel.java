@@ -1,21 +1,31 @@
 package ui;
 
+import data.AsyncRoomDao;
+import data.CancellationToken;
 import data.RoomDao;
+import data.RoomQuery;
 import model.Room;
 import model.RoomType;
 
 import javax.swing.*;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
 
 public class RoomTableModel extends AbstractEntityTableModel<Room> {
 
     private static final I18N I18N = new I18N(RoomTableModel.class);
     private List<Room> rooms = new ArrayList<>();
     private final RoomDao roomDao;
+    private final AsyncRoomDao asyncRoomDao;
+    /**
+     * Token of the latest {@link #showAvailableRooms} query; a new query cancels the previous one.
+     */
+    private CancellationToken availableRoomsQuery;
+    private static final Duration AVAILABLE_ROOMS_TIMEOUT = Duration.ofSeconds(30);
 
     private static final List<Column<?, Room>> COLUMNS = List.of(
             Column.readOnly(I18N.getString("roomNumber"), Integer.class, Room::getNumber),
@@ -23,35 +33,25 @@ public class RoomTableModel extends AbstractEntityTableModel<Room> {
             Column.readOnly(I18N.getString("roomSize"), Integer.class, Room::getSize)
     );
 
-    public RoomTableModel(RoomDao roomDao) {
+    public RoomTableModel(RoomDao roomDao, TaskExecutors executors) {
         super(COLUMNS);
         this.roomDao = roomDao;
+        this.asyncRoomDao = new AsyncRoomDao(roomDao, executors.reads(), executors.writes());
     }
 
     @Override
-    protected Room getEntity(int rowIndex) {
+    public Room getEntity(int rowIndex) {
         return rooms.get(rowIndex);
     }
 
     @Override
     protected void updateEntity(Room entity) {
-        SwingWorker<Void, Void> worker = new SwingWorker<>() {
-            @Override
-            protected Void doInBackground() {
-                roomDao.update(entity);
-                return null;
+        asyncRoomDao.update(entity).whenCompleteAsync(EdtExecutor.unwrapping((result, failure) -> {
+            if (failure != null) {
+                JOptionPane.showMessageDialog(null, I18N.getString("updateFailed"));
+                failure.printStackTrace();
             }
-            @Override
-            protected void done(){
-                try {
-                    get();
-                } catch (InterruptedException | ExecutionException e) {
-                    JOptionPane.showMessageDialog(null, I18N.getString("updateFailed"));
-                    e.printStackTrace();
-                }
-            }
-        };
-        worker.execute();
+        }), EdtExecutor.INSTANCE);
     }
 
     @Override
@@ -59,35 +59,47 @@ public class RoomTableModel extends AbstractEntityTableModel<Room> {
         return rooms.size();
     }
 
-    public void showAvailableRooms(LocalDate in, LocalDate out, Integer additionalRoomNumberToShow) {
-        SwingWorker<List<Room>, Void> worker = new SwingWorker<>() {
-            @Override
-            protected List<Room> doInBackground() {
-                List<Room> found = roomDao.findAvailableRooms(in, out);
-                if (additionalRoomNumberToShow != null) {
-                    Room toAdd = roomDao.findByNumber(additionalRoomNumberToShow);
-                    if (!found.contains(toAdd))
-                        found.add(toAdd);
-                    found.sort(Comparator.comparingInt(Room::getNumber));
-                }
-                return found;
+    /**
+     * Shows the rooms available from {@code in} to {@code out} for {@code guests}, the smallest
+     * first. The room of an edited reservation, {@code additionalRoomNumberToShow}, is looked up at
+     * the same time and added to them if it is large enough.
+     */
+    public void showAvailableRooms(LocalDate in, LocalDate out, int guests, Integer additionalRoomNumberToShow) {
+        if (availableRoomsQuery != null) {
+            availableRoomsQuery.cancel();
+        }
+        var token = new CancellationToken();
+        availableRoomsQuery = token;
+        var query = RoomQuery.available(in, out).minCapacity(guests).orderBy(RoomQuery.Order.CAPACITY);
+        var available = asyncRoomDao.findAvailableRooms(query, token, AVAILABLE_ROOMS_TIMEOUT);
+        var additional = additionalRoomNumberToShow != null
+                ? asyncRoomDao.findByNumber(additionalRoomNumberToShow)
+                : CompletableFuture.<Room>completedFuture(null);
+        available.thenCombine(additional, (found, toAdd) -> {
+            if (toAdd != null && query.matches(toAdd) && !found.contains(toAdd)) {
+                int index = Collections.binarySearch(found, toAdd, query.getOrder().comparator());
+                found.add(index < 0 ? -index - 1 : index, toAdd);
             }
-
-            @Override
-            protected void done() {
-                try {
-                    rooms = get();
-                    if(rooms.size() == 0){
-                        JOptionPane.showMessageDialog(null, I18N.getString("showAvailableRoomsFailed"));
-                    }
-                } catch (InterruptedException | ExecutionException e) {
-                    JOptionPane.showMessageDialog(null, I18N.getString("noRoomsAvailable"));
-                    e.printStackTrace();
+            return found;
+        }).whenCompleteAsync(EdtExecutor.unwrapping((found, failure) -> {
+            if (token.isCancelled()) {
+                return;
+            }
+            if (failure == null) {
+                rooms = found;
+                if(rooms.size() == 0){
+                    JOptionPane.showMessageDialog(null, I18N.getString("showAvailableRoomsFailed"));
                 }
-                fireTableDataChanged();
+            } else {
+                JOptionPane.showMessageDialog(null, I18N.getString("noRoomsAvailable"));
+                failure.printStackTrace();
             }
-        };
-        worker.execute();
+            fireTableDataChanged();
+        }), EdtExecutor.INSTANCE);
+    }
+
+    public boolean isFullyBooked(LocalDate night) {
+        return roomDao.isFullyBooked(night);
     }
 
     public void hideAll() {
@@ -95,21 +107,4 @@ public class RoomTableModel extends AbstractEntityTableModel<Room> {
         fireTableDataChanged();
     }
 
-    public Room getSelectedRoom(int number){
-        SwingWorker<Room, Void> worker = new SwingWorker<>() {
-            @Override
-            protected Room doInBackground() {
-                return roomDao.findByNumber(number);
-            }
-        };
-        worker.execute();
-        try{
-            return worker.get();
-        }catch(InterruptedException | ExecutionException e){
-            JOptionPane.showMessageDialog(null, I18N.getString("getSelectedRoomFailed"));
-            e.printStackTrace();
-        }
-        return null;
-    }
-
 }
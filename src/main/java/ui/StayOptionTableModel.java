@@ -0,0 +1,75 @@
+package ui;
+
+import data.AsyncRoomDao;
+import data.RoomDao;
+import data.StayOption;
+import data.StaySearch;
+import model.RoomType;
+
+import javax.swing.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stays found by a flexible-dates search: for each option the room and the dates of the stay.
+ */
+public class StayOptionTableModel extends AbstractEntityTableModel<StayOption> {
+
+    private static final I18N I18N = new I18N(StayOptionTableModel.class);
+    private List<StayOption> options = new ArrayList<>();
+    private final AsyncRoomDao asyncRoomDao;
+    /**
+     * The latest search; results of earlier ones that arrive later are dropped.
+     */
+    private StaySearch latestSearch;
+
+    private static final List<Column<?, StayOption>> COLUMNS = List.of(
+            Column.readOnly(I18N.getString("checkIn"), LocalDate.class, StayOption::getCheckIn),
+            Column.readOnly(I18N.getString("checkOut"), LocalDate.class, StayOption::getCheckOut),
+            Column.readOnly(I18N.getString("roomNumber"), Integer.class, option -> option.getRoom().getNumber()),
+            Column.readOnly(I18N.getString("roomType"), RoomType.class, option -> option.getRoom().getType()),
+            Column.readOnly(I18N.getString("roomSize"), Integer.class, option -> option.getRoom().getSize())
+    );
+
+    public StayOptionTableModel(RoomDao roomDao, TaskExecutors executors) {
+        super(COLUMNS);
+        this.asyncRoomDao = new AsyncRoomDao(roomDao, executors.reads(), executors.writes());
+    }
+
+    @Override
+    public StayOption getEntity(int rowIndex) {
+        return options.get(rowIndex);
+    }
+
+    @Override
+    public int getRowCount() {
+        return options.size();
+    }
+
+    public void showStayOptions(StaySearch search) {
+        latestSearch = search;
+        asyncRoomDao.findStayOptions(search).whenCompleteAsync(EdtExecutor.unwrapping((found, failure) -> {
+            if (search != latestSearch) {
+                return;
+            }
+            if (failure == null) {
+                options = found;
+                if (options.isEmpty()) {
+                    JOptionPane.showMessageDialog(null, I18N.getString("noStaysAvailable"));
+                }
+            } else {
+                options = new ArrayList<>();
+                JOptionPane.showMessageDialog(null, I18N.getString("findStaysFailed"));
+                failure.printStackTrace();
+            }
+            fireTableDataChanged();
+        }), EdtExecutor.INSTANCE);
+    }
+
+    public void hideAll() {
+        latestSearch = null;
+        options = new ArrayList<>();
+        fireTableDataChanged();
+    }
+}
@@ -0,0 +1,141 @@
+package ui;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors running the background work of the table models and tabs, in place of the shared
+ * pool of {@link javax.swing.SwingWorker#execute()}. Reads and writes get separate executors, so
+ * that slow queries cannot hold up storing changes and the other way round. A
+ * {@link javax.swing.SwingWorker} is a {@link Runnable} and is started by passing it to one of them.
+ */
+public final class TaskExecutors implements AutoCloseable {
+
+    public enum Mode {
+        /**
+         * Bounded pools of platform threads.
+         */
+        PLATFORM,
+        /**
+         * A new virtual thread per task; needs Java 21 or newer.
+         */
+        VIRTUAL
+    }
+
+    /**
+     * Most tasks each executor keeps while held when it has virtual threads, which are not queued.
+     */
+    private static final int VIRTUAL_HOLD_CAPACITY = 1000;
+
+    private final Mode mode;
+    private final MeteredExecutor reads;
+    private final MeteredExecutor writes;
+    private final List<ExecutorService> services;
+
+    private TaskExecutors(Mode mode, ExecutorService reads, ExecutorService writes, int holdCapacity) {
+        this.mode = mode;
+        this.reads = new MeteredExecutor("reads", reads, holdCapacity);
+        this.writes = new MeteredExecutor("writes", writes, holdCapacity);
+        this.services = List.of(reads, writes);
+    }
+
+    /**
+     * @param queueCapacity number of tasks each pool queues while all its threads are busy; further
+     *                      tasks are rejected with {@link java.util.concurrent.RejectedExecutionException},
+     *                      which the async DAOs and table models turn into a failed call
+     */
+    public static TaskExecutors platform(int readThreads, int writeThreads, int queueCapacity) {
+        return new TaskExecutors(Mode.PLATFORM,
+                boundedPool("db-read", readThreads, queueCapacity),
+                boundedPool("db-write", writeThreads, queueCapacity),
+                queueCapacity);
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the runtime has no virtual threads
+     */
+    public static TaskExecutors virtual() {
+        return new TaskExecutors(Mode.VIRTUAL, virtualThreadPerTask(), virtualThreadPerTask(), VIRTUAL_HOLD_CAPACITY);
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public MeteredExecutor reads() {
+        return reads;
+    }
+
+    public MeteredExecutor writes() {
+        return writes;
+    }
+
+    /**
+     * Keeps the tasks submitted to both executors until {@code ready} completes, normally or not,
+     * e.g. until the database is set up at startup. Their queue wait includes the time held. Each
+     * executor keeps as many tasks as its pool queues; further ones are rejected.
+     */
+    public void holdUntil(CompletionStage<?> ready) {
+        reads.hold();
+        writes.hold();
+        ready.whenComplete((result, failure) -> {
+            reads.release();
+            writes.release();
+        });
+    }
+
+    /**
+     * Stops accepting tasks; the running and queued ones are still completed.
+     */
+    @Override
+    public void close() {
+        for (var service : services) {
+            service.shutdown();
+        }
+    }
+
+    private static ExecutorService boundedPool(String name, int threads, int queueCapacity) {
+        var pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), daemonThreads(name));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        var counter = new AtomicInteger();
+        return task -> {
+            var thread = new Thread(task, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * The project is compiled for Java 11, so the Java 21 factory method is looked up at run time.
+     */
+    private static ExecutorService virtualThreadPerTask() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or newer", e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create virtual thread executor", e);
+        }
+    }
+}
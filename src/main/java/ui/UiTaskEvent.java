@@ -0,0 +1,28 @@
+package ui;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("hotel.UiTask")
+@Label("UI Background Task")
+@Category({"Hotel", "UI"})
+@Description("Background task of the UI, from when it started running; the time it waited in the queue before is separate")
+class UiTaskEvent extends Event {
+
+    @Label("Executor")
+    String executor;
+
+    @Label("Task")
+    String task;
+
+    @Label("Queue Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    long queueWait;
+
+    @Label("Correlation ID")
+    long correlationId;
+}
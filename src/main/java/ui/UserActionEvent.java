@@ -0,0 +1,51 @@
+package ui;
+
+import data.Correlation;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.awt.event.ActionListener;
+
+@Name("hotel.UserAction")
+@Label("User Action")
+@Category({"Hotel", "UI"})
+@Description("Button click or search handled on the event dispatch thread; work it started in the background has the same correlation ID")
+class UserActionEvent extends Event {
+
+    @Label("Tab")
+    String tab;
+
+    @Label("Action")
+    String action;
+
+    @Label("Correlation ID")
+    long correlationId;
+
+    /**
+     * Returns a listener that runs {@code listener} under a new correlation ID and records it as a
+     * user action.
+     */
+    static ActionListener traced(String tab, String action, ActionListener listener) {
+        return e -> {
+            long id = Correlation.newId();
+            long previous = Correlation.enter(id);
+            var event = new UserActionEvent();
+            event.begin();
+            try {
+                listener.actionPerformed(e);
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.tab = tab;
+                    event.action = action;
+                    event.correlationId = id;
+                    event.commit();
+                }
+                Correlation.restore(previous);
+            }
+        };
+    }
+}
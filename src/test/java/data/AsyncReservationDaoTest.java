@@ -0,0 +1,104 @@
+package data;
+
+import model.*;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+final class AsyncReservationDaoTest {
+
+    private static EmbeddedDataSource dataSource;
+    private ExecutorService executor;
+    private RoomDao roomDao;
+    private ReservationDao reservationDao;
+    private AsyncRoomDao asyncRoomDao;
+    private AsyncReservationDao asyncReservationDao;
+
+    @BeforeAll
+    static void initTestDataSource() {
+        dataSource = new EmbeddedDataSource();
+        dataSource.setDatabaseName("memory:hotel-reservation-test");
+        dataSource.setCreateDatabase("create");
+    }
+
+    @BeforeEach
+    void createDaos() {
+        executor = Executors.newFixedThreadPool(2);
+        roomDao = new RoomDao(dataSource);
+        roomDao.initTable();
+        reservationDao = new ReservationDao(dataSource);
+        reservationDao.initTable();
+        asyncRoomDao = new AsyncRoomDao(roomDao, executor);
+        asyncReservationDao = new AsyncReservationDao(reservationDao, executor);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        executor.shutdown();
+        reservationDao.getTableManager().dropTable();
+        roomDao.getTableManager().dropTable();
+    }
+
+    @Test
+    void findRoomThenCreateReservation() {
+        roomDao.create(new Room(7, new RoomType(BedType.FULL, 20, 2)));
+        var reservation = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1,
+                new Guest("Prvni Jmeno", "alik@seznam.cz", "Brno", "", "+420905174925"));
+
+        asyncRoomDao.findByNumber(7)
+                .thenCompose(room -> {
+                    reservation.setRoom(room);
+                    return asyncReservationDao.create(reservation);
+                })
+                .join();
+
+        assertThat(reservationDao.findAll())
+                .extracting(r -> r.getRoom().getNumber())
+                .containsExactly(7);
+    }
+
+    @Test
+    void independentCallsCombine() {
+        roomDao.create(new Room(1, new RoomType(BedType.FULL, 20, 2)));
+        roomDao.create(new Room(2, new RoomType(BedType.QUEEN, 10, 1)));
+
+        var summary = asyncRoomDao.findAll()
+                .thenCombine(asyncReservationDao.count(), (rooms, count) -> rooms.size() + " rooms, " + count + " reservations")
+                .join();
+
+        assertThat(summary).isEqualTo("2 rooms, 0 reservations");
+    }
+
+    @Test
+    void failureCompletesExceptionally() {
+        var room = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        room.setId(123L);
+
+        assertThatExceptionOfType(CompletionException.class)
+                .isThrownBy(() -> asyncRoomDao.delete(room).join())
+                .withCauseInstanceOf(DataException.class);
+    }
+
+    @Test
+    void rejectionCompletesExceptionally() {
+        executor.shutdown();
+
+        assertThatExceptionOfType(CompletionException.class)
+                .isThrownBy(() -> asyncRoomDao.findAll().join())
+                .withCauseInstanceOf(RejectedExecutionException.class);
+        assertThatExceptionOfType(CompletionException.class)
+                .isThrownBy(() -> asyncReservationDao.count().join())
+                .withCauseInstanceOf(RejectedExecutionException.class);
+    }
+}
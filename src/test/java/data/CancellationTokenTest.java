@@ -0,0 +1,55 @@
+package data;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+final class CancellationTokenTest {
+
+    @Test
+    void beginRoundsTimeoutUpToSeconds() throws SQLException {
+        var statement = mock(Statement.class);
+
+        new CancellationToken().begin(statement, Duration.ofMillis(1500));
+
+        verify(statement).setQueryTimeout(2);
+    }
+
+    @Test
+    void cancelCancelsRunningStatements() throws SQLException {
+        var token = new CancellationToken();
+        var running = mock(Statement.class);
+        var finished = mock(Statement.class);
+        doThrow(new SQLFeatureNotSupportedException()).when(running).cancel();
+        token.begin(running, null);
+        token.begin(finished, null);
+        token.end(finished);
+
+        token.cancel();
+
+        verify(running).cancel();
+        verify(finished, never()).cancel();
+        assertThat(token.isCancelled()).isTrue();
+    }
+
+    @Test
+    void failureTellsTimeoutFromError() {
+        var token = new CancellationToken();
+
+        assertThat(token.failure("query", new SQLTimeoutException()))
+                .isInstanceOf(QueryCancelledException.class)
+                .matches(e -> ((QueryCancelledException) e).isTimedOut());
+        assertThat(token.failure("query", new SQLException()))
+                .isNotInstanceOf(QueryCancelledException.class);
+    }
+}
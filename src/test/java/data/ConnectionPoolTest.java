@@ -0,0 +1,169 @@
+package data;
+
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+final class ConnectionPoolTest {
+
+    private static EmbeddedDataSource dataSource;
+    private ConnectionPool pool;
+
+    @BeforeAll
+    static void initTestDataSource() {
+        dataSource = new EmbeddedDataSource();
+        dataSource.setDatabaseName("memory:hotel-reservation-test");
+        dataSource.setCreateDatabase("create");
+    }
+
+    @BeforeEach
+    void createPool() {
+        pool = new ConnectionPool(dataSource);
+        pool.setMinSize(0);
+        pool.setMaxSize(2);
+        pool.setAcquireTimeout(Duration.ofMillis(100));
+    }
+
+    @AfterEach
+    void closePool() {
+        pool.close();
+    }
+
+    @Test
+    void reusesPhysicalConnection() throws SQLException {
+        Connection first;
+        try (var connection = pool.getConnection()) {
+            first = connection.unwrap(Connection.class);
+        }
+        try (var connection = pool.getConnection()) {
+            assertThat(connection.unwrap(Connection.class)).isSameAs(first);
+        }
+        assertThat(pool.getOpenCount()).isEqualTo(1);
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    void cachedStatementDropsQueryTimeout() throws SQLException {
+        try (var connection = pool.getConnection();
+             var st = connection.prepareStatement("VALUES 1")) {
+            st.setQueryTimeout(5);
+        }
+        try (var connection = pool.getConnection();
+             var st = connection.prepareStatement("VALUES 1")) {
+            assertThat(st.getQueryTimeout()).isZero();
+        }
+    }
+
+    @Test
+    void cachesPreparedStatements() throws SQLException {
+        PreparedStatement first;
+        try (var connection = pool.getConnection();
+             var st = connection.prepareStatement("VALUES 1")) {
+            first = st.unwrap(PreparedStatement.class);
+        }
+        try (var connection = pool.getConnection();
+             var st = connection.prepareStatement("VALUES 1");
+             var rs = st.executeQuery()) {
+            assertThat(st.unwrap(PreparedStatement.class)).isSameAs(first);
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getInt(1)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void preparesPrivateStatementWhenCachedOneIsInUse() throws SQLException {
+        try (var connection = pool.getConnection();
+             var st1 = connection.prepareStatement("VALUES 1");
+             var st2 = connection.prepareStatement("VALUES 1")) {
+            assertThat(st2.unwrap(PreparedStatement.class)).isNotSameAs(st1.unwrap(PreparedStatement.class));
+        }
+    }
+
+    @Test
+    void statementsReturnCurrentHandle() throws SQLException {
+        try (var connection = pool.getConnection();
+             var st = connection.prepareStatement("VALUES 1")) {
+            assertThat(st.getConnection()).isSameAs(connection);
+        }
+        try (var connection = pool.getConnection();
+             var st1 = connection.prepareStatement("VALUES 1");
+             var st2 = connection.prepareStatement("VALUES 1")) {
+            assertThat(st1.getConnection()).isSameAs(connection);
+            assertThat(st2.getConnection()).isSameAs(connection);
+            st2.close();
+            assertThat(st2.isClosed()).isTrue();
+            assertThat(connection.isClosed()).isFalse();
+        }
+    }
+
+    @Test
+    void timesOutWhenExhausted() throws SQLException {
+        try (var c1 = pool.getConnection();
+             var c2 = pool.getConnection()) {
+            assertThatExceptionOfType(SQLTimeoutException.class)
+                    .isThrownBy(() -> pool.getConnection());
+        }
+        assertThat(pool.getOpenCount()).isEqualTo(2);
+    }
+
+    @Test
+    void rollsBackUnfinishedTransactionOnRelease() throws SQLException {
+        try (var connection = pool.getConnection();
+             var st = connection.createStatement()) {
+            st.executeUpdate("CREATE TABLE APP.POOL_TEST (ID INT)");
+        }
+        try {
+            try (var connection = pool.getConnection();
+                 var st = connection.createStatement()) {
+                connection.setAutoCommit(false);
+                st.executeUpdate("INSERT INTO APP.POOL_TEST VALUES (1)");
+            }
+            try (var connection = pool.getConnection();
+                 var st = connection.createStatement();
+                 var rs = st.executeQuery("SELECT COUNT(*) FROM APP.POOL_TEST")) {
+                assertThat(connection.getAutoCommit()).isTrue();
+                rs.next();
+                assertThat(rs.getInt(1)).isZero();
+            }
+        } finally {
+            try (var connection = pool.getConnection();
+                 var st = connection.createStatement()) {
+                st.executeUpdate("DROP TABLE APP.POOL_TEST");
+            }
+        }
+    }
+
+    @Test
+    void evictsIdleConnectionsAboveMinimum() throws SQLException {
+        pool.setIdleTimeout(Duration.ZERO);
+        try (var c1 = pool.getConnection();
+             var c2 = pool.getConnection()) {
+            assertThat(pool.getOpenCount()).isEqualTo(2);
+        }
+        pool.evictIdle();
+
+        assertThat(pool.getOpenCount()).isZero();
+    }
+
+    @Test
+    void closedHandleCannotBeUsed() throws SQLException {
+        var connection = pool.getConnection();
+        connection.close();
+
+        assertThat(connection.isClosed()).isTrue();
+        assertThatExceptionOfType(SQLException.class)
+                .isThrownBy(connection::createStatement)
+                .withMessage("Connection has already been returned to the pool");
+    }
+}
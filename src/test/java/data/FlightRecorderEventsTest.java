@@ -0,0 +1,150 @@
+package data;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import model.BedType;
+import model.Guest;
+import model.Reservation;
+import model.Room;
+import model.RoomType;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+final class FlightRecorderEventsTest {
+
+    private static EmbeddedDataSource dataSource;
+    private RoomDao roomDao;
+    private ReservationDao reservationDao;
+    private Room room;
+
+    @BeforeAll
+    static void initTestDataSource() {
+        dataSource = new EmbeddedDataSource();
+        dataSource.setDatabaseName("memory:hotel-reservation-test");
+        dataSource.setCreateDatabase("create");
+    }
+
+    @BeforeEach
+    void createRoomDao() {
+        var slowQueryLog = new SlowQueryLog(dataSource, Duration.ofHours(1), 0);
+        roomDao = new RoomDao(slowQueryLog);
+        roomDao.initTable();
+        reservationDao = new ReservationDao(slowQueryLog);
+        reservationDao.initTable();
+        room = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        roomDao.create(room);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        reservationDao.getTableManager().dropTable();
+        roomDao.getTableManager().dropTable();
+    }
+
+    @Test
+    void daoCallAndStatementShareCorrelationId(@TempDir Path directory) throws IOException {
+        long id = Correlation.newId();
+        List<RecordedEvent> events = record(directory, () -> {
+            long previous = Correlation.enter(id);
+            try {
+                roomDao.findAll();
+            } finally {
+                Correlation.restore(previous);
+            }
+        });
+
+        assertThat(events)
+                .filteredOn(e -> e.getEventType().getName().equals("hotel.DaoCall"))
+                .extracting(e -> e.getString("dao"), e -> e.getString("operation"), e -> e.getLong("rows"),
+                        e -> e.getLong("correlationId"))
+                .containsExactly(tuple("RoomDao", "findAll", 1L, id));
+        assertThat(events)
+                .filteredOn(e -> e.getEventType().getName().equals("hotel.SqlStatement"))
+                .extracting(e -> e.getLong("rows"), e -> e.getLong("correlationId"))
+                .containsExactly(tuple(1L, id));
+    }
+
+    @Test
+    void queuedWriteKeepsCorrelationIdOfItsAction(@TempDir Path directory) throws IOException {
+        long id = Correlation.newId();
+        List<RecordedEvent> events;
+        try (var queue = new ReservationWriteQueue(reservationDao, Duration.ofHours(1), 100, Runnable::run)) {
+            events = record(directory, () -> {
+                long previous = Correlation.enter(id);
+                try {
+                    queue.create(reservation("Prvni Jmeno"), e -> {});
+                    queue.create(reservation("Druhe Jmeno"), e -> {});
+                } finally {
+                    Correlation.restore(previous);
+                }
+                queue.flush();
+            });
+        }
+
+        assertThat(events)
+                .filteredOn(e -> e.getEventType().getName().equals("hotel.DaoCall"))
+                .extracting(e -> e.getString("dao"), e -> e.getString("operation"), e -> e.getLong("correlationId"))
+                .containsExactly(tuple("ReservationDao", "writeAll", id));
+        assertThat(events)
+                .filteredOn(e -> e.getEventType().getName().equals("hotel.SqlStatement"))
+                .isNotEmpty()
+                .allSatisfy(e -> assertThat(e.getLong("correlationId")).isEqualTo(id));
+    }
+
+    @Test
+    void queuedWritesOfSeveralActionsHaveNoCommonCorrelationId(@TempDir Path directory) throws IOException {
+        List<RecordedEvent> events;
+        try (var queue = new ReservationWriteQueue(reservationDao, Duration.ofHours(1), 100, Runnable::run)) {
+            events = record(directory, () -> {
+                for (var name : List.of("Prvni Jmeno", "Druhe Jmeno")) {
+                    long previous = Correlation.enter(Correlation.newId());
+                    try {
+                        queue.create(reservation(name), e -> {});
+                    } finally {
+                        Correlation.restore(previous);
+                    }
+                }
+                queue.flush();
+            });
+        }
+
+        assertThat(events)
+                .filteredOn(e -> e.getEventType().getName().equals("hotel.DaoCall"))
+                .extracting(e -> e.getString("operation"), e -> e.getLong("correlationId"))
+                .containsExactly(tuple("writeAll", Correlation.NONE));
+    }
+
+    private static List<RecordedEvent> record(Path directory, Runnable action) throws IOException {
+        try (var recording = new Recording()) {
+            recording.enable("hotel.DaoCall").withThreshold(Duration.ZERO);
+            recording.enable("hotel.SqlStatement").withThreshold(Duration.ZERO);
+            recording.start();
+            action.run();
+            recording.stop();
+            var file = directory.resolve("recording.jfr");
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        }
+    }
+
+    private Reservation reservation(String name) {
+        var reservation = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1,
+                new Guest(name, "alik@seznam.cz", "Brno", "", "+420905174925"));
+        reservation.setRoom(room);
+        return reservation;
+    }
+}
@@ -0,0 +1,91 @@
+package data;
+
+import data.GuestSearchIndex.Field;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+final class GuestSearchIndexTest {
+
+    @Test
+    void searchRanksPrefixMatchesFirst() {
+        var index = new GuestSearchIndex();
+        index.put(1, "Jana Novakova", "jana@example.com", "+420111222333");
+        index.put(2, "Novak Petr", "petr@example.com", "+420444555666");
+        index.put(3, "Petr Novy", "novy@example.com", "+420777888999");
+
+        assertThat(index.search("NOVA", 10, Field.NAME)).containsExactly(2L, 1L);
+        assertThat(index.search("nov", 10, Field.NAME, Field.EMAIL)).containsExactly(2L, 3L, 1L);
+        assertThat(index.search("555", 10, Field.PHONE)).containsExactly(2L);
+        assertThat(index.search("555", 10, Field.NAME)).isEmpty();
+        assertThat(index.search("novakx", 10, Field.NAME)).isEmpty();
+    }
+
+    @Test
+    void searchReturnsNullOverLimit() {
+        var index = new GuestSearchIndex();
+        index.put(1, "Jana Novakova", "", "");
+        index.put(2, "Novak Petr", "", "");
+
+        assertThat(index.search("nova", 1, Field.NAME)).isNull();
+    }
+
+    @Test
+    void searchRejectsShortQuery() {
+        var index = new GuestSearchIndex();
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> index.search("no", 10, Field.NAME));
+    }
+
+    @Test
+    void putReplacesAndRemoveForgets() {
+        var index = new GuestSearchIndex();
+        index.put(1, "Jana Novakova", "", "");
+        index.put(2, "Petr Novy", "", "");
+        index.put(1, "Jana Dvorakova", "", "");
+        index.remove(2);
+
+        assertThat(index.search("nov", 10, Field.NAME)).isEmpty();
+        assertThat(index.search("dvo", 10, Field.NAME)).containsExactly(1L);
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void matchesLinearScanAcrossCompactions() {
+        var random = new Random(3);
+        var index = new GuestSearchIndex();
+        Map<Long, String> names = new HashMap<>();
+        String[] parts = {"nov", "ak", "dvo", "rak", "ova", "petr", "jan", "a", " "};
+        for (long id = 0; id < 5000; id++) {
+            var name = new StringBuilder();
+            for (int p = 0; p < 4; p++) {
+                name.append(parts[random.nextInt(parts.length)]);
+            }
+            names.put(id, name.toString());
+            index.put(id, name.toString(), "", "");
+            if (random.nextInt(3) > 0) {
+                long victim = random.nextInt((int) id + 1);
+                names.remove(victim);
+                index.remove(victim);
+            }
+        }
+        for (var query : List.of("nova", "akdvo", "ova ", "petrjan", "rakr")) {
+            List<Long> expected = new ArrayList<>();
+            names.forEach((id, name) -> {
+                if (name.contains(query)) {
+                    expected.add(id);
+                }
+            });
+            assertThat(index.search(query, Integer.MAX_VALUE, Field.NAME)).containsExactlyInAnyOrderElementsOf(expected);
+        }
+        assertThat(index.size()).isEqualTo(names.size());
+    }
+}
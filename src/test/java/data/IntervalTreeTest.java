@@ -0,0 +1,60 @@
+package data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+final class IntervalTreeTest {
+
+    @Test
+    void overlapsIsHalfOpen() {
+        var tree = new IntervalTree();
+        tree.insert(1, 10, 20);
+
+        assertThat(tree.overlaps(5, 10)).isFalse();
+        assertThat(tree.overlaps(20, 25)).isFalse();
+        assertThat(tree.overlaps(19, 20)).isTrue();
+        assertThat(tree.overlaps(5, 30)).isTrue();
+    }
+
+    @Test
+    void remove() {
+        var tree = new IntervalTree();
+        tree.insert(1, 10, 20);
+        tree.insert(2, 10, 15);
+
+        assertThat(tree.remove(1, 10)).isTrue();
+        assertThat(tree.remove(1, 10)).isFalse();
+        assertThat(tree.size()).isEqualTo(1);
+        assertThat(tree.overlaps(16, 18)).isFalse();
+        assertThat(tree.overlaps(14, 18)).isTrue();
+    }
+
+    @Test
+    void matchesLinearScan() {
+        var random = new Random(42);
+        var tree = new IntervalTree();
+        List<long[]> intervals = new ArrayList<>();
+        for (int key = 0; key < 2000; key++) {
+            long start = random.nextInt(1000);
+            long[] interval = {key, start, start + 1 + random.nextInt(20)};
+            intervals.add(interval);
+            tree.insert(interval[0], interval[1], interval[2]);
+            if (random.nextInt(3) == 0) {
+                var removed = intervals.remove(random.nextInt(intervals.size()));
+                assertThat(tree.remove(removed[0], removed[1])).isTrue();
+            }
+        }
+        for (int i = 0; i < 2000; i++) {
+            long start = random.nextInt(1050);
+            long end = start + 1 + random.nextInt(10);
+            boolean expected = intervals.stream().anyMatch(iv -> iv[1] < end && iv[2] > start);
+            assertThat(tree.overlaps(start, end)).isEqualTo(expected);
+        }
+        assertThat(tree.size()).isEqualTo(intervals.size());
+    }
+}
@@ -0,0 +1,93 @@
+package data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+final class OccupancyCalendarTest {
+
+    private static final long FIRST_DAY = 1000;
+    private static final int DAYS = 730;
+
+    @Test
+    void rangesAreHalfOpenAndClipped() {
+        var calendar = new OccupancyCalendar(FIRST_DAY, DAYS);
+        calendar.set(FIRST_DAY - 5, FIRST_DAY + 2);
+        calendar.set(FIRST_DAY + DAYS - 1, FIRST_DAY + DAYS + 10);
+
+        assertThat(calendar.isOccupied(FIRST_DAY + 1)).isTrue();
+        assertThat(calendar.isOccupied(FIRST_DAY + 2)).isFalse();
+        assertThat(calendar.isOccupied(FIRST_DAY + DAYS - 1)).isTrue();
+        assertThat(calendar.isOccupied(FIRST_DAY + DAYS)).isFalse();
+        assertThat(calendar.covers(FIRST_DAY, FIRST_DAY + DAYS)).isTrue();
+        assertThat(calendar.covers(FIRST_DAY, FIRST_DAY + DAYS + 1)).isFalse();
+        assertThat(calendar.isFree(FIRST_DAY + 2, FIRST_DAY + DAYS - 1)).isTrue();
+    }
+
+    @Test
+    void matchesBitSet() {
+        var random = new Random(7);
+        var calendar = new OccupancyCalendar(FIRST_DAY, DAYS);
+        var expected = new BitSet(DAYS);
+        for (int i = 0; i < 5000; i++) {
+            int from = random.nextInt(DAYS);
+            int to = Math.min(DAYS, from + 1 + random.nextInt(150));
+            if (random.nextBoolean()) {
+                calendar.set(FIRST_DAY + from, FIRST_DAY + to);
+                expected.set(from, to);
+            } else {
+                calendar.clear(FIRST_DAY + from, FIRST_DAY + to);
+                expected.clear(from, to);
+            }
+            int queryFrom = random.nextInt(DAYS);
+            int queryTo = Math.min(DAYS, queryFrom + 1 + random.nextInt(100));
+            assertThat(calendar.isFree(FIRST_DAY + queryFrom, FIRST_DAY + queryTo))
+                    .isEqualTo(expected.get(queryFrom, queryTo).isEmpty());
+        }
+        for (int day = 0; day < DAYS; day++) {
+            assertThat(calendar.isOccupied(FIRST_DAY + day)).isEqualTo(expected.get(day));
+        }
+    }
+
+    @Test
+    void freeStartsMatchIsFree() {
+        var random = new Random(11);
+        var calendar = new OccupancyCalendar(FIRST_DAY, DAYS);
+        for (int i = 0; i < 60; i++) {
+            int from = random.nextInt(DAYS);
+            calendar.set(FIRST_DAY + from, FIRST_DAY + from + 1 + random.nextInt(6));
+        }
+        for (int i = 0; i < 500; i++) {
+            int nights = 1 + random.nextInt(90);
+            int start = random.nextInt(DAYS - nights);
+            int days = 1 + random.nextInt(DAYS - nights - start + 1);
+            var starts = BitSet.valueOf(calendar.freeStarts(FIRST_DAY + start, FIRST_DAY + start + days, nights));
+            var expected = new BitSet();
+            for (int day = 0; day < days; day++) {
+                if (calendar.isFree(FIRST_DAY + start + day, FIRST_DAY + start + day + nights)) {
+                    expected.set(day);
+                }
+            }
+            assertThat(starts).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void retainOccupied() {
+        var first = new OccupancyCalendar(FIRST_DAY, DAYS);
+        var second = new OccupancyCalendar(FIRST_DAY, DAYS);
+        first.set(FIRST_DAY + 10, FIRST_DAY + 100);
+        second.set(FIRST_DAY + 50, FIRST_DAY + DAYS);
+        long[] nights = first.allNights();
+
+        first.retainOccupied(nights);
+        second.retainOccupied(nights);
+
+        var both = BitSet.valueOf(nights);
+        assertThat(both.nextSetBit(0)).isEqualTo(50);
+        assertThat(both.cardinality()).isEqualTo(50);
+    }
+}
@@ -0,0 +1,78 @@
+package data;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.sql.SQLTimeoutException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.within;
+
+final class OperationMetricsTest {
+
+    @Test
+    void bucketsCoverValuesWithinAnEighth() {
+        for (long micros = 0; micros < 1_000_000; micros += 7) {
+            long upper = OperationMetrics.upperBound(OperationMetrics.bucket(micros));
+            assertThat(upper).isGreaterThanOrEqualTo(micros).isLessThanOrEqualTo(micros + micros / 8);
+        }
+        assertThat(OperationMetrics.bucket(Long.MAX_VALUE)).isEqualTo(OperationMetrics.bucket(1L << 50));
+    }
+
+    @Test
+    void percentiles() {
+        var metrics = new OperationMetrics();
+        for (int millis = 1; millis <= 100; millis++) {
+            metrics.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        assertThat(metrics.getCount()).isEqualTo(100);
+        assertThat(metrics.getMeanMillis()).isCloseTo(50.5, within(0.01));
+        assertThat(metrics.getP50Millis()).isBetween(50.0, 50 * 1.125);
+        assertThat(metrics.getP95Millis()).isBetween(95.0, 95 * 1.125);
+        assertThat(metrics.getP99Millis()).isBetween(99.0, 100.0);
+        assertThat(metrics.getMaxMillis()).isEqualTo(100.0);
+    }
+
+    @Test
+    void errorsByCauseAndReset() {
+        var metrics = new OperationMetrics();
+        metrics.recordFailure(1000, new DataException("Failed", new SQLTimeoutException("Timed out", "XCL52")));
+        metrics.recordFailure(1000, new DataException("Failed", new SQLTimeoutException("Timed out", "XCL52")));
+        metrics.recordFailure(1000, new IllegalArgumentException("Room has null ID"));
+
+        assertThat(metrics.getCount()).isEqualTo(3);
+        assertThat(metrics.getErrorCount()).isEqualTo(3);
+        assertThat(metrics.getErrorsByCause()).containsExactly(
+                Map.entry("IllegalArgumentException", 1L), Map.entry("SQLTimeoutException XCL52", 2L));
+
+        metrics.reset();
+
+        assertThat(metrics.getCount()).isZero();
+        assertThat(metrics.getErrorsByCause()).isEmpty();
+        assertThat(metrics.getP99Millis()).isZero();
+    }
+
+    @Test
+    void daoMetricsRecordCallsAndRegisterMBeans() throws Exception {
+        var server = MBeanServerFactory.newMBeanServer();
+        var metrics = new DaoMetrics("RoomDao");
+        metrics.call("findAll", () -> "rooms");
+        metrics.register(server);
+        assertThatExceptionOfType(DataException.class).isThrownBy(() -> metrics.run("delete", () -> {
+            throw new DataException("Failed to delete non-existing room");
+        }));
+
+        assertThat(metrics.getOperations()).containsOnlyKeys("delete", "findAll");
+        assertThat(server.getAttribute(new ObjectName("hotel:type=RoomDao,operation=findAll"), "Count")).isEqualTo(1L);
+        assertThat(server.getAttribute(new ObjectName("hotel:type=RoomDao,operation=delete"), "ErrorCount")).isEqualTo(1L);
+
+        server.invoke(new ObjectName("hotel:type=RoomDao,operation=delete"), "reset", null, null);
+
+        assertThat(metrics.operation("delete").getErrorCount()).isZero();
+    }
+}
@@ -7,12 +7,23 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 class ReservationDaoTest {
 
@@ -41,8 +52,8 @@ class ReservationDaoTest {
 
     @AfterEach
     void cleanUp() {
-        roomDao.getTableManager().dropTable();
         reservationDao.getTableManager().dropTable();
+        roomDao.getTableManager().dropTable();
     }
 
     @Test
@@ -73,6 +84,95 @@ class ReservationDaoTest {
     }
 
 
+    @Test
+    void createAll() {
+        Room room1 = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        roomDao.create(room1);
+        Guest guest = new Guest("Gu Est", "abc@gmail.com", "Brno", "", "123456789");
+        Reservation res1 = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1, guest);
+        Reservation res2 = new Reservation(LocalDate.of(2018, 6, 12), LocalDate.of(2018, 6, 17), 2, guest);
+        Reservation res3 = new Reservation(LocalDate.of(2018, 7, 1), LocalDate.of(2018, 7, 3), 1, guest);
+        res1.setRoom(room1);
+        res2.setRoom(room1);
+        res3.setRoom(room1);
+
+        reservationDao.createAll(List.of(res1, res2, res3), 2);
+
+        assertThat(res1.getId()).isNotNull();
+        assertThat(res2.getId()).isGreaterThan(res1.getId());
+        assertThat(res3.getId()).isGreaterThan(res2.getId());
+        assertThat(reservationDao.findAll())
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyInAnyOrder(res1, res2, res3);
+    }
+
+    @Test
+    void createAllRollsBackOnFailure() {
+        Room room1 = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        roomDao.create(room1);
+        Reservation valid = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1,
+                new Guest("Gu Est", "abc@gmail.com", "Brno", "", "123456789"));
+        Reservation invalid = new Reservation(LocalDate.of(2018, 6, 12), LocalDate.of(2018, 6, 17), 2,
+                new Guest(null, "abc@gmail.com", "Brno", "", "123456789"));
+        valid.setRoom(room1);
+        invalid.setRoom(room1);
+
+        assertThatExceptionOfType(DataException.class)
+                .isThrownBy(() -> reservationDao.createAll(List.of(valid, invalid), 1))
+                .withMessage("Failed to store 2 reservations");
+        assertThat(valid.getId()).isNull();
+        assertThat(reservationDao.findAll()).isEmpty();
+    }
+
+    @Test
+    void createReservationForMissingRoom() {
+        Room room = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        room.setId(420L);
+        Guest guest = new Guest("Gu Est", "abc@gmail.com", "Brno", "", "123456789");
+        Reservation res = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1, guest);
+        res.setRoom(room);
+
+        assertThatExceptionOfType(DataException.class)
+                .isThrownBy(() -> reservationDao.create(res))
+                .withMessage("Failed to store reservation: " + res);
+    }
+
+    @Test
+    void initTableUpgradesExistingSchema() throws SQLException {
+        reservationDao.getTableManager().dropTable();
+        roomDao.getTableManager().dropTable();
+        try (var connection = dataSource.getConnection();
+             var st = connection.createStatement()) {
+            st.executeUpdate("CREATE TABLE APP.ROOM (ID BIGINT PRIMARY KEY GENERATED ALWAYS AS IDENTITY," +
+                    " ROOM_NUMBER INT NOT NULL, PRICE INT NOT NULL, BEDS_AMOUNT INT NOT NULL, BED_TYPES VARCHAR(150) NOT NULL)");
+            st.executeUpdate("CREATE TABLE APP.RESERVATION (ID BIGINT PRIMARY KEY GENERATED ALWAYS AS IDENTITY," +
+                    " GUEST_NAME VARCHAR(100) NOT NULL, EMAIL VARCHAR(100) NOT NULL, ADDRESS VARCHAR(100) NOT NULL," +
+                    " PHONE VARCHAR(20) NOT NULL, DETAILS VARCHAR(1000) NOT NULL, EXPECTED_CHECK_IN_DATE DATE NOT NULL," +
+                    " EXPECTED_CHECK_OUT_DATE DATE NOT NULL, CHECK_IN_DATE DATE, CHECK_OUT_DATE DATE," +
+                    " GUESTS_NUMBER INT NOT NULL, ROOM_ID INT NOT NULL)");
+            st.executeUpdate("INSERT INTO APP.ROOM (ROOM_NUMBER, PRICE, BEDS_AMOUNT, BED_TYPES) VALUES (7, 20, 2, 'FULL')");
+            st.executeUpdate("INSERT INTO APP.RESERVATION (GUEST_NAME, EMAIL, ADDRESS, PHONE, DETAILS," +
+                    " EXPECTED_CHECK_IN_DATE, EXPECTED_CHECK_OUT_DATE, GUESTS_NUMBER, ROOM_ID)" +
+                    " VALUES ('Gu Est', 'abc@gmail.com', 'Brno', '123456789', '', '2018-04-12', '2018-05-07', 1, 1)");
+        }
+
+        roomDao.initTable();
+        reservationDao.initTable();
+
+        assertThat(reservationDao.findAll())
+                .extracting(Reservation::getGuestName, r -> r.getRoom().getNumber())
+                .containsExactly(tuple("Gu Est", 7));
+        try (var connection = dataSource.getConnection();
+             var st = connection.createStatement();
+             var rs = st.executeQuery("SELECT CONSTRAINTNAME FROM SYS.SYSCONSTRAINTS WHERE CONSTRAINTNAME IN ('ROOM_NUMBER_UNIQUE', 'RESERVATION_ROOM_FK')")) {
+            int constraints = 0;
+            while (rs.next()) {
+                constraints++;
+            }
+            assertThat(constraints).isEqualTo(2);
+        }
+    }
+
     @Test
     void findAllEmpty() {
         assertThat(reservationDao.findAll()).isEmpty();
@@ -109,6 +209,143 @@ class ReservationDaoTest {
                 .containsExactlyInAnyOrder(res, res2, res3);
     }
 
+    @Test
+    void findAllSharesRooms() {
+        Room room1 = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        Room room2 = new Room(2, new RoomType(BedType.FULL, 20, 2));
+        roomDao.createAll(List.of(room1, room2));
+        Guest guest = new Guest("Ho Pep", "alik@seznam.cz", "Brno", "", "+420905174925");
+        Reservation res = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1, guest);
+        Reservation res2 = new Reservation(LocalDate.of(2019, 4, 12), LocalDate.of(2019, 5, 7), 1, guest);
+        Reservation res3 = new Reservation(LocalDate.of(2020, 1, 4), LocalDate.of(2020, 2, 7), 1, guest);
+        res.setRoom(room1);
+        res2.setRoom(room1);
+        res3.setRoom(room2);
+        reservationDao.createAll(List.of(res, res2, res3));
+
+        var found = reservationDao.findAll();
+
+        assertThat(found).extracting(Reservation::getRoom).containsExactlyInAnyOrder(room1, room1, room2);
+        var loadedRoom1 = found.stream().map(Reservation::getRoom).filter(room1::equals).collect(Collectors.toList());
+        var loadedRoom2 = found.stream().map(Reservation::getRoom).filter(room2::equals).findFirst().orElseThrow();
+        assertThat(loadedRoom1.get(0)).isSameAs(loadedRoom1.get(1));
+        assertThat(loadedRoom1.get(0).getType()).isSameAs(loadedRoom2.getType());
+    }
+
+    @Test
+    void findWithRoomCacheOnSingleConnection() {
+        Room room1 = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        Room room2 = new Room(2, new RoomType(BedType.QUEEN, 10, 1));
+        roomDao.createAll(List.of(room1, room2));
+        Guest guest = new Guest("Ho Pep", "alik@seznam.cz", "Brno", "", "+420905174925");
+        Reservation res = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1, guest);
+        Reservation res2 = new Reservation(LocalDate.of(2020, 1, 4), LocalDate.of(2020, 2, 7), 1, guest);
+        res.setRoom(room1);
+        res2.setRoom(room2);
+        reservationDao.createAll(List.of(res, res2));
+
+        try (var pool = new ConnectionPool(dataSource)) {
+            pool.setMaxSize(1);
+            pool.setAcquireTimeout(Duration.ofMillis(100));
+            var pooledRoomDao = new RoomDao(pool);
+            var pooledDao = new ReservationDao(pool, pooledRoomDao, null);
+
+            // the rooms are loaded on the connection reading the reservations
+            assertThat(pooledDao.findAll())
+                    .extracting(r -> r.getRoom().getNumber())
+                    .containsExactlyInAnyOrder(1, 2);
+            pooledRoomDao.getRoomCache().invalidate();
+            assertThat(pooledDao.filterReservations("", "2"))
+                    .usingRecursiveFieldByFieldElementComparator()
+                    .containsExactly(res2);
+        }
+    }
+
+    @Test
+    void findAllWithRoomCache() {
+        var cachedDao = new ReservationDao(dataSource, roomDao, null);
+        Room room1 = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        Room room2 = new Room(2, new RoomType(BedType.QUEEN, 10, 1));
+        assertThat(roomDao.findAll()).isEmpty();
+        roomDao.createAll(List.of(room1, room2));
+        Guest guest = new Guest("Ho Pep", "alik@seznam.cz", "Brno", "", "+420905174925");
+        Reservation res = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1, guest);
+        Reservation res2 = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1, guest);
+        Reservation res3 = new Reservation(LocalDate.of(2020, 1, 4), LocalDate.of(2020, 2, 7), 1, guest);
+        res.setRoom(room1);
+        res2.setRoom(room2);
+        res3.setRoom(room2);
+        cachedDao.createAll(List.of(res, res2, res3));
+
+        assertThat(cachedDao.findAll())
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyInAnyOrder(res, res2, res3);
+        assertThat(cachedDao.filterReservations("", "2"))
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyInAnyOrder(res2, res3);
+        assertThat(cachedDao.filterReservations("", "3")).isEmpty();
+        assertThat(cachedDao.findPage(0, 2)).extracting(Reservation::getRoom).containsExactly(room1, room2);
+        assertThat(roomDao.getRoomCache().getMissCount()).isEqualTo(1);
+        assertThat(roomDao.getMetrics().operation("findById").getCount()).isZero();
+    }
+
+    @Test
+    void findPage() {
+        Room room1 = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        roomDao.create(room1);
+        Guest guest = new Guest("Gu Est", "abc@gmail.com", "Brno", "", "123456789");
+        List<Reservation> all = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Reservation res = new Reservation(LocalDate.of(2018, 4, 1 + i), LocalDate.of(2018, 5, 7), 1, guest);
+            res.setRoom(room1);
+            all.add(res);
+        }
+        reservationDao.createAll(all);
+
+        assertThat(reservationDao.findPage(0, 2))
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactly(all.get(0), all.get(1));
+        assertThat(reservationDao.findPage(all.get(1).getId(), 2))
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactly(all.get(2), all.get(3));
+        assertThat(reservationDao.findPage(all.get(3).getId(), 2))
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactly(all.get(4));
+    }
+
+    @Test
+    void findIdAfter() {
+        Room room1 = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        roomDao.create(room1);
+        Guest guest = new Guest("Gu Est", "abc@gmail.com", "Brno", "", "123456789");
+        List<Reservation> all = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Reservation res = new Reservation(LocalDate.of(2018, 4, 1 + i), LocalDate.of(2018, 5, 7), 1, guest);
+            res.setRoom(room1);
+            all.add(res);
+        }
+        reservationDao.createAll(all);
+
+        assertThat(reservationDao.findIdAfter(0, 3)).isEqualTo(all.get(3).getId());
+        assertThat(reservationDao.findIdAfter(all.get(0).getId(), 0)).isEqualTo(all.get(1).getId());
+        assertThat(reservationDao.findIdAfter(all.get(2).getId(), 2)).isNull();
+    }
+
+    @Test
+    void count() {
+        Room room1 = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        roomDao.create(room1);
+        Guest guest = new Guest("Gu Est", "abc@gmail.com", "Brno", "", "123456789");
+        Reservation res1 = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1, guest);
+        Reservation res2 = new Reservation(LocalDate.of(2018, 6, 12), LocalDate.of(2018, 6, 17), 2, guest);
+        res1.setRoom(room1);
+        res2.setRoom(room1);
+
+        assertThat(reservationDao.count()).isZero();
+        reservationDao.createAll(List.of(res1, res2));
+        assertThat(reservationDao.count()).isEqualTo(2);
+    }
+
     @Test
     void delete() {
         RoomType rt1 = new RoomType(BedType.FULL, 20, 2);
@@ -179,6 +416,28 @@ class ReservationDaoTest {
                 .containsExactly(res1);
     }
 
+    @Test
+    void updateWritesOnlyModifiedFields() {
+        Room room = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        roomDao.create(room);
+        Reservation res = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1,
+                new Guest("Gu Est", "abc@gmail.com", "Brno", "", "123456789"));
+        res.setRoom(room);
+        reservationDao.create(res);
+        var checkedIn = reservationDao.findAll().get(0);
+        var checkedOut = reservationDao.findAll().get(0);
+
+        checkedIn.setCheckInDate(LocalDate.of(2018, 4, 12));
+        checkedOut.setCheckOutDate(LocalDate.of(2018, 5, 7));
+        reservationDao.update(checkedIn);
+        reservationDao.update(checkedOut);
+
+        assertThat(checkedIn.getModifiedFields()).isEmpty();
+        assertThat(reservationDao.findAll())
+                .extracting(Reservation::getCheckInDate, Reservation::getCheckOutDate)
+                .containsExactly(tuple(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7)));
+    }
+
     @Test
     void updateWithNullId() {
         Room room = new Room(1, new RoomType(BedType.FULL, 20, 2));
@@ -192,6 +451,26 @@ class ReservationDaoTest {
                 .withMessage("Reservation has null ID: " + res);
     }
 
+    @Test
+    void updateWithoutModifiedFields() {
+        Room room = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        roomDao.create(room);
+        Guest guest = new Guest("Ho Pep", "alik@seznam.cz", "Brno", "", "+420905174925");
+        Reservation res = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1, guest);
+        res.setRoom(room);
+        reservationDao.create(res);
+        Reservation notStored = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1, guest);
+        notStored.setId(123L);
+
+        var loaded = reservationDao.findAll().get(0);
+        reservationDao.update(loaded);
+        reservationDao.update(notStored);
+
+        assertThat(reservationDao.findAll())
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactly(res);
+    }
+
     @Test
     void updateNonExisting() {
         Room room = new Room(1, new RoomType(BedType.FULL, 20, 2));
@@ -229,6 +508,47 @@ class ReservationDaoTest {
                 .containsExactly(res2);
     }
 
+    @Test
+    void filterReservationsWithToken() {
+        Room room = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        roomDao.create(room);
+        Reservation res = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1,
+                new Guest("Prvni Jmeno", "alik@seznam.cz", "Brno", "", "+420905174925"));
+        res.setRoom(room);
+        reservationDao.create(res);
+        var token = new CancellationToken();
+
+        assertThat(reservationDao.filterReservations("Prvni", "", token, Duration.ofSeconds(10)))
+                .extracting(Reservation::getId)
+                .containsExactly(res.getId());
+
+        token.cancel();
+        assertThatExceptionOfType(QueryCancelledException.class)
+                .isThrownBy(() -> reservationDao.filterReservations("Prvni", "", token, Duration.ofSeconds(10)))
+                .matches(e -> !e.isTimedOut());
+    }
+
+    @Test
+    void filterReservationsStreamsRows() {
+        Room room = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        roomDao.create(room);
+        List<Reservation> reservations = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            var res = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1,
+                    new Guest("Guest " + i, "guest@example.com", "Brno", "", "+420905174925"));
+            res.setRoom(room);
+            reservations.add(res);
+        }
+        reservationDao.createAll(reservations);
+        List<Reservation> streamed = new ArrayList<>();
+
+        reservationDao.filterReservations("gu", "1", new CancellationToken(), null, streamed::add);
+
+        assertThat(streamed)
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(reservations);
+    }
+
     @Test
     void filterReservationsByInvalidName() {
         RoomType rt1 = new RoomType(BedType.FULL, 20, 2);
@@ -314,6 +634,93 @@ class ReservationDaoTest {
                 .containsExactly(res2);
     }
 
+    @Test
+    void filterReservationsWithSearchIndex() {
+        Room room1 = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        Room room2 = new Room(2, new RoomType(BedType.QUEEN, 10, 1));
+        roomDao.createAll(List.of(room1, room2));
+        Guest guest = new Guest("Prvni Jmeno", "alik@seznam.cz", "Brno", "", "+420905174925");
+        Guest guest2 = new Guest("Druhe Jmeno", "rofl@centrum.lol", "Praha 123", "Jsem vegan nebo co", "123519681");
+        Reservation res = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1, guest);
+        Reservation res2 = new Reservation(LocalDate.of(2017, 2, 4), LocalDate.now(), 1, guest2);
+        res.setRoom(room1);
+        res2.setRoom(room2);
+        reservationDao.create(res);
+        reservationDao.initSearchIndex();
+        reservationDao.create(res2);
+
+        assertThat(reservationDao.filterReservations("jmeno", ""))
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactly(res, res2);
+        assertThat(reservationDao.filterReservations("JMENO", "2"))
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactly(res2);
+        assertThat(reservationDao.filterReservations("Druhe", ""))
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactly(res2);
+
+        res2.setGuest(new Guest("Treti Host", "rofl@centrum.lol", "Praha 123", "", "123519681"));
+        reservationDao.update(res2);
+        reservationDao.delete(res);
+        assertThat(reservationDao.filterReservations("jmeno", "")).isEmpty();
+        assertThat(reservationDao.searchGuests("host")).extracting(Reservation::getId).containsExactly(res2.getId());
+    }
+
+    @Test
+    void searchIndexKeepsChangesMadeWhileBuilding() throws SQLException {
+        Room room = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        roomDao.create(room);
+        Reservation res = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1,
+                new Guest("Prvni Jmeno", "alik@seznam.cz", "Brno", "", "+420905174925"));
+        res.setRoom(room);
+        reservationDao.create(res);
+        var source = mock(DataSource.class);
+        var dao = new ReservationDao(source);
+        var scanned = new AtomicBoolean();
+        when(source.getConnection()).thenAnswer(invocation -> {
+            var connection = dataSource.getConnection();
+            if (scanned.getAndSet(true)) {
+                return connection;
+            }
+            // the guest changes after the scan has read the reservations, before the index is published
+            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                if (method.getName().equals("close")) {
+                    res.setGuest(new Guest("Treti Host", "rofl@centrum.lol", "Praha 123", "", "123519681"));
+                    dao.update(res);
+                }
+                return method.invoke(connection, args);
+            });
+        });
+
+        dao.initSearchIndex();
+
+        assertThat(dao.searchGuests("host")).extracting(Reservation::getId).containsExactly(res.getId());
+        assertThat(dao.searchGuests("jmeno")).isEmpty();
+    }
+
+    @Test
+    void searchGuests() {
+        Room room1 = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        roomDao.create(room1);
+        Reservation res = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1,
+                new Guest("Prvni Jmeno", "alik@seznam.cz", "Brno", "", "+420905174925"));
+        Reservation res2 = new Reservation(LocalDate.of(2017, 2, 4), LocalDate.of(2017, 2, 8), 1,
+                new Guest("Alik Druhy", "rofl@centrum.lol", "Praha 123", "", "123519681"));
+        res.setRoom(room1);
+        res2.setRoom(room1);
+        reservationDao.createAll(List.of(res, res2));
+
+        assertThat(reservationDao.searchGuests("ALIK")).extracting(Reservation::getId)
+                .containsExactlyInAnyOrder(res.getId(), res2.getId());
+        assertThat(reservationDao.searchGuests("9051")).extracting(Reservation::getId).containsExactly(res.getId());
+
+        reservationDao.initSearchIndex();
+        assertThat(reservationDao.searchGuests("ALIK")).extracting(Reservation::getId)
+                .containsExactly(res.getId(), res2.getId());
+        assertThat(reservationDao.searchGuests("alik d")).extracting(Reservation::getId).containsExactly(res2.getId());
+        assertThat(reservationDao.searchGuests("9051")).extracting(Reservation::getId).containsExactly(res.getId());
+    }
+
     @Test
     void filterReservationsEmpty() {
         assertThat(reservationDao.filterReservations("Michal", "7")).isEmpty();
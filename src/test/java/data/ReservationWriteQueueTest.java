@@ -0,0 +1,143 @@
+package data;
+
+import model.*;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.tuple;
+
+final class ReservationWriteQueueTest {
+
+    private static EmbeddedDataSource dataSource;
+    private ReservationDao reservationDao;
+    private RoomDao roomDao;
+    private ReservationWriteQueue queue;
+    private Room room;
+    private final List<DataException> failures = new ArrayList<>();
+
+    @BeforeAll
+    static void initTestDataSource() {
+        dataSource = new EmbeddedDataSource();
+        dataSource.setDatabaseName("memory:hotel-reservation-test");
+        dataSource.setCreateDatabase("create");
+    }
+
+    @BeforeEach
+    void createQueue() {
+        roomDao = new RoomDao(dataSource);
+        roomDao.initTable();
+        reservationDao = new ReservationDao(dataSource);
+        reservationDao.initTable();
+        room = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        roomDao.create(room);
+        queue = new ReservationWriteQueue(reservationDao, Duration.ofHours(1), 100, Runnable::run);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        queue.close();
+        reservationDao.getTableManager().dropTable();
+        roomDao.getTableManager().dropTable();
+    }
+
+    @Test
+    void createMergesLaterUpdate() {
+        var res = reservation("Prvni Jmeno");
+        queue.create(res, failures::add);
+        res.setCheckInDate(LocalDate.of(2018, 4, 12));
+        queue.update(res, failures::add);
+
+        assertThat(queue.getPendingCount()).isEqualTo(1);
+        queue.flush();
+
+        assertThat(failures).isEmpty();
+        assertThat(res.getId()).isNotNull();
+        assertThat(reservationDao.findAll())
+                .extracting(Reservation::getId, Reservation::getCheckInDate)
+                .containsExactly(tuple(res.getId(), LocalDate.of(2018, 4, 12)));
+    }
+
+    @Test
+    void deleteCancelsQueuedCreate() {
+        var res = reservation("Prvni Jmeno");
+        queue.create(res, failures::add);
+        queue.delete(res, failures::add);
+
+        assertThat(queue.getPendingCount()).isZero();
+        queue.flush();
+
+        assertThat(reservationDao.findAll()).isEmpty();
+    }
+
+    @Test
+    void updatesOfSameReservationAreMerged() {
+        var res = reservation("Prvni Jmeno");
+        reservationDao.create(res);
+        res.setCheckInDate(LocalDate.of(2018, 4, 12));
+        queue.update(res, failures::add);
+        res.setCheckOutDate(LocalDate.of(2018, 5, 7));
+        queue.update(res, failures::add);
+
+        assertThat(queue.getPendingCount()).isEqualTo(1);
+        assertThat(res.getModifiedFields()).isEmpty();
+        queue.flush();
+
+        assertThat(reservationDao.findAll())
+                .extracting(Reservation::getCheckInDate, Reservation::getCheckOutDate)
+                .containsExactly(tuple(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7)));
+    }
+
+    @Test
+    void failedChangeDoesNotStopOthers() {
+        var missing = reservation("Druhe Jmeno");
+        missing.setId(12345L);
+        var res = reservation("Prvni Jmeno");
+        queue.delete(missing, failures::add);
+        queue.create(res, failures::add);
+        queue.flush();
+
+        assertThat(failures).hasSize(1);
+        assertThat(failures.get(0)).hasMessage("Failed to delete non-existing reservation: " + missing);
+        assertThat(reservationDao.findAll()).extracting(Reservation::getId).containsExactly(res.getId());
+    }
+
+    @Test
+    void flushSizeTriggersWrite() throws InterruptedException {
+        queue.close();
+        queue = new ReservationWriteQueue(reservationDao, Duration.ofHours(1), 2, Runnable::run);
+        queue.create(reservation("Prvni Jmeno"), failures::add);
+        queue.create(reservation("Druhe Jmeno"), failures::add);
+
+        for (int i = 0; i < 100 && reservationDao.count() < 2; i++) {
+            Thread.sleep(50);
+        }
+        assertThat(reservationDao.count()).isEqualTo(2);
+    }
+
+    @Test
+    void closeWritesQueuedChanges() {
+        queue.create(reservation("Prvni Jmeno"), failures::add);
+        queue.close();
+
+        assertThat(reservationDao.count()).isEqualTo(1);
+        assertThatExceptionOfType(IllegalStateException.class)
+                .isThrownBy(() -> queue.create(reservation("Druhe Jmeno"), failures::add));
+    }
+
+    private Reservation reservation(String name) {
+        var reservation = new Reservation(LocalDate.of(2018, 4, 12), LocalDate.of(2018, 5, 7), 1,
+                new Guest(name, "alik@seznam.cz", "Brno", "", "+420905174925"));
+        reservation.setRoom(room);
+        return reservation;
+    }
+}
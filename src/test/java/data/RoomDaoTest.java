@@ -9,10 +9,14 @@ import org.junit.jupiter.api.Test;
 
 import javax.sql.DataSource;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.mock;
@@ -45,6 +49,7 @@ final class RoomDaoTest {
 
     @AfterEach
     void cleanUp() {
+        reservationDao.getTableManager().dropTable();
         roomDao.getTableManager().dropTable();
     }
 
@@ -65,6 +70,38 @@ final class RoomDaoTest {
                 .withMessage("Room already has ID: " + r);
     }
 
+    @Test
+    void createRoomWithDuplicateNumber() {
+        var r1 = new Room(123, new RoomType(BedType.QUEEN, 10, 1));
+        var r2 = new Room(123, new RoomType(BedType.KING, 20, 1));
+        roomDao.create(r1);
+
+        assertThatExceptionOfType(DataException.class)
+                .isThrownBy(() -> roomDao.create(r2))
+                .withMessage("Failed to store room " + r2);
+    }
+
+    @Test
+    void countRooms() {
+        assertThat(roomDao.count()).isZero();
+        roomDao.createAll(List.of(new Room(123, new RoomType(BedType.KING, 10, 1)),
+                new Room(456, new RoomType(BedType.FULL, 20, 1))), 2);
+
+        assertThat(roomDao.count()).isEqualTo(2);
+    }
+
+    @Test
+    void metricsCountCallsAndFailures() {
+        var r1 = new Room(123, new RoomType(BedType.QUEEN, 10, 1));
+        var r2 = new Room(123, new RoomType(BedType.KING, 20, 1));
+        roomDao.create(r1);
+        assertThatExceptionOfType(DataException.class).isThrownBy(() -> roomDao.create(r2));
+
+        var create = roomDao.getMetrics().operation("create");
+        assertThat(create.getCount()).isEqualTo(2);
+        assertThat(create.getErrorsByCause()).containsOnlyKeys("DerbySQLIntegrityConstraintViolationException 23505");
+    }
+
     @Test
     void createRoomWithException() {
         var ex = new SQLException();
@@ -77,6 +114,34 @@ final class RoomDaoTest {
                 .withCause(ex);
     }
 
+    @Test
+    void createAll() {
+        var r1 = new Room(123, new RoomType(BedType.KING, 10, 1));
+        var r2 = new Room(456, new RoomType(BedType.FULL, 20, 1));
+        var r3 = new Room(789, new RoomType(BedType.TWIN, 30, 1));
+
+        roomDao.createAll(List.of(r1, r2, r3), 2);
+
+        assertNotNull(r1.getId());
+        assertNotNull(r2.getId());
+        assertNotNull(r3.getId());
+        assertThat(roomDao.findAll())
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyInAnyOrder(r1, r2, r3);
+    }
+
+    @Test
+    void createAllWithExistingId() {
+        var r1 = new Room(123, new RoomType(BedType.KING, 10, 1));
+        var r2 = new Room(456, new RoomType(BedType.FULL, 20, 1));
+        r2.setId(456L);
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> roomDao.createAll(List.of(r1, r2)))
+                .withMessage("Room already has ID: " + r2);
+        assertThat(roomDao.findAll()).isEmpty();
+    }
+
     @Test
     void findAllEmpty() {
         assertThat(roomDao.findAll()).isEmpty();
@@ -221,6 +286,30 @@ final class RoomDaoTest {
                 .withCause(ex);
     }
 
+    @Test
+    void roomCache() throws SQLException {
+        var r1 = new Room(123, new RoomType(BedType.KING, 10, 1));
+        var r2 = new Room(456, new RoomType(BedType.FULL, 20, 1));
+        assertThat(roomDao.findAll()).isEmpty();
+        roomDao.createAll(List.of(r1, r2));
+
+        assertThat(roomDao.findByNumber(123)).isSameAs(r1);
+        assertThat(roomDao.findById(r2.getId())).isSameAs(r2);
+        assertThat(roomDao.findByNumber(789)).isNull();
+        assertThat(roomDao.getRoomCache().getHitCount()).isEqualTo(2);
+        assertThat(roomDao.getRoomCache().getMissCount()).isEqualTo(1);
+
+        roomDao.delete(r1);
+        assertThat(roomDao.findAll()).containsExactly(r2);
+
+        try (var connection = dataSource.getConnection();
+             var st = connection.createStatement()) {
+            st.executeUpdate("INSERT INTO APP.ROOM (ROOM_NUMBER, PRICE, BEDS_AMOUNT, BED_TYPES) VALUES (789, 30, 1, 'TWIN')");
+        }
+        assertThat(roomDao.findByNumber(789)).isNotNull();
+        assertThat(roomDao.findAll()).extracting(Room::getNumber).containsExactly(456, 789);
+    }
+
     @Test
     void findAvailableRooms() {
         RoomType rt1 = new RoomType(BedType.FULL, 20, 2);
@@ -243,6 +332,105 @@ final class RoomDaoTest {
                 .containsExactly(room2);
     }
 
+    @Test
+    void findAvailableRoomsCancelled() {
+        roomDao.create(new Room(1, new RoomType(BedType.FULL, 20, 2)));
+        var token = new CancellationToken();
+        token.cancel();
+
+        assertThatExceptionOfType(QueryCancelledException.class)
+                .isThrownBy(() -> roomDao.findAvailableRooms(LocalDate.of(2020, 8, 9), LocalDate.of(2020, 8, 14),
+                        token, Duration.ofSeconds(10)));
+    }
+
+    @Test
+    void findAvailableRoomsByQuery() {
+        var index = new AvailabilityIndex();
+        var indexedRoomDao = new RoomDao(dataSource, index);
+        Room twin = new Room(1, new RoomType(BedType.TWIN, 15, 2));
+        Room king = new Room(2, new RoomType(BedType.KING, 40, 1));
+        Room queens = new Room(3, new RoomType(BedType.QUEEN, 30, 2));
+        Room full = new Room(4, new RoomType(BedType.FULL, 10, 3));
+        Room booked = new Room(5, new RoomType(BedType.KING, 20, 1));
+        roomDao.createAll(List.of(twin, king, queens, full, booked), 5);
+        Reservation res = new Reservation(LocalDate.of(2020, 8, 12), LocalDate.of(2020, 8, 20), 2,
+                new Guest("Prvni Jmeno", "alik@seznam.cz", "Brno", "", "+420905174925"));
+        res.setRoom(booked);
+        reservationDao.create(res);
+        var in = LocalDate.of(2020, 8, 16);
+        var out = LocalDate.of(2020, 8, 28);
+        var token = new CancellationToken();
+
+        for (var dao : List.of(roomDao, indexedRoomDao)) {
+            assertThat(dao.findAvailableRooms(RoomQuery.available(in, out).minCapacity(2)
+                    .orderBy(RoomQuery.Order.CAPACITY), token, null))
+                    .extracting(Room::getNumber)
+                    .containsExactly(1, 2, 4, 3);
+            assertThat(dao.findAvailableRooms(RoomQuery.available(in, out).minCapacity(2)
+                    .bedTypes(EnumSet.of(BedType.KING, BedType.QUEEN)).price(null, 35), token, null))
+                    .extracting(Room::getNumber)
+                    .containsExactly(3);
+            assertThat(dao.findAvailableRooms(RoomQuery.available(in, out).price(12, null)
+                    .orderBy(RoomQuery.Order.PRICE).limit(2), token, null))
+                    .extracting(Room::getNumber)
+                    .containsExactly(1, 3);
+            indexedRoomDao.loadAvailabilityIndex();
+        }
+    }
+
+    @Test
+    void findStayOptions() {
+        createRoomsWithStaysInAugust();
+
+        // without a loaded availability index, from an index of the search window
+        assertThat(roomDao.findStayOptions(StaySearch.of(4, LocalDate.of(2020, 8, 1), LocalDate.of(2020, 8, 31))
+                .minCapacity(2).limit(3)))
+                .extracting(option -> option.getRoom().getNumber(), StayOption::getCheckIn)
+                .containsExactly(tuple(3, LocalDate.of(2020, 8, 4)), tuple(3, LocalDate.of(2020, 8, 5)),
+                        tuple(3, LocalDate.of(2020, 8, 6)));
+        assertThat(roomDao.findStayOptions(StaySearch.of(4, LocalDate.of(2020, 8, 1), LocalDate.of(2020, 8, 31))
+                .minCapacity(2).limit(3).bedType(BedType.KING)))
+                .extracting(option -> option.getRoom().getNumber(), StayOption::getCheckIn)
+                .containsExactly(tuple(2, LocalDate.of(2020, 8, 10)), tuple(2, LocalDate.of(2020, 8, 11)),
+                        tuple(2, LocalDate.of(2020, 8, 12)));
+    }
+
+    @Test
+    void findStayOptionsWithIndex() {
+        var indexedRoomDao = new RoomDao(dataSource, new AvailabilityIndex(LocalDate.of(2020, 1, 1), 365));
+        createRoomsWithStaysInAugust();
+        indexedRoomDao.loadAvailabilityIndex();
+
+        assertThat(indexedRoomDao.findStayOptions(StaySearch.of(4, LocalDate.of(2020, 8, 1), LocalDate.of(2020, 8, 31))
+                .minCapacity(2).limit(3)))
+                .extracting(option -> option.getRoom().getNumber(), StayOption::getCheckIn)
+                .containsExactly(tuple(3, LocalDate.of(2020, 8, 4)), tuple(3, LocalDate.of(2020, 8, 5)),
+                        tuple(3, LocalDate.of(2020, 8, 6)));
+        assertThat(indexedRoomDao.findStayOptions(StaySearch.of(4, LocalDate.of(2020, 8, 1), LocalDate.of(2020, 8, 31))
+                .minCapacity(2).limit(3).bedType(BedType.KING)))
+                .extracting(option -> option.getRoom().getNumber(), StayOption::getCheckIn)
+                .containsExactly(tuple(2, LocalDate.of(2020, 8, 10)), tuple(2, LocalDate.of(2020, 8, 11)),
+                        tuple(2, LocalDate.of(2020, 8, 12)));
+    }
+
+    /**
+     * Rooms 1 for one guest, 2 and 3 for two; room 2 is taken from August 3 to 10, room 3 from
+     * August 1 to 4.
+     */
+    private void createRoomsWithStaysInAugust() {
+        Room twin = new Room(1, new RoomType(BedType.TWIN, 15, 1));
+        Room king = new Room(2, new RoomType(BedType.KING, 40, 1));
+        Room queen = new Room(3, new RoomType(BedType.QUEEN, 30, 1));
+        roomDao.createAll(List.of(twin, king, queen), 3);
+        Guest guest = new Guest("Prvni Jmeno", "alik@seznam.cz", "Brno", "", "+420905174925");
+        Reservation res = new Reservation(LocalDate.of(2020, 8, 3), LocalDate.of(2020, 8, 10), 2, guest);
+        res.setRoom(king);
+        reservationDao.create(res);
+        Reservation res2 = new Reservation(LocalDate.of(2020, 8, 1), LocalDate.of(2020, 8, 4), 2, guest);
+        res2.setRoom(queen);
+        reservationDao.create(res2);
+    }
+
     @Test
     void findAvailableRoomsEmpty() {
         RoomType rt1 = new RoomType(BedType.FULL, 20, 2);
@@ -263,6 +451,122 @@ final class RoomDaoTest {
         assertThat(roomDao.findAvailableRooms(LocalDate.of(2020, 8, 9), LocalDate.of(2020, 8, 14))).isEmpty();
     }
 
+    @Test
+    void findAvailableRoomsWithIndex() {
+        var index = new AvailabilityIndex();
+        var indexedRoomDao = new RoomDao(dataSource, index);
+        var indexedReservationDao = new ReservationDao(dataSource, index);
+        Room room1 = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        Room room2 = new Room(2, new RoomType(BedType.QUEEN, 10, 1));
+        indexedRoomDao.create(room1);
+        indexedRoomDao.loadAvailabilityIndex();
+        indexedRoomDao.create(room2);
+        Guest guest = new Guest("Prvni Jmeno", "alik@seznam.cz", "Brno", "", "+420905174925");
+        Reservation res = new Reservation(LocalDate.of(2020, 8, 12), LocalDate.of(2020, 8, 20), 1, guest);
+        res.setRoom(room1);
+        indexedReservationDao.create(res);
+        var in = LocalDate.of(2020, 8, 16);
+        var out = LocalDate.of(2020, 8, 28);
+
+        assertThat(indexedRoomDao.findAvailableRooms(in, out))
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactly(room2);
+
+        res.setRoom(room2);
+        indexedReservationDao.update(res);
+        assertThat(indexedRoomDao.findAvailableRooms(in, out))
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactly(room1);
+
+        res.setCheckOutDate(LocalDate.of(2020, 8, 18));
+        indexedReservationDao.update(res);
+        assertThat(indexedRoomDao.findAvailableRooms(in, out))
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactly(room1, room2);
+        assertThat(indexedRoomDao.checkAvailabilityIndex(in, out)).isTrue();
+    }
+
+    @Test
+    void findAvailableRoomsWithinCalendarHorizon() {
+        var index = new AvailabilityIndex(LocalDate.of(2020, 1, 1), 365);
+        var indexedRoomDao = new RoomDao(dataSource, index);
+        var indexedReservationDao = new ReservationDao(dataSource, index);
+        Room room1 = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        Room room2 = new Room(2, new RoomType(BedType.QUEEN, 10, 1));
+        indexedRoomDao.createAll(List.of(room1, room2));
+        indexedRoomDao.loadAvailabilityIndex();
+        Guest guest = new Guest("Prvni Jmeno", "alik@seznam.cz", "Brno", "", "+420905174925");
+        Reservation res1 = new Reservation(LocalDate.of(2020, 8, 12), LocalDate.of(2020, 8, 20), 1, guest);
+        Reservation res2 = new Reservation(LocalDate.of(2020, 8, 15), LocalDate.of(2020, 8, 18), 1, guest);
+        Reservation res3 = new Reservation(LocalDate.of(2020, 8, 16), LocalDate.of(2020, 8, 17), 1, guest);
+        res1.setRoom(room1);
+        res2.setRoom(room1);
+        res3.setRoom(room2);
+        indexedReservationDao.createAll(List.of(res1, res2, res3));
+
+        assertThat(indexedRoomDao.isFullyBooked(LocalDate.of(2020, 8, 15))).isFalse();
+        assertThat(indexedRoomDao.isFullyBooked(LocalDate.of(2020, 8, 16))).isTrue();
+        assertThat(indexedRoomDao.isFullyBooked(LocalDate.of(2020, 8, 17))).isFalse();
+
+        indexedReservationDao.delete(res1);
+        assertThat(indexedRoomDao.findAvailableRooms(LocalDate.of(2020, 8, 18), LocalDate.of(2020, 8, 20)))
+                .extracting(Room::getNumber)
+                .containsExactly(1, 2);
+        assertThat(indexedRoomDao.findAvailableRooms(LocalDate.of(2020, 8, 14), LocalDate.of(2020, 8, 16)))
+                .extracting(Room::getNumber)
+                .containsExactly(2);
+        assertThat(indexedRoomDao.isFullyBooked(LocalDate.of(2020, 8, 16))).isTrue();
+        // stays reaching past the horizon are checked without the calendar
+        assertThat(indexedRoomDao.checkAvailabilityIndex(LocalDate.of(2020, 8, 17), LocalDate.of(2021, 3, 1))).isTrue();
+    }
+
+    @Test
+    void loadAvailabilityIndexWaitsForWrites() throws InterruptedException {
+        var index = new AvailabilityIndex();
+        var indexedRoomDao = new RoomDao(dataSource, index);
+        var indexedReservationDao = new ReservationDao(dataSource, index);
+        Room room = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        indexedRoomDao.create(room);
+        Reservation res = new Reservation(LocalDate.of(2020, 8, 12), LocalDate.of(2020, 8, 20), 1,
+                new Guest("Prvni Jmeno", "alik@seznam.cz", "Brno", "", "+420905174925"));
+        res.setRoom(room);
+        var loader = new Thread(indexedRoomDao::loadAvailabilityIndex);
+
+        index.write(() -> {
+            loader.start();
+            try {
+                loader.join(200);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            assertThat(index.isLoaded()).isFalse();
+            indexedReservationDao.create(res);
+        });
+        loader.join();
+
+        assertThat(indexedRoomDao.findAvailableRooms(LocalDate.of(2020, 8, 16), LocalDate.of(2020, 8, 28))).isEmpty();
+        assertThat(indexedRoomDao.checkAvailabilityIndex(LocalDate.of(2020, 8, 16), LocalDate.of(2020, 8, 28))).isTrue();
+    }
+
+    @Test
+    void checkAvailabilityIndexReloadsAfterExternalChange() throws SQLException {
+        var index = new AvailabilityIndex();
+        var indexedRoomDao = new RoomDao(dataSource, index);
+        Room room = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        indexedRoomDao.create(room);
+        indexedRoomDao.loadAvailabilityIndex();
+        Reservation res = new Reservation(LocalDate.of(2020, 8, 12), LocalDate.of(2020, 8, 20), 1,
+                new Guest("Prvni Jmeno", "alik@seznam.cz", "Brno", "", "+420905174925"));
+        res.setRoom(room);
+        reservationDao.create(res);
+        var in = LocalDate.of(2020, 8, 16);
+        var out = LocalDate.of(2020, 8, 28);
+
+        assertThat(indexedRoomDao.checkAvailabilityIndex(in, out)).isFalse();
+        assertThat(indexedRoomDao.findAvailableRooms(in, out)).isEmpty();
+        assertThat(indexedRoomDao.checkAvailabilityIndex(in, out)).isTrue();
+    }
+
     private RoomDao createFailingDao(Throwable exceptionToBeThrown) {
         try {
             var dataSource = mock(DataSource.class);
@@ -0,0 +1,128 @@
+package data;
+
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+final class SchemaMigrationsTest {
+
+    private static EmbeddedDataSource dataSource;
+
+    @BeforeAll
+    static void initTestDataSource() {
+        dataSource = new EmbeddedDataSource();
+        dataSource.setDatabaseName("memory:schema-migrations-test");
+        dataSource.setCreateDatabase("create");
+    }
+
+    @AfterEach
+    void dropTables() throws SQLException {
+        try (var connection = dataSource.getConnection();
+             var st = connection.createStatement()) {
+            st.executeUpdate("DROP TABLE APP.RESERVATION");
+            st.executeUpdate("DROP TABLE APP.ROOM");
+            st.executeUpdate("DROP TABLE APP.SCHEMA_VERSION");
+        }
+    }
+
+    @Test
+    void onlineMigrationsRunSeparately() throws SQLException {
+        var migrations = new SchemaMigrations(dataSource);
+        migrations.migrate();
+
+        assertThat(versions()).containsExactly(1, 2, 3, 4, 5, 8);
+        assertThat(indexes()).isEmpty();
+
+        migrations.migrateOnline();
+
+        assertThat(versions()).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(indexes()).containsExactly("RESERVATION_AVAILABILITY_IDX", "RESERVATION_ROOM_DATES_IDX",
+                "ROOM_CAPACITY_PRICE_IDX");
+    }
+
+    @Test
+    void appliedMigrationsDoNotRunAgain() throws SQLException {
+        var migrations = new SchemaMigrations(dataSource);
+        migrations.migrate();
+        try (var connection = dataSource.getConnection();
+             var st = connection.createStatement()) {
+            st.executeUpdate("ALTER TABLE APP.ROOM DROP CONSTRAINT ROOM_NUMBER_UNIQUE");
+        }
+
+        migrations.migrate();
+
+        try (var connection = dataSource.getConnection();
+             var st = connection.createStatement();
+             var rs = st.executeQuery("SELECT COUNT(*) FROM SYS.SYSCONSTRAINTS WHERE CONSTRAINTNAME = 'ROOM_NUMBER_UNIQUE'")) {
+            rs.next();
+            assertThat(rs.getInt(1)).isZero();
+        }
+    }
+
+    @Test
+    void constraintViolatedByExistingRowsStaysPending() throws SQLException {
+        try (var connection = dataSource.getConnection();
+             var st = connection.createStatement()) {
+            st.executeUpdate("CREATE TABLE APP.ROOM (ID BIGINT PRIMARY KEY GENERATED ALWAYS AS IDENTITY," +
+                    " ROOM_NUMBER INT NOT NULL, PRICE INT NOT NULL, BEDS_AMOUNT INT NOT NULL, BED_TYPES VARCHAR(150) NOT NULL)");
+            st.executeUpdate("INSERT INTO APP.ROOM (ROOM_NUMBER, PRICE, BEDS_AMOUNT, BED_TYPES)" +
+                    " VALUES (1, 20, 2, 'FULL'), (1, 10, 1, 'QUEEN')");
+        }
+        var migrations = new SchemaMigrations(dataSource);
+        migrations.migrate();
+
+        assertThat(versions()).containsExactly(1, 2, 3, 5, 8);
+        assertThat(constraintExists("ROOM_NUMBER_UNIQUE")).isFalse();
+
+        try (var connection = dataSource.getConnection();
+             var st = connection.createStatement()) {
+            st.executeUpdate("DELETE FROM APP.ROOM WHERE BED_TYPES = 'QUEEN'");
+        }
+        migrations.migrate();
+
+        assertThat(versions()).containsExactly(1, 2, 3, 4, 5, 8);
+        assertThat(constraintExists("ROOM_NUMBER_UNIQUE")).isTrue();
+    }
+
+    private static boolean constraintExists(String name) throws SQLException {
+        try (var connection = dataSource.getConnection();
+             var st = connection.prepareStatement("SELECT 1 FROM SYS.SYSCONSTRAINTS WHERE CONSTRAINTNAME = ?")) {
+            st.setString(1, name);
+            try (var rs = st.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static List<Integer> versions() throws SQLException {
+        try (var connection = dataSource.getConnection();
+             var st = connection.createStatement();
+             var rs = st.executeQuery("SELECT VERSION FROM APP.SCHEMA_VERSION ORDER BY VERSION")) {
+            List<Integer> versions = new ArrayList<>();
+            while (rs.next()) {
+                versions.add(rs.getInt(1));
+            }
+            return versions;
+        }
+    }
+
+    private static List<String> indexes() throws SQLException {
+        try (var connection = dataSource.getConnection();
+             var st = connection.createStatement();
+             var rs = st.executeQuery("SELECT CONGLOMERATENAME FROM SYS.SYSCONGLOMERATES" +
+                     " WHERE CONGLOMERATENAME LIKE '%_IDX' ORDER BY CONGLOMERATENAME")) {
+            List<String> indexes = new ArrayList<>();
+            while (rs.next()) {
+                indexes.add(rs.getString(1));
+            }
+            return indexes;
+        }
+    }
+}
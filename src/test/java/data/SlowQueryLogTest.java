@@ -0,0 +1,141 @@
+package data;
+
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.tuple;
+
+final class SlowQueryLogTest {
+
+    private static EmbeddedDataSource dataSource;
+    private SlowQueryLog log;
+
+    @BeforeAll
+    static void initTestDataSource() {
+        dataSource = new EmbeddedDataSource();
+        dataSource.setDatabaseName("memory:hotel-reservation-test");
+        dataSource.setCreateDatabase("create");
+    }
+
+    @BeforeEach
+    void createTable() throws SQLException {
+        log = new SlowQueryLog(dataSource, Duration.ZERO, 2);
+        try (var connection = dataSource.getConnection();
+             var st = connection.createStatement()) {
+            st.executeUpdate("CREATE TABLE APP.GUEST (NAME VARCHAR(100), ARRIVAL DATE, ROOM INT CHECK (ROOM >= 0))");
+        }
+    }
+
+    @AfterEach
+    void dropTable() throws SQLException {
+        try (var connection = dataSource.getConnection();
+             var st = connection.createStatement()) {
+            st.executeUpdate("DROP TABLE APP.GUEST");
+        }
+    }
+
+    @Test
+    void recordsRowsAndMasksStrings() throws SQLException {
+        try (var connection = log.getConnection()) {
+            try (var st = connection.prepareStatement("INSERT INTO APP.GUEST VALUES (?, ?, ?)")) {
+                for (int room = 1; room <= 3; room++) {
+                    st.setString(1, "Jana Novakova");
+                    st.setDate(2, Date.valueOf(LocalDate.of(2018, 4, 12)));
+                    st.setInt(3, room);
+                    st.addBatch();
+                }
+                st.executeBatch();
+            }
+            try (var st = connection.prepareStatement("SELECT * FROM APP.GUEST WHERE NAME LIKE ? AND ROOM > ?")) {
+                st.setString(1, "%Nova%");
+                st.setInt(2, 1);
+                try (var rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        assertThat(rs.getStatement()).isSameAs(st);
+                    }
+                }
+            }
+        }
+
+        assertThat(log.getSlowestStatements())
+                .extracting(SlowStatement::getSql, SlowStatement::getParameters, SlowStatement::getRows)
+                .containsExactlyInAnyOrder(
+                        tuple("INSERT INTO APP.GUEST VALUES (?, ?, ?)", "[batch of 3]", 3L),
+                        tuple("SELECT * FROM APP.GUEST WHERE NAME LIKE ? AND ROOM > ?", "[1='***', 2=1]", 2L));
+    }
+
+    @Test
+    void keepsSlowestStatements() throws SQLException {
+        try (var connection = log.getConnection();
+             var st = connection.createStatement()) {
+            for (int i = 0; i < 5; i++) {
+                st.executeUpdate("INSERT INTO APP.GUEST VALUES ('Petr Novy', NULL, " + i + ")");
+            }
+            st.executeQuery("SELECT * FROM APP.GUEST").close();
+        }
+
+        var slowest = log.getSlowestStatements();
+        assertThat(slowest).hasSize(2);
+        assertThat(slowest.get(0).getElapsedMillis()).isGreaterThanOrEqualTo(slowest.get(1).getElapsedMillis());
+        assertThat(slowest).extracting(SlowStatement::getSql).doesNotHaveDuplicates();
+
+        log.reset();
+
+        assertThat(log.getSlowestStatements()).isEmpty();
+    }
+
+    @Test
+    void failedStatementIsRecorded() throws SQLException {
+        try (var connection = log.getConnection();
+             var st = connection.prepareStatement("INSERT INTO APP.GUEST VALUES (?, ?, ?)")) {
+            st.setString(1, "Jana Novakova");
+            st.setNull(2, java.sql.Types.DATE);
+            st.setInt(3, -1);
+            assertThatExceptionOfType(SQLException.class).isThrownBy(st::executeUpdate);
+        }
+
+        assertThat(log.getSlowestStatements())
+                .extracting(SlowStatement::getParameters)
+                .containsExactly("[1='***', 2=NULL, 3=-1]");
+    }
+
+    @Test
+    void recordsBatchOfPlainStatement() throws SQLException {
+        try (var connection = log.getConnection();
+             var st = connection.createStatement()) {
+            st.addBatch("INSERT INTO APP.GUEST VALUES ('Petr Novy', NULL, 1)");
+            st.addBatch("INSERT INTO APP.GUEST VALUES ('Petr Novy', NULL, 2)");
+            st.executeBatch();
+        }
+
+        assertThat(log.getSlowestStatements())
+                .extracting(SlowStatement::getSql, SlowStatement::getParameters, SlowStatement::getRows)
+                .containsExactly(tuple("<batch>", "[batch of 2]", 2L));
+    }
+
+    @Test
+    void recordsParametersOfExecutionNotLaterOnes() throws SQLException {
+        try (var connection = log.getConnection();
+             var st = connection.prepareStatement("SELECT * FROM APP.GUEST WHERE ROOM > ?")) {
+            st.setInt(1, 1);
+            try (var rs = st.executeQuery()) {
+                st.setInt(1, 2);
+                assertThat(rs.next()).isFalse();
+            }
+        }
+
+        assertThat(log.getSlowestStatements())
+                .extracting(SlowStatement::getParameters)
+                .containsExactly("[1=1]");
+    }
+}
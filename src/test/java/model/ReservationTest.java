@@ -3,6 +3,7 @@ package model;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDate;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -38,4 +39,16 @@ class ReservationTest {
         assertNotNull(r.getCheckInDate());
     }
 
-}
\ No newline at end of file
+    @Test
+    void modifiedFields() {
+        Reservation r = new Reservation(LocalDate.of(1000, 10, 10), LocalDate.of(2000, 10, 10), 5, new Guest("A", "B", "C", "D", "E"));
+        r.setNumGuests(5);
+        r.setExpectedCheckInDate(LocalDate.of(1000, 10, 10));
+        r.setGuest(new Guest("A", "B", "X", "D", "E"));
+        r.setCheckInDate(LocalDate.now());
+        assertEquals(Set.of(Reservation.Field.ADDRESS, Reservation.Field.CHECK_IN_DATE), r.getModifiedFields());
+
+        r.clearModifiedFields();
+        assertEquals(Set.of(), r.getModifiedFields());
+    }
+}
@@ -0,0 +1,93 @@
+package ui;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.EventQueue;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+final class EdtWatchdogTest {
+
+    private static final Duration THRESHOLD = Duration.ofMillis(100);
+
+    private EdtWatchdog watchdog;
+
+    @BeforeEach
+    void startWatchdog() throws Exception {
+        watchdog = new EdtWatchdog(THRESHOLD, Duration.ofMillis(10));
+        // lets the first heartbeat run, which tells the watchdog the dispatch thread
+        Thread.sleep(50);
+        EventQueue.invokeAndWait(() -> { });
+    }
+
+    @AfterEach
+    void closeWatchdog() {
+        watchdog.close();
+    }
+
+    @Test
+    void stallIsCountedWithItsApplicationFrame() throws Exception {
+        EventQueue.invokeAndWait(this::blockEventDispatchThread);
+        awaitStallCount(1);
+
+        assertThat(watchdog.getStallCount()).isEqualTo(1);
+        assertThat(watchdog.getLongestStallMillis()).isGreaterThanOrEqualTo(THRESHOLD.toMillis());
+        assertThat(watchdog.getTotalStallMillis()).isEqualTo(watchdog.getLongestStallMillis());
+        assertThat(watchdog.getHotFrames().keySet())
+                .isNotEmpty()
+                .allSatisfy(frame -> assertThat(frame).contains("ui.EdtWatchdogTest.blockEventDispatchThread("));
+    }
+
+    @Test
+    void shortTasksAreNoStall() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            EventQueue.invokeAndWait(() -> sleep(THRESHOLD.toMillis() / 10));
+        }
+        Thread.sleep(THRESHOLD.toMillis());
+
+        assertThat(watchdog.getStallCount()).isZero();
+        assertThat(watchdog.getHotFrames()).isEmpty();
+    }
+
+    @Test
+    void resetClearsStatistics() throws Exception {
+        EventQueue.invokeAndWait(this::blockEventDispatchThread);
+        awaitStallCount(1);
+
+        watchdog.reset();
+
+        assertThat(watchdog.getStallCount()).isZero();
+        assertThat(watchdog.getTotalStallMillis()).isZero();
+        assertThat(watchdog.getLongestStallMillis()).isZero();
+        assertThat(watchdog.getHotFrames()).isEmpty();
+    }
+
+    private void blockEventDispatchThread() {
+        try {
+            Thread.sleep(THRESHOLD.toMillis() * 3);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The stall is accounted for once the watchdog sees the heartbeat that ended it.
+     */
+    private void awaitStallCount(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (watchdog.getStallCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ui;
+
+import data.AsyncReservationDao;
+import data.ReservationDao;
+import data.RoomDao;
+import model.BedType;
+import model.Guest;
+import model.Reservation;
+import model.Room;
+import model.RoomType;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.EventQueue;
+import java.lang.reflect.InvocationTargetException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+final class LazyReservationListTest {
+
+    private static EmbeddedDataSource dataSource;
+    private RoomDao roomDao;
+    private ReservationDao reservationDao;
+
+    @BeforeAll
+    static void initTestDataSource() {
+        dataSource = new EmbeddedDataSource();
+        dataSource.setDatabaseName("memory:hotel-reservation-test");
+        dataSource.setCreateDatabase("create");
+    }
+
+    @BeforeEach
+    void createDaos() {
+        roomDao = new RoomDao(dataSource);
+        roomDao.initTable();
+        reservationDao = new ReservationDao(dataSource);
+        reservationDao.initTable();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        reservationDao.getTableManager().dropTable();
+        roomDao.getTableManager().dropTable();
+    }
+
+    @Test
+    void removedRowIsNotShownAgainBeforeItsDeleteIsWritten() throws Exception {
+        var room = new Room(1, new RoomType(BedType.FULL, 20, 2));
+        roomDao.create(room);
+        var guest = new Guest("Prvni Jmeno", "alik@seznam.cz", "Brno", "", "+420905174925");
+        List<Reservation> stored = new ArrayList<>();
+        for (int day = 1; day <= 3; day++) {
+            var reservation = new Reservation(LocalDate.of(2020, 8, day), LocalDate.of(2020, 8, day + 1), 1, guest);
+            reservation.setRoom(room);
+            reservationDao.create(reservation);
+            stored.add(reservation);
+        }
+        var loaded = new CountDownLatch(1);
+        var list = new AtomicReference<LazyReservationList>();
+        onEdt(() -> list.set(new LazyReservationList(new AsyncReservationDao(reservationDao, Runnable::run),
+                reservationDao.findPage(0, LazyReservationList.PAGE_SIZE), 3, (l, first, last) -> loaded.countDown())));
+
+        // the delete is still queued, so the reloaded page comes with the removed reservation
+        onEdt(() -> {
+            list.get().remove(1);
+            assertThat(list.get().get(0)).isNull();
+        });
+        assertThat(loaded.await(5, TimeUnit.SECONDS)).isTrue();
+
+        onEdt(() -> assertThat(list.get())
+                .extracting(Reservation::getId)
+                .containsExactly(stored.get(0).getId(), stored.get(2).getId()));
+    }
+
+    private static void onEdt(Runnable action) throws InterruptedException, InvocationTargetException {
+        EventQueue.invokeAndWait(action);
+    }
+}
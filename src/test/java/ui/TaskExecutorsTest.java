@@ -0,0 +1,115 @@
+package ui;
+
+import data.AsyncRoomDao;
+import data.RoomDao;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Mockito.mock;
+
+final class TaskExecutorsTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private TaskExecutors executors;
+
+    @AfterEach
+    void cleanUp() {
+        release.countDown();
+        if (executors != null) {
+            executors.close();
+        }
+    }
+
+    @Test
+    void saturatedPoolFailsAsyncCalls() throws InterruptedException {
+        executors = TaskExecutors.platform(1, 1, 1);
+        block(executors.reads());
+        executors.reads().execute(() -> { });
+
+        assertThatExceptionOfType(RejectedExecutionException.class)
+                .isThrownBy(() -> executors.reads().execute(() -> { }));
+        assertThat(executors.reads().getQueueDepth()).isEqualTo(1);
+        var asyncRoomDao = new AsyncRoomDao(mock(RoomDao.class), executors.reads(), executors.writes());
+        assertThatExceptionOfType(CompletionException.class)
+                .isThrownBy(() -> asyncRoomDao.findAll().join())
+                .withCauseInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    void holdKeepsAsManyTasksAsThePoolQueues() throws InterruptedException {
+        executors = TaskExecutors.platform(1, 1, 2);
+        var ready = new CompletableFuture<Void>();
+        var ran = new CountDownLatch(2);
+        executors.holdUntil(ready);
+        executors.reads().execute(ran::countDown);
+        executors.reads().execute(ran::countDown);
+
+        assertThatExceptionOfType(RejectedExecutionException.class)
+                .isThrownBy(() -> executors.reads().execute(ran::countDown));
+        ready.complete(null);
+        assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executors.reads().getQueueDepth()).isZero();
+    }
+
+    @Test
+    void releaseRunsTasksSubmittedDuringReleaseLast() {
+        List<String> order = new ArrayList<>();
+        var metered = new AtomicReference<MeteredExecutor>();
+        metered.set(new MeteredExecutor("test", task -> {
+            task.run();
+            if (order.size() == 1) {
+                metered.get().execute(() -> order.add("submitted during release"));
+            }
+        }, 10));
+        metered.get().hold();
+        metered.get().execute(() -> order.add("held 1"));
+        metered.get().execute(() -> order.add("held 2"));
+
+        metered.get().release();
+
+        assertThat(order).containsExactly("held 1", "held 2", "submitted during release");
+    }
+
+    @Test
+    void heldTaskRejectedOnReleaseIsCancelled() {
+        var metered = new MeteredExecutor("test", task -> {
+            throw new RejectedExecutionException("shut down");
+        }, 10);
+        var task = new FutureTask<Void>(() -> null);
+        metered.hold();
+        metered.execute(task);
+
+        metered.release();
+
+        assertThat(task.isCancelled()).isTrue();
+        assertThat(metered.getQueueDepth()).isZero();
+    }
+
+    /**
+     * Occupies the single thread of the executor until the test ends.
+     */
+    private void block(MeteredExecutor executor) throws InterruptedException {
+        var started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await();
+    }
+}